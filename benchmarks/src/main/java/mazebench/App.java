@@ -0,0 +1,120 @@
+package mazebench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Title: App
+ * Description: Binds the benchmarks to the application classes.
+ * The application lives in the unnamed package, which named packages cannot import and JMH cannot host
+ * benchmarks in, so its constructors and methods are looked up once as method handles. Application types are
+ * erased to Object in the handle types, and handles held in static final fields are inlined by the JIT
+ * when called with invokeExact, so the calls cost the same as direct ones.
+ */
+
+final class App {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private App() {}
+
+    /**
+     * Loads an application class
+     * @param name - binary name of the class, e.g. MazeEngine$StepMode
+     * @return - the class
+     */
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Application class not found: " + name, e);
+        }
+    }
+
+    /**
+     * Gives an enum constant of an application enum
+     * @param type - binary name of the enum class
+     * @param name - name of the constant
+     * @return - the constant
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object constant(String type, String name) {
+        return Enum.valueOf((Class) type(type), name);
+    }
+
+    /**
+     * Looks up a public constructor
+     * @param type - binary name of the class
+     * @param parameters - parameter types, application types given as class names
+     * @return - handle with application types erased to Object
+     */
+    static MethodHandle constructor(String type, Object... parameters) {
+        try {
+            return erase(LOOKUP.findConstructor(type(type), MethodType.methodType(void.class, types(parameters))));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Constructor not found: " + type, e);
+        }
+    }
+
+    /**
+     * Looks up a public instance method
+     * @param type - binary name of the class
+     * @param name - method name
+     * @param returnType - return type, an application type given as a class name
+     * @param parameters - parameter types, application types given as class names
+     * @return - handle with application types erased to Object, the receiver first
+     */
+    static MethodHandle method(String type, String name, Object returnType, Object... parameters) {
+        try {
+            return erase(LOOKUP.findVirtual(type(type), name, MethodType.methodType(types(returnType)[0], types(parameters))));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Method not found: " + type + "." + name, e);
+        }
+    }
+
+    /**
+     * Looks up a public static method
+     * @param type - binary name of the class
+     * @param name - method name
+     * @param returnType - return type, an application type given as a class name
+     * @param parameters - parameter types, application types given as class names
+     * @return - handle with application types erased to Object
+     */
+    static MethodHandle staticMethod(String type, String name, Object returnType, Object... parameters) {
+        try {
+            return erase(LOOKUP.findStatic(type(type), name, MethodType.methodType(types(returnType)[0], types(parameters))));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Method not found: " + type + "." + name, e);
+        }
+    }
+
+    private static Class<?>[] types(Object... types) {
+        Class<?>[] classes = new Class<?>[types.length];
+        for (int i = 0; i < types.length; i++) {
+            classes[i] = types[i] instanceof Class ? (Class<?>) types[i] : type((String) types[i]);
+        }
+        return classes;
+    }
+
+    /**
+     * Replaces every application type of a handle type with Object
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isApplicationType(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (isApplicationType(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    private static boolean isApplicationType(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+    }
+
+}
@@ -0,0 +1,76 @@
+package mazebench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Title: FileBenchmark
+ * Description: Save and load time of the binary maze file format, raw and run-length encoded.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileBenchmark {
+
+    private static final MethodHandle SAVE = App.staticMethod("MazeFile", "save", void.class,
+            Path.class, "MazeGrid", String.class, long.class, long.class, boolean.class);
+    private static final MethodHandle LOAD = App.staticMethod("MazeFile", "load", "MazeGrid", Path.class);
+
+    @Param({"512", "4096"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean rle;
+
+    private Object grid;
+    private Path directory;
+    private Path saved; //written by save, never read
+    private Path loaded; //written once, read by load
+
+    @Setup
+    public void setUp() throws Throwable {
+        grid = Mazes.grid(Mazes.maze(size, size, 7));
+        directory = Files.createTempDirectory("mazebench");
+        saved = directory.resolve("saved.camz");
+        loaded = directory.resolve("loaded.camz");
+        SAVE.invokeExact(loaded, grid, "B3/S1234", 7L, 0L, rle);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(saved);
+        Files.deleteIfExists(loaded);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Path save() throws Throwable {
+        SAVE.invokeExact(saved, grid, "B3/S1234", 7L, 0L, rle);
+        return saved;
+    }
+
+    @Benchmark
+    public Object load() throws Throwable {
+        return (Object) LOAD.invokeExact(loaded);
+    }
+
+}
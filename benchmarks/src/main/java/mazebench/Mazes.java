@@ -0,0 +1,121 @@
+package mazebench;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Title: Mazes
+ * Description: Seeded mazes shared by the benchmarks, built through the application's own engine and seeder
+ * so every run measures the same grids.
+ */
+
+final class Mazes {
+
+    private static final MethodHandle NEW_ENGINE = App.constructor("MazeEngine", int.class, int.class);
+    private static final MethodHandle PARSE_RULE = App.staticMethod("MazeRule", "parse", "MazeRule", String.class);
+    private static final MethodHandle SET_RULE = App.method("MazeEngine", "setRule", void.class, "MazeRule");
+    private static final MethodHandle SET_STEP_MODE = App.method("MazeEngine", "setStepMode", void.class, "MazeEngine$StepMode");
+    private static final MethodHandle GET_GRID = App.method("MazeEngine", "getGrid", "MazeGrid");
+    private static final MethodHandle INVALIDATE = App.method("MazeEngine", "invalidate", void.class);
+    private static final MethodHandle RESET = App.method("MazeEngine", "reset", void.class);
+    private static final MethodHandle STEP = App.method("MazeEngine", "step", void.class);
+    private static final MethodHandle IS_CONVERGED = App.method("MazeEngine", "isConverged", boolean.class);
+    private static final MethodHandle NEW_SEEDER = App.constructor("MazeSeeder", "MazeSeeder$Pattern", double.class);
+    private static final MethodHandle FILL = App.method("MazeSeeder", "fill", void.class, "MazeGrid", long.class, "ParallelStepper");
+    private static final MethodHandle NEW_OFF_HEAP_ENGINE = App.constructor("OffHeapEngine", int.class, int.class);
+    private static final MethodHandle OFF_HEAP_SET_RULE = App.method("OffHeapEngine", "setRule", void.class, "MazeRule");
+    private static final MethodHandle OFF_HEAP_GET_GRID = App.method("OffHeapEngine", "getGrid", "OffHeapGrid");
+    private static final MethodHandle OFF_HEAP_INVALIDATE = App.method("OffHeapEngine", "invalidate", void.class);
+    private static final MethodHandle OFF_HEAP_RESET = App.method("OffHeapEngine", "reset", void.class);
+    private static final MethodHandle FILL_OFF_HEAP = App.method("MazeSeeder", "fill", void.class, "OffHeapGrid", long.class, "ParallelStepper");
+
+    private Mazes() {}
+
+    /**
+     * Creates an engine holding a seeded random fill
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     * @param rule - rulestring
+     * @param stepMode - name of a MazeEngine.StepMode
+     * @param density - chance of a cell being alive
+     * @param seed - seed of the fill
+     * @return - the MazeEngine
+     */
+    static Object engine(int width, int height, String rule, String stepMode, double density, long seed) throws Throwable {
+        Object engine = (Object) NEW_ENGINE.invokeExact(width, height);
+        SET_RULE.invokeExact(engine, (Object) PARSE_RULE.invokeExact(rule));
+        SET_STEP_MODE.invokeExact(engine, App.constant("MazeEngine$StepMode", stepMode));
+        fill(engine, density, seed);
+        return engine;
+    }
+
+    /**
+     * Replaces the cells of an engine with a seeded random fill
+     * @param engine - the MazeEngine
+     * @param density - chance of a cell being alive
+     * @param seed - seed of the fill
+     */
+    static void fill(Object engine, double density, long seed) throws Throwable {
+        RESET.invokeExact(engine);
+        Object seeder = (Object) NEW_SEEDER.invokeExact(App.constant("MazeSeeder$Pattern", "DENSITY"), density);
+        FILL.invokeExact(seeder, grid(engine), seed, (Object) null);
+        INVALIDATE.invokeExact(engine);
+    }
+
+    /**
+     * Creates an off-heap engine holding a seeded random fill
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     * @param rule - rulestring of a two state radius 1 Moore rule
+     * @param density - chance of a cell being alive
+     * @param seed - seed of the fill
+     * @return - the OffHeapEngine
+     */
+    static Object offHeapEngine(int width, int height, String rule, double density, long seed) throws Throwable {
+        Object engine = (Object) NEW_OFF_HEAP_ENGINE.invokeExact(width, height);
+        OFF_HEAP_SET_RULE.invokeExact(engine, (Object) PARSE_RULE.invokeExact(rule));
+        fillOffHeap(engine, density, seed);
+        return engine;
+    }
+
+    /**
+     * Replaces the cells of an off-heap engine with a seeded random fill
+     * @param engine - the OffHeapEngine
+     * @param density - chance of a cell being alive
+     * @param seed - seed of the fill
+     */
+    static void fillOffHeap(Object engine, double density, long seed) throws Throwable {
+        OFF_HEAP_RESET.invokeExact(engine);
+        Object seeder = (Object) NEW_SEEDER.invokeExact(App.constant("MazeSeeder$Pattern", "DENSITY"), density);
+        FILL_OFF_HEAP.invokeExact(seeder, (Object) OFF_HEAP_GET_GRID.invokeExact(engine), seed, (Object) null);
+        OFF_HEAP_INVALIDATE.invokeExact(engine);
+    }
+
+    /**
+     * Creates a finished maze, a seeded fill stepped until it converges
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     * @param seed - seed of the fill
+     * @return - the MazeEngine holding the maze
+     */
+    static Object maze(int width, int height, long seed) throws Throwable {
+        Object engine = engine(width, height, "B3/S1234", "DOUBLE_BUFFERED", 0.35, seed);
+        for (int g = 0; g < 5000 && !(boolean) IS_CONVERGED.invokeExact(engine); g++) {
+            STEP.invokeExact(engine);
+        }
+        return engine;
+    }
+
+    /**
+     * Gives the grid of an engine
+     * @param engine - the MazeEngine
+     * @return - the MazeGrid of the current generation
+     */
+    static Object grid(Object engine) throws Throwable {
+        return (Object) GET_GRID.invokeExact(engine);
+    }
+
+    static Object rule(String rule) throws Throwable {
+        return (Object) PARSE_RULE.invokeExact(rule);
+    }
+
+}
@@ -0,0 +1,73 @@
+package mazebench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JComponent;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Title: RenderBenchmark
+ * Description: Full-frame render time of MazeCanvas, every frame switches between two different mazes so every
+ * cell is redrawn, then the canvas is painted at the default 800x600 window size into an offscreen image.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+
+    private static final MethodHandle NEW_CANVAS = App.constructor("MazeCanvas", int.class, int.class, int.class,
+            Color.class, Color.class, Color.class);
+    private static final MethodHandle REFRESH = App.method("MazeCanvas", "refresh", void.class, "MazeGrid");
+
+    @Param({"160", "1024"})
+    public int columns;
+
+    private Object canvas;
+    private Object[] frames;
+    private int frame = 0;
+    private BufferedImage screen;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp() throws Throwable {
+        int rows = columns * 3 / 4;
+        frames = new Object[] {Mazes.grid(Mazes.maze(columns, rows, 1)), Mazes.grid(Mazes.maze(columns, rows, 2))};
+        canvas = (Object) NEW_CANVAS.invokeExact(columns, rows, 1, Color.BLACK, Color.WHITE, Color.RED);
+        ((JComponent) canvas).setSize(800, 600);
+        screen = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        graphics = screen.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage fullFrame() throws Throwable {
+        frame ^= 1;
+        REFRESH.invokeExact(canvas, frames[frame]);
+        ((JComponent) canvas).paint(graphics);
+        return screen;
+    }
+
+}
@@ -0,0 +1,86 @@
+package mazebench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Title: SolveBenchmark
+ * Description: Shortest path solve time of every MazeSolver strategy on fixed seeded mazes.
+ * Start and end are the first and last open cells of the largest open region, so every solve finds a path.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolveBenchmark {
+
+    private static final MethodHandle NEW_SOLVER = App.constructor("MazeSolver", int.class, int.class);
+    private static final MethodHandle SOLVE = App.method("MazeSolver", "solve", int[].class,
+            "MazeGrid", "MazeSolver$Strategy", int.class, int.class, int.class, int.class);
+    private static final MethodHandle NEW_REGIONS = App.constructor("MazeRegions", int.class, int.class);
+    private static final MethodHandle LABEL = App.method("MazeRegions", "label", void.class, "MazeGrid");
+    private static final MethodHandle REGION_COUNT = App.method("MazeRegions", "getRegionCount", int.class);
+    private static final MethodHandle REGION_SIZE = App.method("MazeRegions", "getSize", int.class, int.class);
+    private static final MethodHandle REGION_IDS = App.method("MazeRegions", "getRegionIds", int[].class);
+
+    @Param({"256", "1024"})
+    public int size;
+
+    @Param({"BFS", "A_STAR", "BIDIRECTIONAL_BFS"})
+    public String strategy;
+
+    private Object solver;
+    private Object grid;
+    private Object strategyConstant;
+    private int startX, startY, endX, endY;
+
+    @Setup
+    public void setUp() throws Throwable {
+        grid = Mazes.grid(Mazes.maze(size, size, 42));
+        solver = (Object) NEW_SOLVER.invokeExact(size, size);
+        strategyConstant = App.constant("MazeSolver$Strategy", strategy);
+        Object regions = (Object) NEW_REGIONS.invokeExact(size, size);
+        LABEL.invokeExact(regions, grid);
+        int largest = 0;
+        int regionCount = (int) REGION_COUNT.invokeExact(regions);
+        for (int region = 1; region < regionCount; region++) {
+            if ((int) REGION_SIZE.invokeExact(regions, region) > (int) REGION_SIZE.invokeExact(regions, largest)) {
+                largest = region;
+            }
+        }
+        int[] ids = (int[]) REGION_IDS.invokeExact(regions);
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == largest) {
+                first = first < 0 ? i : first;
+                last = i;
+            }
+        }
+        startX = first % size;
+        startY = first / size;
+        endX = last % size;
+        endY = last / size;
+    }
+
+    @Benchmark
+    public int[] solve() throws Throwable {
+        return (int[]) SOLVE.invokeExact(solver, grid, strategyConstant, startX, startY, endX, endY);
+    }
+
+}
@@ -0,0 +1,101 @@
+package mazebench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Title: StepBenchmark
+ * Description: Time of one generation across grid sizes, both maze rules and every way of stepping.
+ * LEGACY_SWEEP is the original Swing loop counting the neighbours of every cell and setting its next state in place,
+ * OFF_HEAP is OffHeapEngine stepping tile rows out of direct buffers, the other steppers are MazeEngine step modes.
+ * Each iteration times the first GENERATIONS generations after a fresh random fill, so settled grids do not
+ * flatter the steppers that skip quiet areas.
+ */
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = StepBenchmark.GENERATIONS)
+@Measurement(iterations = 5, batchSize = StepBenchmark.GENERATIONS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StepBenchmark {
+
+    static final int GENERATIONS = 20; //generations timed per iteration
+
+    private static final MethodHandle GET_GRID = App.method("MazeEngine", "getGrid", "MazeGrid");
+    private static final MethodHandle COUNT_NEIGHBOURS = App.method("MazeGrid", "countNeighbours",
+            int.class, int.class, int.class);
+    private static final MethodHandle IS_ALIVE = App.method("MazeGrid", "isAlive", boolean.class, int.class, int.class);
+    private static final MethodHandle NEXT_STATE = App.method("MazeRule", "nextState", int.class, int.class, int.class);
+    private static final MethodHandle SET_CELL = App.method("MazeEngine", "setCell", void.class,
+            int.class, int.class, boolean.class);
+    private static final MethodHandle STEP = App.method("MazeEngine", "step", void.class);
+    private static final MethodHandle STEP_OFF_HEAP = App.method("OffHeapEngine", "step", void.class);
+
+    @Param({"100", "512", "2048", "8192"})
+    public int size;
+
+    @Param({"B3/S1234", "B3/S12345"})
+    public String rule;
+
+    @Param({"LEGACY_SWEEP", "DOUBLE_BUFFERED", "IN_PLACE", "HASHLIFE", "OFF_HEAP"})
+    public String stepper;
+
+    private Object engine;
+    private Object legacyRule; //rule applied by the legacy sweep
+    private boolean legacy;
+    private boolean offHeap;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        legacy = stepper.equals("LEGACY_SWEEP");
+        offHeap = stepper.equals("OFF_HEAP");
+        if (offHeap) {
+            engine = Mazes.offHeapEngine(size, size, rule, 0.5, 1);
+            return;
+        }
+        engine = Mazes.engine(size, size, rule, legacy ? "IN_PLACE" : stepper, 0.5, 1);
+        legacyRule = Mazes.rule(rule);
+    }
+
+    @Setup(Level.Iteration)
+    public void refill() throws Throwable {
+        if (offHeap) {
+            Mazes.fillOffHeap(engine, 0.5, 1);
+        } else {
+            Mazes.fill(engine, 0.5, 1);
+        }
+    }
+
+    @Benchmark
+    public void step() throws Throwable {
+        if (legacy) {
+            Object grid = (Object) GET_GRID.invokeExact(engine);
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    int aliveNeighbours = (int) COUNT_NEIGHBOURS.invokeExact(grid, x, y);
+                    int state = (boolean) IS_ALIVE.invokeExact(grid, x, y) ? 1 : 0;
+                    SET_CELL.invokeExact(engine, x, y, (int) NEXT_STATE.invokeExact(legacyRule, state, aliveNeighbours) == 1);
+                }
+            }
+        } else if (offHeap) {
+            STEP_OFF_HEAP.invokeExact(engine);
+        } else {
+            STEP.invokeExact(engine);
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Title: BitParallelKernel
+ * Description: Bit-sliced generation kernel computing 64 cells per long word.
+ * Neighbour counts are built with adder trees over shifted rows, then births and survivals are selected
+ * through rule masks where bit n is set if a count of n alive neighbours gives birth or survives, see MazeRule.
+ */
+
+public class BitParallelKernel {
+
+    private BitParallelKernel() {}
+
+    /**
+     * Computes the next generation of rows [rowFrom, rowTo) from src into dst.
+     * Rows and bits outside of the grid are treated as dead, unused bits of the last word in a row stay zero.
+     * @param src - packed cells of the current generation
+     * @param dst - packed cells receiving the next generation, must not be src
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     * @param wordsPerRow - number of long words per row
+     * @param rowFrom - first row to compute
+     * @param rowTo - row after the last row to compute
+     * @param birthMask - bit n set if a dead cell with n alive neighbours is born
+     * @param surviveMask - bit n set if an alive cell with n alive neighbours survives
+     */
+    public static void stepRows(long[] src, long[] dst, int width, int height, int wordsPerRow,
+                                int rowFrom, int rowTo, int birthMask, int surviveMask) {
+        long lastWordMask = (width & 63) == 0 ? -1L : (1L << width) - 1;
+        for (int y = rowFrom; y < rowTo; y++) {
+            int row = y * wordsPerRow;
+            int above = y > 0 ? row - wordsPerRow : -1;
+            int below = y < height - 1 ? row + wordsPerRow : -1;
+            for (int w = 0; w < wordsPerRow; w++) {
+                long next = stepWord(src, row, above, below, w, wordsPerRow, birthMask, surviveMask);
+                dst[row + w] = w == wordsPerRow - 1 ? next & lastWordMask : next;
+            }
+        }
+    }
+
+    /**
+     * Computes the next state of the 64 cells in one word
+     * @param src - packed cells of the current generation
+     * @param row - index of the first word of the row
+     * @param above - index of the first word of the row above, -1 if outside of the grid
+     * @param below - index of the first word of the row below, -1 if outside of the grid
+     * @param w - word within the row
+     * @param wordsPerRow - number of long words per row
+     * @param birthMask - bit n set if a dead cell with n alive neighbours is born
+     * @param surviveMask - bit n set if an alive cell with n alive neighbours survives
+     * @return - next state of the 64 cells
+     */
+    public static long stepWord(long[] src, int row, int above, int below, int w, int wordsPerRow,
+                                int birthMask, int surviveMask) {
+        boolean hasLeft = w > 0;
+        boolean hasRight = w < wordsPerRow - 1;
+
+        long centre = src[row + w];
+        long centreLeft = hasLeft ? src[row + w - 1] : 0;
+        long centreRight = hasRight ? src[row + w + 1] : 0;
+        long west = (centre << 1) | (centreLeft >>> 63);
+        long east = (centre >>> 1) | (centreRight << 63);
+
+        long up = 0;
+        long upWest = 0;
+        long upEast = 0;
+        if (above >= 0) {
+            up = src[above + w];
+            upWest = (up << 1) | (hasLeft ? src[above + w - 1] >>> 63 : 0);
+            upEast = (up >>> 1) | (hasRight ? src[above + w + 1] << 63 : 0);
+        }
+        long down = 0;
+        long downWest = 0;
+        long downEast = 0;
+        if (below >= 0) {
+            down = src[below + w];
+            downWest = (down << 1) | (hasLeft ? src[below + w - 1] >>> 63 : 0);
+            downEast = (down >>> 1) | (hasRight ? src[below + w + 1] << 63 : 0);
+        }
+
+        //full adders over the row above and below, half adder over the centre row
+        long upSum = upWest ^ up ^ upEast;
+        long upCarry = (upWest & up) | (upEast & (upWest ^ up));
+        long downSum = downWest ^ down ^ downEast;
+        long downCarry = (downWest & down) | (downEast & (downWest ^ down));
+        long centreSum = west ^ east;
+        long centreCarry = west & east;
+
+        //ones
+        long ones = upSum ^ downSum ^ centreSum;
+        long onesCarry = (upSum & downSum) | (centreSum & (upSum ^ downSum));
+        //twos, four inputs of weight two
+        long twosPartial = upCarry ^ downCarry ^ centreCarry;
+        long twosCarry = (upCarry & downCarry) | (centreCarry & (upCarry ^ downCarry));
+        long twos = twosPartial ^ onesCarry;
+        long twosPartialCarry = twosPartial & onesCarry;
+        //fours and eights
+        long fours = twosCarry ^ twosPartialCarry;
+        long eights = twosCarry & twosPartialCarry;
+
+        long born = 0;
+        long survive = 0;
+        int counts = birthMask | surviveMask;
+        for (int n = 0; n <= 8; n++) {
+            if ((counts & (1 << n)) == 0) {
+                continue;
+            }
+            long match = ((n & 1) != 0 ? ones : ~ones)
+                    & ((n & 2) != 0 ? twos : ~twos)
+                    & ((n & 4) != 0 ? fours : ~fours)
+                    & ((n & 8) != 0 ? eights : ~eights);
+            if ((birthMask & (1 << n)) != 0) {
+                born |= match;
+            }
+            if ((surviveMask & (1 << n)) != 0) {
+                survive |= match;
+            }
+        }
+        return (centre & survive) | (~centre & born);
+    }
+
+}
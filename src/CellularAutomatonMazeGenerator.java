@@ -1,8 +1,14 @@
+import javax.management.JMException;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Title: CellularAutomatonMazeGenerator
@@ -15,29 +21,66 @@ public class CellularAutomatonMazeGenerator {
 
     public static JFrame frame; //main frame
     public static JLabel statusLabel; //Status label
-    public static JPanel[][] mazeGrid; //maze grid 2D array
-    public static Thread generationThread; //maze generation thread
-    public static Thread solveThread; //solve algorithm thread
-    public static boolean generationRunning = false; //maze generation
+    public static JMenu ruleMenu; //submenu picking the generation rule
+    public static ButtonGroup ruleGroup = new ButtonGroup(); //rule picker items, one selected
+    public static MazeCanvas mazeCanvas; //maze grid component, displays the cells of mazeEngine
+    public static MazeEngine mazeEngine; //headless maze engine holding the cell states
+    public static MazeSolver mazeSolver; //shortest path solver over the maze engine grid
+    public static MazeScheduler generationScheduler = new MazeScheduler("maze-generation"); //steps mazeEngine
+    public static MazeScheduler solveScheduler = new MazeScheduler("maze-solve"); //runs random fill solving
+    public static FrameHandoff frameHandoff; //latest generation waiting for the render tick
+    public static MazeHistory history; //past generations for rewinding and replaying
+    public static JSlider historySlider; //scrubs through the generations held by history
+    public static JLabel historyLabel; //generation shown and generations held
+    public static boolean updatingHistorySlider = false; //slider moved by the render tick, not by the user
+    public static Timer renderTimer; //render tick showing the latest generation and new solve pathway cells
+    public static ConcurrentLinkedQueue<Integer> solveMarks = new ConcurrentLinkedQueue<>(); //cells marked by the solve thread, index y * columns + x
     public static boolean selectSolve = false; //solve active
     public static boolean stopSolveOnEdge = false; //solve if hit edge
+    public static int solveStrategy = 0; //0 = random fill, 1 = breadth-first, 2 = A*, 3 = bidirectional breadth-first
+    public static int[] solveStart = null; //start point chosen for a shortest path solve
     public static Color aliveColor = Color.BLACK;//alive cell color
     public static Color deadColor = Color.WHITE; //background color/dead cell color
     public static Color solveColor = Color.RED; //color of solve pathway
     public static int width = 800; //width of maze grid (pixels)
     public static int height = 600; //height of maze grid (pixels)
     public static int gridSize = 5; //height/width of individual cell (pixels) Must be divisor of width and height
-    public static int timeout = 50; //timeout between generations (ms)
-    public static int generationRule = 0; //rule 0 = B3/S1234, rule 1 = B3/S12345
+    public static double stepRate = 20; //target generations or solve steps per second, 0 for full speed
+    public static MazeRule generationRule = MazeRule.MAZE; //rule used for generation
+    public static long seed = 0; //seed of random fills and of random fill solving
+    public static double fillDensity = 0.5; //chance of a cell being alive in a random fill
+    public static String[][] rulePresets = {{"Maze", "B3/S1234"}, {"Mazectric", "B3/S12345"},
+            {"Mazectric with Mice", "B37/S12345"}, {"Maze with Decay", "B3/S1234/C4"},
+            {"Larger than Life Maze", "R2,C0,M0,S4..12,B6..8,NM"}}; //name and rulestring of picker rules
+    public static MazeMetrics metrics = new MazeMetrics(); //step, solve, frame and EDT lag metrics, also on JMX
+    public static boolean showMetrics = false; //draw the metrics overlay over the maze grid
+    public static int edtProbeInterval = 100; //time between EDT lag probes (ms)
+    public static MazeQuality quality; //quality metrics of the current generation, updated on the generation thread
+    public static volatile MazeQuality.Target qualityTarget = null; //stop generating once met, null to run until converged
+    public static boolean showQuality = false; //draw the maze quality metrics on the overlay
+    public static volatile String[] qualityLines = new String[0]; //latest quality report shown on the overlay
+    public static int qualityInterval = 250; //time between quality reports while generating (ms)
+    public static long lastQualityReport = 0; //time of the latest quality report (ns), used on the generation thread
 
     /**
      * main method
-     * @param args - Not currently used
+     * @param args - Starts headless batch generation when the first argument is --batch, see MazeBatch.USAGE,
+     *             or the maze HTTP service when it is --serve, see MazeServer.USAGE
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            MazeBatch.main(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            MazeServer.main(args);
+            return;
+        }
         initialiseFrame();
         initialiseMazeGrid();
         initialiseMenuBar();
+        initialiseMetrics();
+        frame.pack();
         frame.setVisible(true);
     }
 
@@ -47,10 +90,8 @@ public class CellularAutomatonMazeGenerator {
     public static void initialiseFrame() {
         frame = new JFrame();
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setLayout(null);
-        frame.setResizable(false);
+        frame.setLayout(new BorderLayout());
         frame.setTitle("Cellular Automaton Maze Generator");
-        frame.setSize(width + 16, height + 62);
     }
 
     /**
@@ -64,6 +105,12 @@ public class CellularAutomatonMazeGenerator {
         fileMenu.setMnemonic(KeyEvent.VK_F);
         menuBar.add(fileMenu);
 
+        JMenuItem saveMenuItem = new JMenuItem("Save Maze...");
+        fileMenu.add(saveMenuItem);
+
+        JMenuItem loadMenuItem = new JMenuItem("Load Maze...");
+        fileMenu.add(loadMenuItem);
+
         JMenuItem exitMenuItem = new JMenuItem("Exit");
         fileMenu.add(exitMenuItem);
 
@@ -80,12 +127,78 @@ public class CellularAutomatonMazeGenerator {
         JMenuItem resetMazeGridMenuItem = new JMenuItem("Reset Maze Grid");
         generateMenu.add(resetMazeGridMenuItem);
 
-        JMenuItem altRuleMenuItem = new JMenuItem("Use: B3/S12345 Rule");
-        generateMenu.add(altRuleMenuItem);
+        ruleMenu = new JMenu("Rule");
+        generateMenu.add(ruleMenu);
+        for (String[] preset : rulePresets) {
+            addRuleMenuItem(preset[0] + " (" + MazeRule.parse(preset[1]) + ")", MazeRule.parse(preset[1]));
+        }
+        ruleMenu.addSeparator();
+        JMenuItem customRuleMenuItem = new JMenuItem("Custom Rule...");
+        ruleMenu.add(customRuleMenuItem);
+        setGenerationRule(generationRule);
+
+        JMenu stepModeMenu = new JMenu("Step Mode");
+        generateMenu.add(stepModeMenu);
+        ButtonGroup stepModeGroup = new ButtonGroup();
+        String[] stepModeNames = {"Double Buffered Step", "In-place Sweep", "Hashlife"};
+        for (MazeEngine.StepMode stepMode : MazeEngine.StepMode.values()) {
+            JRadioButtonMenuItem stepModeMenuItem = new JRadioButtonMenuItem(stepModeNames[stepMode.ordinal()],
+                    stepMode == mazeEngine.getStepMode());
+            stepModeMenuItem.addActionListener(e -> {
+                generationScheduler.execute(() -> mazeEngine.setStepMode(stepMode));
+                updateStatus("Changed to " + stepModeNames[stepMode.ordinal()].toLowerCase());
+            });
+            stepModeGroup.add(stepModeMenuItem);
+            stepModeMenu.add(stepModeMenuItem);
+        }
+
+        JMenu speedMenu = new JMenu("Speed");
+        generateMenu.add(speedMenu);
+        ButtonGroup speedGroup = new ButtonGroup();
+        String[] speedNames = {"Slow (5/s)", "Normal (20/s)", "Fast (60/s)", "Full Speed"};
+        double[] speedRates = {5, 20, 60, 0};
+        for (int i = 0; i < speedNames.length; i++) {
+            double rate = speedRates[i];
+            JRadioButtonMenuItem speedMenuItem = new JRadioButtonMenuItem(speedNames[i], rate == stepRate);
+            speedMenuItem.addActionListener(e -> {
+                stepRate = rate;
+                generationScheduler.setRate(rate);
+                solveScheduler.setRate(rate);
+                updateStatus("Speed set to " + speedMenuItem.getText().toLowerCase());
+            });
+            speedGroup.add(speedMenuItem);
+            speedMenu.add(speedMenuItem);
+        }
+
+        JMenuItem qualityTargetMenuItem = new JMenuItem("Stop When Quality Met...");
+        generateMenu.add(qualityTargetMenuItem);
+
+        JMenuItem rewindMenuItem = new JMenuItem("Rewind to Generation...");
+        generateMenu.add(rewindMenuItem);
+
+        JMenuItem exportHistoryMenuItem = new JMenuItem("Export History...");
+        generateMenu.add(exportHistoryMenuItem);
+
+        JMenuItem clearHistoryMenuItem = new JMenuItem("Clear History");
+        generateMenu.add(clearHistoryMenuItem);
 
         JMenuItem borderMenuItem = new JMenuItem("Insert Border");
         generateMenu.add(borderMenuItem);
 
+        JMenu fillMenu = new JMenu("Random Fill");
+        generateMenu.add(fillMenu);
+        String[] patternNames = {"Density Fill", "Centre Blob Fill", "Noise Fill"};
+        for (MazeSeeder.Pattern pattern : MazeSeeder.Pattern.values()) {
+            JMenuItem fillMenuItem = new JMenuItem(patternNames[pattern.ordinal()]);
+            fillMenuItem.addActionListener(e -> randomFill(pattern));
+            fillMenu.add(fillMenuItem);
+        }
+        fillMenu.addSeparator();
+        JMenuItem seedMenuItem = new JMenuItem("Set Seed...");
+        fillMenu.add(seedMenuItem);
+        JMenuItem densityMenuItem = new JMenuItem("Set Fill Density...");
+        fillMenu.add(densityMenuItem);
+
         JMenu solveMenu = new JMenu("Solve");
         solveMenu.setMnemonic(KeyEvent.VK_S);
         menuBar.add(solveMenu);
@@ -102,6 +215,41 @@ public class CellularAutomatonMazeGenerator {
         JMenuItem stopSolveOnEdgeItem = new JMenuItem("Stop Solving if on Edge");
         solveMenu.add(stopSolveOnEdgeItem);
 
+        JMenu strategyMenu = new JMenu("Strategy");
+        solveMenu.add(strategyMenu);
+        ButtonGroup strategyGroup = new ButtonGroup();
+        String[] strategyNames = {"Random Fill", "Breadth-First Search", "A* Search", "Bidirectional Breadth-First Search"};
+        for (int i = 0; i < strategyNames.length; i++) {
+            int strategy = i;
+            JRadioButtonMenuItem strategyMenuItem = new JRadioButtonMenuItem(strategyNames[i], i == solveStrategy);
+            strategyMenuItem.addActionListener(e -> {
+                solveStrategy = strategy;
+                solveStart = null;
+                updateStatus("Solving with " + strategyNames[strategy]);
+            });
+            strategyGroup.add(strategyMenuItem);
+            strategyMenu.add(strategyMenuItem);
+        }
+
+        JMenu viewMenu = new JMenu("View");
+        viewMenu.setMnemonic(KeyEvent.VK_V);
+        menuBar.add(viewMenu);
+
+        JCheckBoxMenuItem metricsOverlayMenuItem = new JCheckBoxMenuItem("Metrics Overlay", showMetrics);
+        viewMenu.add(metricsOverlayMenuItem);
+
+        JCheckBoxMenuItem qualityOverlayMenuItem = new JCheckBoxMenuItem("Quality Overlay", showQuality);
+        viewMenu.add(qualityOverlayMenuItem);
+
+        JMenuItem exportMetricsMenuItem = new JMenuItem("Export Metrics...");
+        viewMenu.add(exportMetricsMenuItem);
+
+        JMenuItem stopExportMenuItem = new JMenuItem("Stop Metrics Export");
+        viewMenu.add(stopExportMenuItem);
+
+        JMenuItem resetMetricsMenuItem = new JMenuItem("Reset Metrics");
+        viewMenu.add(resetMetricsMenuItem);
+
         menuBar.add(Box.createHorizontalGlue());
 
         statusLabel = new JLabel();
@@ -109,23 +257,21 @@ public class CellularAutomatonMazeGenerator {
         menuBar.add(statusLabel);
 
         //Action Listeners
+        saveMenuItem.addActionListener(e -> saveMaze());
+
+        loadMenuItem.addActionListener(e -> loadMaze());
+
         exitMenuItem.addActionListener(e -> System.exit(0));
 
         startGenerationMenuItem.addActionListener(e -> {
             //Stop solve thread
             selectSolve = false;
-            if (solveThread != null) {
-                solveThread.interrupt();
-            }
-            generationRunning = true;
+            solveScheduler.stop();
             startGeneration();
         });
 
         stopGenerationMenuItem.addActionListener(e -> {
-            generationRunning = false;
-            if (generationThread != null) {
-                generationThread.interrupt();
-            }
+            stopGeneration();
             updateStatus("Maze generation stopped");
         });
 
@@ -133,36 +279,128 @@ public class CellularAutomatonMazeGenerator {
             resetGrid();
         });
 
-        altRuleMenuItem.addActionListener(e -> {
-            if (generationRule == 0) {
-                generationRule = 1;
-                altRuleMenuItem.setText("Use: B3/S1234 Rule");
-                updateStatus("Changed rule to B3/S12345");
-            } else {
-                generationRule = 0;
-                altRuleMenuItem.setText("Use: B3/S12345 Rule");
-                updateStatus("Changed rule to B3/S1234");
+        customRuleMenuItem.addActionListener(e -> {
+            String rulestring = JOptionPane.showInputDialog(frame,
+                    "Rulestring, e.g. B3/S1234, B3/S1234/C4 or R2,C0,M0,S4..12,B6..8,NM", generationRule.toString());
+            if (rulestring == null) {
+                return;
+            }
+            try {
+                setGenerationRule(MazeRule.parse(rulestring));
+                updateStatus("Changed rule to " + generationRule);
+            } catch (IllegalArgumentException ex) {
+                updateStatus(ex.getMessage());
             }
         });
 
         borderMenuItem.addActionListener(e -> createBorder());
 
+        qualityTargetMenuItem.addActionListener(e -> {
+            String spec = JOptionPane.showInputDialog(frame, "Stop generating once every condition holds, e.g. "
+                    + "deadEnds<=1600,longestPath>=120\nMetrics: wallDensity, deadEnds, junctions, corridors, "
+                    + "meanCorridor, longestCorridor, regions, longestPath\nLeave empty to generate until the maze "
+                    + "converges", qualityTarget == null ? "" : qualityTarget.toString());
+            if (spec == null) {
+                return;
+            }
+            try {
+                qualityTarget = spec.trim().isEmpty() ? null : MazeQuality.Target.parse(spec);
+                updateStatus(qualityTarget == null ? "Generating until the maze converges"
+                        : "Generation stops once " + qualityTarget);
+            } catch (IllegalArgumentException ex) {
+                updateStatus(ex.getMessage());
+            }
+        });
+
+        rewindMenuItem.addActionListener(e -> {
+            String value = JOptionPane.showInputDialog(frame, "Generation to rewind to ("
+                    + history.getOldestGeneration() + " to " + history.getNewestGeneration() + ")");
+            if (value == null) {
+                return;
+            }
+            try {
+                rewindTo(Long.parseLong(value.trim()));
+            } catch (NumberFormatException ex) {
+                updateStatus("Invalid generation: " + value);
+            }
+        });
+
+        exportHistoryMenuItem.addActionListener(e -> exportHistory());
+
+        clearHistoryMenuItem.addActionListener(e -> {
+            history.clear();
+            updateHistorySlider();
+            updateStatus("History cleared");
+        });
+
+        metricsOverlayMenuItem.addActionListener(e -> {
+            showMetrics = metricsOverlayMenuItem.isSelected();
+            updateOverlay();
+        });
+
+        qualityOverlayMenuItem.addActionListener(e -> {
+            showQuality = qualityOverlayMenuItem.isSelected();
+            if (showQuality) {
+                reportQuality();
+            } else {
+                updateOverlay();
+            }
+        });
+
+        exportMetricsMenuItem.addActionListener(e -> exportMetrics());
+
+        stopExportMenuItem.addActionListener(e -> {
+            metrics.stopExport();
+            updateStatus("Metrics export stopped");
+        });
+
+        resetMetricsMenuItem.addActionListener(e -> {
+            metrics.reset();
+            updateStatus("Metrics reset");
+        });
+
+        seedMenuItem.addActionListener(e -> {
+            String value = JOptionPane.showInputDialog(frame, "Seed of random fills and random fill solving", seed);
+            if (value == null) {
+                return;
+            }
+            try {
+                seed = Long.parseLong(value.trim());
+                updateStatus("Seed set to " + seed);
+            } catch (NumberFormatException ex) {
+                updateStatus("Invalid seed: " + value);
+            }
+        });
+
+        densityMenuItem.addActionListener(e -> {
+            String value = JOptionPane.showInputDialog(frame, "Chance of a cell being alive (0 to 1)", fillDensity);
+            if (value == null) {
+                return;
+            }
+            try {
+                double density = Double.parseDouble(value.trim());
+                if (density < 0 || density > 1) {
+                    throw new NumberFormatException();
+                }
+                fillDensity = density;
+                updateStatus("Fill density set to " + fillDensity);
+            } catch (NumberFormatException ex) {
+                updateStatus("Invalid density: " + value);
+            }
+        });
+
         startSolveMenuItem.addActionListener(e -> {
             //Stop main generation thread
-            generationRunning = false;
-            if (generationThread != null) {
-                generationThread.interrupt();
-            }
+            stopGeneration();
             updateStatus("Select a start point to solve from");
+            solveStart = null;
             selectSolve = true;
         });
 
         stopSolveMenuItem.addActionListener(e -> {
             updateStatus("Solving algorithm stopped");
             selectSolve = false;
-            if (solveThread != null) {
-                solveThread.interrupt();
-            }
+            solveScheduler.stop();
         });
 
         resetSolveMenuItem.addActionListener(e -> resetSolvePath());
@@ -181,6 +419,41 @@ public class CellularAutomatonMazeGenerator {
 
     }
 
+    /**
+     * Adds a rule to the rule picker, above the custom rule item
+     * @param text - menu item text
+     * @param rule - rule selected by the item
+     * @return - the new menu item
+     */
+    public static JRadioButtonMenuItem addRuleMenuItem(String text, MazeRule rule) {
+        JRadioButtonMenuItem ruleMenuItem = new JRadioButtonMenuItem(text);
+        ruleMenuItem.putClientProperty(MazeRule.class, rule);
+        ruleMenuItem.addActionListener(e -> {
+            setGenerationRule(rule);
+            updateStatus("Changed rule to " + rule);
+        });
+        ruleGroup.add(ruleMenuItem);
+        ruleMenu.insert(ruleMenuItem, ruleGroup.getButtonCount() - 1);
+        return ruleMenuItem;
+    }
+
+    /**
+     * Sets the generation rule and selects it in the rule picker, adding it if it is not listed yet
+     * @param rule - compiled rule, see MazeRule.parse
+     */
+    public static void setGenerationRule(MazeRule rule) {
+        generationRule = rule;
+        generationScheduler.execute(() -> mazeEngine.setRule(rule));
+        for (Component item : ruleMenu.getMenuComponents()) {
+            if (item instanceof JRadioButtonMenuItem
+                    && rule.equals(((JRadioButtonMenuItem) item).getClientProperty(MazeRule.class))) {
+                ((JRadioButtonMenuItem) item).setSelected(true);
+                return;
+            }
+        }
+        addRuleMenuItem(rule.toString(), rule).setSelected(true);
+    }
+
     /**
      * Updates status label in menu bar
      * @param status - New string for status bar
@@ -190,40 +463,348 @@ public class CellularAutomatonMazeGenerator {
     }
 
     /**
-     * Initialises 2D array of JPanels for maze grid
+     * Initialises maze engine and maze grid component
      */
     public static void initialiseMazeGrid() {
-        mazeGrid = new JPanel[width/gridSize][height/gridSize];
-        int x = 0;
-        int y = 0;
-        for (int i = 0; i < width/gridSize; i++) {
-            for (int j = 0; j < height/gridSize; j++) {
-                mazeGrid[i][j] = new JPanel();
-                mazeGrid[i][j].setBackground(deadColor);
-                mazeGrid[i][j].setBounds(x, y, gridSize, gridSize);
-                mazeGrid[i][j].setName(i + "," + j + "#");
-                mazeGrid[i][j].addMouseListener(gridMouseListener);
-                frame.add(mazeGrid[i][j]);
-                y += gridSize;
+        mazeEngine = new MazeEngine(width/gridSize, height/gridSize);
+        mazeEngine.setRule(generationRule);
+        mazeEngine.setMetrics(metrics);
+        frameHandoff = new FrameHandoff(width/gridSize, height/gridSize);
+        //Runs on the generation thread, a generation not drawn before the next one is published is dropped
+        history = new MazeHistory(width/gridSize, height/gridSize);
+        quality = new MazeQuality(width/gridSize, height/gridSize);
+        mazeEngine.addGenerationListener(engine -> {
+            history.record(engine.getGeneration(), engine.getGrid());
+            if (showQuality && System.nanoTime() - lastQualityReport > qualityInterval * 1_000_000L) {
+                publishQuality();
+            }
+            if (!frameHandoff.publish(engine.getGrid(), engine.getGeneration())) {
+                metrics.recordFrameDropped();
+            }
+        });
+        renderTimer = new Timer(renderInterval(), e -> renderFrame());
+        renderTimer.start();
+        mazeSolver = new MazeSolver(width/gridSize, height/gridSize);
+        mazeCanvas = new MazeCanvas(width/gridSize, height/gridSize, gridSize, aliveColor, deadColor, solveColor);
+        mazeCanvas.addMouseListener(gridMouseListener);
+        mazeCanvas.addMouseMotionListener(gridMouseListener);
+        frame.add(mazeCanvas, BorderLayout.CENTER);
+
+        //History scrub bar
+        JPanel historyPanel = new JPanel(new BorderLayout());
+        JButton backButton = new JButton("<");
+        backButton.setToolTipText("Step back one generation");
+        backButton.addActionListener(e -> rewindTo(mazeEngine.getGeneration() - 1));
+        JButton forwardButton = new JButton(">");
+        forwardButton.setToolTipText("Step forward one generation");
+        forwardButton.addActionListener(e -> rewindTo(mazeEngine.getGeneration() + 1));
+        historySlider = new JSlider(0, 0, 0);
+        historySlider.addChangeListener(e -> {
+            if (!updatingHistorySlider && historySlider.getValue() != mazeEngine.getGeneration()) {
+                rewindTo(historySlider.getValue());
+            }
+        });
+        historyLabel = new JLabel();
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT, 2, 0));
+        buttons.add(backButton);
+        buttons.add(forwardButton);
+        buttons.add(historyLabel);
+        historyPanel.add(buttons, BorderLayout.WEST);
+        historyPanel.add(historySlider, BorderLayout.CENTER);
+        frame.add(historyPanel, BorderLayout.SOUTH);
+        updateHistorySlider();
+    }
+
+    /**
+     * Moves the history slider to the generation shown and stretches it over the generations held
+     */
+    public static void updateHistorySlider() {
+        long oldest = Math.max(0, history.getOldestGeneration());
+        long newest = Math.max(oldest, history.getNewestGeneration());
+        long shown = Math.max(oldest, Math.min(newest, mazeEngine.getGeneration()));
+        updatingHistorySlider = true;
+        historySlider.setMinimum((int) Math.min(Integer.MAX_VALUE, oldest));
+        historySlider.setMaximum((int) Math.min(Integer.MAX_VALUE, newest));
+        historySlider.setValue((int) Math.min(Integer.MAX_VALUE, shown));
+        updatingHistorySlider = false;
+        historyLabel.setText(history.size() == 0 ? "No history" : "Generation " + mazeEngine.getGeneration()
+                + " (" + oldest + " to " + newest + ")");
+    }
+
+    /**
+     * Stops generation and replaces the maze grid with a generation from the history, generating from there
+     * replaces the later generations
+     * @param generation - generation to show
+     */
+    public static void rewindTo(long generation) {
+        //Checked before stopping, so asking for a generation outside the history leaves generation running
+        if (!history.contains(generation)) {
+            updateStatus("Generation " + generation + " is not in the history");
+            updateHistorySlider();
+            return;
+        }
+        stopGeneration();
+        if (!history.restore(generation, mazeEngine.getGrid())) {
+            //Dropped by a generation recorded before generation stopped
+            updateStatus("Generation " + generation + " is not in the history");
+            updateHistorySlider();
+            return;
+        }
+        mazeEngine.setGeneration(generation);
+        refreshMazeGrid();
+        updateHistorySlider();
+        updateStatus("Showing generation " + generation);
+    }
+
+    /**
+     * Asks for a range of generations and a file, then writes the generations held in the range to the file
+     * as a multi-maze file
+     */
+    public static void exportHistory() {
+        String value = JOptionPane.showInputDialog(frame, "Generations to export, e.g. 10-200",
+                history.getOldestGeneration() + "-" + history.getNewestGeneration());
+        if (value == null) {
+            return;
+        }
+        long from;
+        long to;
+        try {
+            String[] range = value.trim().split("\\s*-\\s*");
+            from = Long.parseLong(range[0]);
+            to = range.length > 1 ? Long.parseLong(range[1]) : from;
+        } catch (NumberFormatException ex) {
+            updateStatus("Invalid generation range: " + value);
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        if (!file.getName().contains(".")) {
+            file = new File(file.getPath() + MazeFile.EXTENSION);
+        }
+        try {
+            int written = history.export(file.toPath(), from, to, generationRule.toString(), seed, true);
+            updateStatus("Exported " + written + " generations to " + file.getName());
+        } catch (IOException | IllegalArgumentException ex) {
+            updateStatus("Could not export history: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Starts sampling the metrics, registers them with JMX and starts probing the EDT lag
+     */
+    public static void initialiseMetrics() {
+        metrics.addSampleListener(snapshot -> SwingUtilities.invokeLater(() -> {
+            if (showMetrics) {
+                updateOverlay();
+            }
+            IOException failure = metrics.getExportFailure();
+            if (failure != null && !metrics.isExporting()) {
+                updateStatus("Metrics export failed: " + failure.getMessage());
+            }
+        }));
+        metrics.start(MazeMetrics.DEFAULT_PERIOD);
+        try {
+            metrics.register();
+        } catch (JMException ex) {
+            updateStatus("Metrics not available over JMX: " + ex.getMessage());
+        }
+        //Probe waits for each event to run, so a blocked EDT delays the probe instead of flooding the queue
+        Thread edtProbe = new Thread(() -> {
+            while (true) {
+                long posted = System.nanoTime();
+                try {
+                    SwingUtilities.invokeAndWait(() -> metrics.recordEdtLag(System.nanoTime() - posted));
+                    Thread.sleep(edtProbeInterval);
+                } catch (InterruptedException ex) {
+                    return;
+                } catch (InvocationTargetException ignored) {}
+            }
+        }, "edt-lag-probe");
+        edtProbe.setDaemon(true);
+        edtProbe.start();
+    }
+
+    /**
+     * Asks for a file and appends a metrics sample to it every sampling period, as CSV or as JSON lines
+     * when the file name ends in .json
+     */
+    public static void exportMetrics() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        if (!file.getName().contains(".")) {
+            file = new File(file.getPath() + ".csv");
+        }
+        try {
+            metrics.startExport(file.toPath());
+            updateStatus("Exporting metrics to " + file.getName());
+        } catch (IOException ex) {
+            updateStatus("Could not export metrics: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Gives the time between render ticks, one display refresh when the refresh rate is known
+     * @return - render tick interval (ms)
+     */
+    public static int renderInterval() {
+        try {
+            int refreshRate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDisplayMode().getRefreshRate();
+            if (refreshRate > 0) {
+                return Math.max(1, 1000 / refreshRate);
+            }
+        } catch (HeadlessException ignored) {}
+        return 16;
+    }
+
+    /**
+     * Render tick, shows the latest generation published by the generation thread and the cells marked by the
+     * solve thread since the last tick
+     */
+    public static void renderFrame() {
+        FrameHandoff.Frame latest = frameHandoff.take();
+        if (latest != null) {
+            mazeCanvas.refresh(latest.getGrid());
+            frameHandoff.release(latest);
+            metrics.recordFrameRendered();
+            updateHistorySlider();
+        }
+        int columns = width/gridSize;
+        Integer cell;
+        while ((cell = solveMarks.poll()) != null) {
+            mazeCanvas.setSolvePath(cell % columns, cell / columns, true);
+        }
+    }
+
+    /**
+     * Updates maze grid component to show the cells of the maze engine, solve pathways are kept.
+     * Only called while the maze engine is not generating, a frame still waiting for the render tick is dropped.
+     */
+    public static void refreshMazeGrid() {
+        frameHandoff.clear();
+        mazeCanvas.refresh(mazeEngine.getGrid());
+        updateHistorySlider();
+        if (showQuality) {
+            reportQuality();
+        }
+    }
+
+    /**
+     * Changes the maze engine between two generations while generation runs, or straight away when stopped,
+     * the render tick then shows the change
+     * @param edit - change to the maze engine
+     */
+    public static void editGrid(Runnable edit) {
+        generationScheduler.execute(() -> {
+            edit.run();
+            frameHandoff.publish(mazeEngine.getGrid(), mazeEngine.getGeneration());
+            if (showQuality) {
+                publishQuality();
             }
-            x += gridSize;
-            y = 0;
+        });
+    }
+
+    /**
+     * Brings the quality metrics up to date with the grid from the generation thread, or straight away when
+     * generation is stopped, and shows them on the overlay
+     */
+    public static void reportQuality() {
+        generationScheduler.execute(CellularAutomatonMazeGenerator::publishQuality);
+    }
+
+    /**
+     * Updates the quality metrics from the cells changed since the last update and hands a report to the overlay,
+     * must run on the generation thread or while generation is stopped
+     */
+    public static void publishQuality() {
+        quality.update(mazeEngine.getGrid());
+        qualityLines = quality.toLines();
+        lastQualityReport = System.nanoTime();
+        SwingUtilities.invokeLater(CellularAutomatonMazeGenerator::updateOverlay);
+    }
+
+    /**
+     * Checks the quality target against the current generation, must run on the generation thread
+     * @return - true if a target is set and met
+     */
+    public static boolean isQualityTargetMet() {
+        MazeQuality.Target target = qualityTarget;
+        if (target == null) {
+            return false;
+        }
+        quality.update(mazeEngine.getGrid());
+        return target.isMet(quality);
+    }
+
+    /**
+     * Shows the enabled metrics and quality lines over the maze grid
+     */
+    public static void updateOverlay() {
+        ArrayList<String> lines = new ArrayList<>();
+        if (showMetrics) {
+            lines.addAll(Arrays.asList(metrics.getLatest().toLines()));
+        }
+        if (showQuality) {
+            lines.addAll(Arrays.asList(qualityLines));
         }
+        mazeCanvas.setOverlay(lines.isEmpty() ? null : lines.toArray(new String[0]));
+    }
+
+    /**
+     * Checks if a cell is dead and not yet part of a solve pathway
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @return - true if the cell is open for solving
+     */
+    public static boolean isOpenCell(int x, int y) {
+        return !mazeEngine.getGrid().isAlive(x, y) && !mazeCanvas.isSolvePath(x, y);
+    }
+
+    /**
+     * Checks if a cell is dead and not yet part of a solve pathway, used by the solve thread
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @param marks - solve pathway cells, packed like MazeGrid
+     * @return - true if the cell is open for solving
+     */
+    public static boolean isOpenCell(int x, int y, long[] marks) {
+        MazeGrid grid = mazeEngine.getGrid();
+        return !grid.isAlive(x, y) && (marks[y * grid.getWordsPerRow() + (x >>> 6)] & (1L << x)) == 0;
+    }
+
+    /**
+     * Marks a cell as part of a solve pathway from the solve thread, the render tick draws it
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @param marks - solve pathway cells, packed like MazeGrid
+     */
+    public static void markSolvePath(int x, int y, long[] marks) {
+        marks[y * mazeEngine.getGrid().getWordsPerRow() + (x >>> 6)] |= 1L << x;
+        solveMarks.add(y * (width/gridSize) + x);
     }
 
     /**
      * Mouse listener for drawing on maze grid
      */
-    private static final MouseListener gridMouseListener = new MouseAdapter() {
+    private static final MouseAdapter gridMouseListener = new MouseAdapter() {
         boolean mouseDown = false;
         @Override
         public void mousePressed(MouseEvent e) {
             if (selectSolve) {
-                String s = e.getSource().toString();
-                int x = Integer.parseInt(s.substring(s.indexOf("[") + 1, s.indexOf(",")));
-                int y = Integer.parseInt(s.substring(s.indexOf(",") + 1, s.indexOf("#")));
-                if (mazeGrid[x][y].getBackground() == deadColor) {
-                    solve(x, y);
+                int x = mazeCanvas.cellX(e.getX());
+                int y = mazeCanvas.cellY(e.getY());
+                if (isOpenCell(x, y)) {
+                    if (solveStrategy == 0) {
+                        solve(x, y);
+                    } else {
+                        solveShortestPath(x, y);
+                    }
                 }
             } else {
                 mouseDown = true;
@@ -237,7 +818,7 @@ public class CellularAutomatonMazeGenerator {
         }
 
         @Override
-        public void mouseEntered(MouseEvent e) {
+        public void mouseDragged(MouseEvent e) {
             if (mouseDown) {
                 drawCellOnGrid(e);
             }
@@ -249,128 +830,138 @@ public class CellularAutomatonMazeGenerator {
      * @param e MouseEvent sent from mouse listener
      */
     public static void drawCellOnGrid(MouseEvent e) {
-        String s = e.getSource().toString();
-        int x = Integer.parseInt(s.substring(s.indexOf("[") + 1, s.indexOf(",")));
-        int y = Integer.parseInt(s.substring(s.indexOf(",") + 1, s.indexOf("#")));
-        if (SwingUtilities.isRightMouseButton(e)) {
-            mazeGrid[x][y].setBackground(deadColor);
-        } else {
-            mazeGrid[x][y].setBackground(aliveColor);
-        }
+        int x = mazeCanvas.cellX(e.getX());
+        int y = mazeCanvas.cellY(e.getY());
+        boolean alive = !SwingUtilities.isRightMouseButton(e);
+        editGrid(() -> mazeEngine.setCell(x, y, alive));
     }
 
     /**
-     * Checks for alive neighbours of a specified cell
-     * @param x - x coordinate of cell to check
-     * @param y - y coordinate of cell to check
-     * @return - returns number of alive cells as an int
+     * Starts the cellular maze generation on the generation thread at stepRate
      */
-    public static int checkNeighbours(int x, int y) {
-        int aliveNeighbours = 0;
-        //x - 1, y - 1
-        if (x > 0 && y > 0) {
-            if (mazeGrid[x - 1][y - 1].getBackground() == aliveColor) {
-                aliveNeighbours++;
-            }
-        }
-        //x, y - 1;
-        if (y > 0) {
-            if (mazeGrid[x][y - 1].getBackground() == aliveColor) {
-                aliveNeighbours++;
-            }
-        }
-        //x + 1, y - 1;
-        if (x < width/gridSize - 1 && y > 0) {
-            if (mazeGrid[x + 1][y - 1].getBackground() == aliveColor) {
-                aliveNeighbours++;
-            }
-        }
-        //x - 1, y;
-        if (x > 0) {
-            if (mazeGrid[x - 1][y].getBackground() == aliveColor) {
-                aliveNeighbours++;
-            }
-        }
-        //x + 1, y;
-        if (x < width/gridSize - 1) {
-            if (mazeGrid[x + 1][y].getBackground() == aliveColor) {
-                aliveNeighbours++;
-            }
-        }
-        //x -1, y + 1;
-        if (x > 0 && y < height/gridSize - 1) {
-            if (mazeGrid[x - 1][y + 1].getBackground() == aliveColor) {
-                aliveNeighbours++;
-            }
-        }
-        //x, y + 1;
-        if (y < height/gridSize - 1) {
-            if (mazeGrid[x][y + 1].getBackground() == aliveColor) {
-                aliveNeighbours++;
-            }
-        }
-        //x + 1, y + 1;
-        if (x < width/gridSize - 1 && y < height/gridSize - 1) {
-            if (mazeGrid[x + 1][y + 1].getBackground() == aliveColor) {
-                aliveNeighbours++;
+    public static void startGeneration() {
+        updateStatus("Generating maze pattern");
+        generationScheduler.stop();
+        history.record(mazeEngine.getGeneration(), mazeEngine.getGrid());
+        generationScheduler.setRate(stepRate);
+        generationScheduler.start(() -> {
+            mazeEngine.step();
+            return !mazeEngine.isConverged() && !isQualityTargetMet();
+        }, () -> {
+            //Maze has stabilised or met the quality target, the final generation is already the latest frame
+            if (showQuality) {
+                publishQuality();
             }
-        }
-        return aliveNeighbours;
+            MazeQuality.Target target = qualityTarget;
+            String status = !mazeEngine.isConverged() && target != null
+                    ? "Quality target " + target + " met at generation " + mazeEngine.getGeneration()
+                    : mazeEngine.getConvergedPeriod() == 1
+                    ? "Maze converged at generation " + mazeEngine.getConvergedGeneration()
+                    : "Maze oscillating with period " + mazeEngine.getConvergedPeriod()
+                            + " from generation " + mazeEngine.getConvergedGeneration();
+            SwingUtilities.invokeLater(() -> updateStatus(status));
+        });
+    }
+
+    /**
+     * Stops the cellular maze generation, waiting for the generation being stepped, and shows the last generation
+     */
+    public static void stopGeneration() {
+        generationScheduler.stop();
+        refreshMazeGrid();
     }
 
     /**
-     * Sets cell to alive or dead based on automation rules
-     * @param x - x coordinate of cell to set
-     * @param y - y coordinate of cell to check
-     * @param aliveNeighbours - number of alive cells
+     * Asks for a file and saves the maze grid to it in the binary maze format, with the seed of the fill
      */
-    public static void setNextCell(int x, int y, int aliveNeighbours) {
-        if (aliveNeighbours == 3) {
-            mazeGrid[x][y].setBackground(aliveColor);
-        } else if (aliveNeighbours > (4 + generationRule) || aliveNeighbours == 0) {
-            mazeGrid[x][y].setBackground(deadColor);
+    public static void saveMaze() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        if (!file.getName().contains(".")) {
+            file = new File(file.getPath() + MazeFile.EXTENSION);
+        }
+        try {
+            MazeFile.save(file.toPath(), mazeEngine.getGrid(), generationRule.toString(), seed,
+                    mazeEngine.getGeneration(), true);
+            updateStatus("Saved maze to " + file.getName());
+        } catch (IOException ex) {
+            updateStatus("Could not save maze: " + ex.getMessage());
         }
     }
 
     /**
-     * Starts the cellular maze generation in new thread
+     * Asks for a maze file and loads its first maze into the maze grid, restoring its generation and seed
      */
-    public static void startGeneration() {
-        updateStatus("Generating maze pattern");
-        generationThread = new Thread(() -> {
-            while (generationRunning) {
-                for (int i = 0; i < width/gridSize; i++) {
-                    for (int j = 0; j < height/gridSize; j++) {
-                        int aliveNeighbours = checkNeighbours(i, j);
-                        setNextCell(i, j, aliveNeighbours);
-                    }
-                }
-                try {
-                    Thread.sleep(timeout);
-                } catch (InterruptedException ignored) {}
+    public static void loadMaze() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        stopGeneration();
+        try (MazeFile.Reader reader = new MazeFile.Reader(file.toPath())) {
+            if (!reader.next()) {
+                updateStatus("No maze found in " + file.getName());
+                return;
             }
-        });
-        generationThread.start();
+            if (reader.getWidth() != width/gridSize || reader.getHeight() != height/gridSize) {
+                updateStatus("Maze is " + reader.getWidth() + "x" + reader.getHeight() + ", grid is "
+                        + width/gridSize + "x" + height/gridSize);
+                return;
+            }
+            MazeRule rule = MazeRule.parse(reader.getRule());
+            //Decode into a scratch grid first, a corrupt record leaves the current maze untouched
+            MazeGrid loaded = new MazeGrid(reader.getWidth(), reader.getHeight());
+            reader.readInto(loaded);
+            mazeEngine.reset();
+            history.clear();
+            setGenerationRule(rule);
+            mazeEngine.getGrid().copyFrom(loaded);
+            mazeEngine.invalidate();
+            mazeEngine.setGeneration(reader.getGeneration());
+            seed = reader.getSeed();
+            refreshMazeGrid();
+            updateStatus("Loaded " + reader.getRule() + " maze at generation " + reader.getGeneration() + " from "
+                    + file.getName());
+        } catch (IOException | IllegalArgumentException ex) {
+            updateStatus("Could not load maze: " + ex.getMessage());
+        }
     }
 
     /**
      * Resets the maze grid back to default
      */
     public static void resetGrid() {
-        generationRunning = false;
-        if (generationThread != null) {
-            generationThread.interrupt();
-        }
-        for (int i = 0; i < width/gridSize; i++) {
-            for (int j = 0; j < height/gridSize; j++) {
-                mazeGrid[i][j].setBackground(deadColor);
-            }
-        }
+        stopGeneration();
+        mazeEngine.reset();
+        history.clear();
+        mazeCanvas.clearSolvePaths();
+        refreshMazeGrid();
         updateStatus("Maze grid reset");
     }
 
     /**
-     * Attempts to solve/find pathway using random fill/intersection algorithm
+     * Replaces the maze grid with a seeded random fill, the same seed and density always give the same grid
+     * @param pattern - shape of the fill
+     */
+    public static void randomFill(MazeSeeder.Pattern pattern) {
+        stopGeneration();
+        mazeEngine.reset();
+        history.clear();
+        new MazeSeeder(pattern, fillDensity).fill(mazeEngine.getGrid(), seed, mazeEngine.getParallelStepper());
+        mazeEngine.invalidate();
+        mazeCanvas.clearSolvePaths();
+        refreshMazeGrid();
+        updateStatus("Filled maze grid with seed " + seed);
+    }
+
+    /**
+     * Attempts to solve/find pathway using random fill/intersection algorithm, intersections are chosen with a
+     * random generator seeded by seed so a solve can be repeated. The walk runs on the solve thread at stepRate
+     * with its own copy of the solve pathway marks, new marks are drawn by the render tick.
      * @param x - X coordinate of starting point to solve from
      * @param y - Y coordinate of starting point to solve from
      */
@@ -378,125 +969,158 @@ public class CellularAutomatonMazeGenerator {
         updateStatus("Attempting to find maze solution");
         ArrayList<int[]> path = new ArrayList<>();
         ArrayList<int[]> intersections = new ArrayList<>();
-        path.add(new int[] {x, y});
-        //New thread for solve algorithm
-        solveThread = new Thread(() -> {
-            boolean terminated = false;
-            int[] currentPoint = path.get(0);
-            while (selectSolve) {
-                int currentX = currentPoint[0];
-                int currentY = currentPoint[1];
-                mazeGrid[currentX][currentY].setBackground(solveColor);
-                int neighbourPathCount = 0;
-                ArrayList<int[]> nextPoints = new ArrayList<>();
-                int[] nextPoint = new int[2];
-                //Check surrounding cells for dead cells
-                //above - x, y - 1
-                if (currentY > 0) {
-                    if (mazeGrid[currentX][currentY - 1].getBackground() == deadColor) {
-                        neighbourPathCount++;
-                        nextPoints.add(new int[] {currentX, currentY - 1});
-                    }
+        SplittableRandom random = new SplittableRandom(seed);
+        solveScheduler.stop();
+        renderFrame();
+        long[] marks = mazeCanvas.getSolvePaths();
+        int[][] current = {new int[] {x, y}};
+        path.add(current[0]);
+        solveScheduler.setRate(stepRate);
+        solveScheduler.start(() -> {
+            int[] currentPoint = current[0];
+            int currentX = currentPoint[0];
+            int currentY = currentPoint[1];
+            markSolvePath(currentX, currentY, marks);
+            metrics.recordSolverNodes(1);
+            int neighbourPathCount = 0;
+            ArrayList<int[]> nextPoints = new ArrayList<>();
+            int[] nextPoint = null;
+            //Check surrounding cells for dead cells
+            //above - x, y - 1
+            if (currentY > 0) {
+                if (isOpenCell(currentX, currentY - 1, marks)) {
+                    neighbourPathCount++;
+                    nextPoints.add(new int[] {currentX, currentY - 1});
                 }
-                //right - x + 1, y
-                if (currentX < width/gridSize - 1) {
-                    if (mazeGrid[currentX + 1][currentY].getBackground() == deadColor) {
-                        neighbourPathCount++;
-                        nextPoints.add(new int[] {currentX + 1, currentY});
-                    }
+            }
+            //right - x + 1, y
+            if (currentX < width/gridSize - 1) {
+                if (isOpenCell(currentX + 1, currentY, marks)) {
+                    neighbourPathCount++;
+                    nextPoints.add(new int[] {currentX + 1, currentY});
                 }
-                //below - x, y + 1
-                if (currentY < height/gridSize - 1) {
-                    if (mazeGrid[currentX][currentY + 1].getBackground() == deadColor) {
-                        neighbourPathCount++;
-                        nextPoints.add(new int[] {currentX, currentY + 1});
-                    }
+            }
+            //below - x, y + 1
+            if (currentY < height/gridSize - 1) {
+                if (isOpenCell(currentX, currentY + 1, marks)) {
+                    neighbourPathCount++;
+                    nextPoints.add(new int[] {currentX, currentY + 1});
                 }
-                //left - x -1, y
-                if (currentX > 0) {
-                    if (mazeGrid[currentX - 1][currentY].getBackground() == deadColor) {
-                        neighbourPathCount++;
-                        nextPoints.add(new int[] {currentX - 1, currentY});
-                    }
+            }
+            //left - x -1, y
+            if (currentX > 0) {
+                if (isOpenCell(currentX - 1, currentY, marks)) {
+                    neighbourPathCount++;
+                    nextPoints.add(new int[] {currentX - 1, currentY});
                 }
-                //Decide next move based on neighbours
-                //dead end
-                if (neighbourPathCount == 0) {
-                    for (int i = intersections.size() - 1; i >= 0; i--) {
-                        if (isStillIntersection(intersections.get(i))) {
-                            nextPoint = intersections.get(i);
-                            break;
-                        } else {
-                            intersections.remove(i);
-                            if (i == 0) {
-                                //No more possible moves, terminate solution thread and loop
-                                terminated = true;
-                                selectSolve = false;
-                                solveThread.interrupt();
-                            }
-                        }
+            }
+            //Decide next move based on neighbours
+            //dead end
+            if (neighbourPathCount == 0) {
+                for (int i = intersections.size() - 1; i >= 0 && nextPoint == null; i--) {
+                    if (isStillIntersection(intersections.get(i), marks)) {
+                        nextPoint = intersections.get(i);
+                    } else {
+                        intersections.remove(i);
                     }
-                //one path
-                } else if (neighbourPathCount == 1) {
-                    nextPoint = nextPoints.get(0);
-                //multiple path options
-                } else {
-                    //random path selection
-                    intersections.add(currentPoint);
-                    int randomSelection = ThreadLocalRandom.current().nextInt(0, neighbourPathCount);
-                    nextPoint = nextPoints.get(randomSelection);
                 }
-                currentPoint = nextPoint;
-                path.add(currentPoint);
-                if (stopSolveOnEdge) {
-                    if (currentPoint[0] == 0 || currentPoint[0] == width/gridSize - 1 || currentPoint[1] == 0 || currentPoint[1] == height/gridSize - 1) {
-                        mazeGrid[currentPoint[0]][currentPoint[1]].setBackground(solveColor);
+                if (nextPoint == null) {
+                    //No more possible moves, terminate solving
+                    metrics.recordSolve();
+                    SwingUtilities.invokeLater(() -> updateStatus("No more pathways could be found!"));
+                    return false;
+                }
+            //one path
+            } else if (neighbourPathCount == 1) {
+                nextPoint = nextPoints.get(0);
+            //multiple path options
+            } else {
+                //random path selection
+                intersections.add(currentPoint);
+                int randomSelection = random.nextInt(0, neighbourPathCount);
+                nextPoint = nextPoints.get(randomSelection);
+            }
+            current[0] = nextPoint;
+            path.add(nextPoint);
+            if (stopSolveOnEdge) {
+                if (nextPoint[0] == 0 || nextPoint[0] == width/gridSize - 1 || nextPoint[1] == 0 || nextPoint[1] == height/gridSize - 1) {
+                    markSolvePath(nextPoint[0], nextPoint[1], marks);
+                    metrics.recordSolverNodes(1);
+                    metrics.recordSolve();
+                    SwingUtilities.invokeLater(() -> {
                         updateStatus("Possible maze pathway found!");
                         selectSolve = false;
-                        solveThread.interrupt();
-                    }
+                    });
+                    return false;
                 }
-                try {
-                    Thread.sleep(timeout);
-                } catch (InterruptedException ignored) {}
             }
-            if (terminated) {
-                updateStatus("No more pathways could be found!");
-                selectSolve = true;
-            }
-        });
-        solveThread.start();
+            return true;
+        }, null);
+    }
+
+    /**
+     * Finds a shortest path with the selected strategy. The first point selected is the start, the second the end,
+     * or the nearest edge is used as the end when solving stops on an edge
+     * @param x - X coordinate of selected point
+     * @param y - Y coordinate of selected point
+     */
+    public static void solveShortestPath(int x, int y) {
+        int[] path;
+        if (stopSolveOnEdge) {
+            path = mazeSolver.solveToEdge(mazeEngine.getGrid(), x, y);
+        } else if (solveStart == null) {
+            solveStart = new int[] {x, y};
+            mazeCanvas.setSolvePath(x, y, true);
+            updateStatus("Select an end point to solve to");
+            return;
+        } else {
+            MazeSolver.Strategy strategy = MazeSolver.Strategy.values()[solveStrategy - 1];
+            path = mazeSolver.solve(mazeEngine.getGrid(), strategy, solveStart[0], solveStart[1], x, y);
+            solveStart = null;
+        }
+        metrics.recordSolverNodes(mazeSolver.getNodesExpanded());
+        metrics.recordSolve();
+        int cells = width/gridSize;
+        for (int cell : path) {
+            mazeCanvas.setSolvePath(cell % cells, cell / cells, true);
+        }
+        if (path.length == 0) {
+            updateStatus("No pathway found! (" + mazeSolver.getNodesExpanded() + " cells searched)");
+        } else {
+            updateStatus("Shortest pathway found: " + path.length + " cells (" + mazeSolver.getNodesExpanded() + " cells searched)");
+        }
     }
 
     /**
      * Checks if point has any available pathways to follow
      * @param point - 2D array containing points to check
+     * @param marks - solve pathway cells, packed like MazeGrid
      * @return - Returns boolean, true if point has available path/s
      */
-    public static boolean isStillIntersection(int[] point) {
+    public static boolean isStillIntersection(int[] point, long[] marks) {
         int x = point[0];
         int y = point[1];
         //above - x, y - 1
         if (y > 0) {
-            if (mazeGrid[x][y - 1].getBackground() == deadColor) {
+            if (isOpenCell(x, y - 1, marks)) {
                 return true;
             }
         }
         //right - x + 1, y
         if (x < width/gridSize - 1) {
-            if (mazeGrid[x + 1][y].getBackground() == deadColor) {
+            if (isOpenCell(x + 1, y, marks)) {
                 return true;
             }
         }
         //below - x, y + 1
         if (y < height/gridSize - 1) {
-            if (mazeGrid[x][y + 1].getBackground() == deadColor) {
+            if (isOpenCell(x, y + 1, marks)) {
                 return true;
             }
         }
         //left - x -1, y
         if (x > 0) {
-            if (mazeGrid[x - 1][y].getBackground() == deadColor) {
+            if (isOpenCell(x - 1, y, marks)) {
                 return true;
             }
         }
@@ -510,16 +1134,10 @@ public class CellularAutomatonMazeGenerator {
         updateStatus("Maze solution pathways reset");
         //Stop solve thread
         selectSolve = false;
-        if (solveThread != null) {
-            solveThread.interrupt();
-        }
-        for (int i = 0; i < width/gridSize; i++) {
-            for (int j = 0; j < height/gridSize; j++) {
-                if (mazeGrid[i][j].getBackground() == solveColor) {
-                    mazeGrid[i][j].setBackground(deadColor);
-                }
-            }
-        }
+        solveStart = null;
+        solveScheduler.stop();
+        solveMarks.clear();
+        mazeCanvas.clearSolvePaths();
     }
 
     /**
@@ -527,14 +1145,10 @@ public class CellularAutomatonMazeGenerator {
      */
     public static void createBorder() {
         //Add borders to maze grid
-        for (int i = 0; i < width/gridSize; i++) {
-            mazeGrid[i][0].setBackground(aliveColor);
-            mazeGrid[i][height/gridSize - 1].setBackground(aliveColor);
-        }
-        for (int i = 0; i < height/gridSize; i++) {
-            mazeGrid[0][i].setBackground(aliveColor);
-            mazeGrid[width/gridSize - 1][i].setBackground(aliveColor);
-        }
+        editGrid(() -> {
+            mazeEngine.getGrid().createBorder();
+            mazeEngine.invalidate();
+        });
         updateStatus("Inserted border!");
     }
     
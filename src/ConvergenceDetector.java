@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+/**
+ * Title: ConvergenceDetector
+ * Description: Detects fixed points and short period oscillators from a ring of recent grid hashes.
+ * Grid hashes are an XOR of per-word hashes, so a step can update them from the words it changed.
+ */
+
+public class ConvergenceDetector {
+
+    public static final int DEFAULT_HISTORY = 16; //longest oscillator period detected by default
+
+    private final long[] hashes; //ring of recent grid hashes
+    private final long[] generations; //generation of each hash in the ring
+    private int size = 0; //number of hashes in the ring
+    private int next = 0; //ring slot written next
+    private long convergedGeneration = -1; //first generation of the repeating cycle, -1 if not converged
+    private int period = 0; //period of the repeating cycle, 1 for a fixed point
+
+    /**
+     * Creates a detector remembering the last DEFAULT_HISTORY generations
+     */
+    public ConvergenceDetector() {
+        this(DEFAULT_HISTORY);
+    }
+
+    /**
+     * Creates a detector remembering a number of recent generations
+     * @param history - number of generations kept, also the longest period detected
+     */
+    public ConvergenceDetector(int history) {
+        if (history <= 0) {
+            throw new IllegalArgumentException("History size must be positive: " + history);
+        }
+        this.hashes = new long[history];
+        this.generations = new long[history];
+    }
+
+    /**
+     * Hash of one packed word of the grid, zero for an empty word
+     * @param index - index of the word in the grid
+     * @param word - cells of the word
+     * @return - hash contribution of the word
+     */
+    public static long wordHash(long index, long word) {
+        if (word == 0) {
+            return 0;
+        }
+        long h = word * 0x9E3779B97F4A7C15L + index * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Hashes a whole grid
+     * @param grid - grid to hash
+     * @return - XOR of the word hashes of the grid
+     */
+    public static long gridHash(MazeGrid grid) {
+        long[] words = grid.getWords();
+        long hash = 0;
+        for (int i = 0; i < words.length; i++) {
+            hash ^= wordHash(i, words[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Records the hash of a generation and checks if it repeats a recent one
+     * @param generation - generation of the hash
+     * @param hash - grid hash of the generation
+     * @return - true if the grid has converged
+     */
+    public boolean record(long generation, long hash) {
+        if (convergedGeneration < 0) {
+            for (int i = 0; i < size; i++) {
+                if (hashes[i] == hash) {
+                    convergedGeneration = generations[i];
+                    period = (int) (generation - generations[i]);
+                    break;
+                }
+            }
+        }
+        hashes[next] = hash;
+        generations[next] = generation;
+        next = (next + 1) % hashes.length;
+        size = Math.min(size + 1, hashes.length);
+        return convergedGeneration >= 0;
+    }
+
+    public boolean hasHistory() {
+        return size > 0;
+    }
+
+    public boolean isConverged() {
+        return convergedGeneration >= 0;
+    }
+
+    /**
+     * Gives the generation from which the grid repeats
+     * @return - first generation of the cycle, -1 if not converged
+     */
+    public long getConvergedGeneration() {
+        return convergedGeneration;
+    }
+
+    /**
+     * Gives the period of the cycle the grid has converged to
+     * @return - 1 for a fixed point, 0 if not converged
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * Forgets all recorded generations
+     */
+    public void reset() {
+        Arrays.fill(hashes, 0L);
+        size = 0;
+        next = 0;
+        convergedGeneration = -1;
+        period = 0;
+    }
+
+}
@@ -0,0 +1,241 @@
+import java.util.Arrays;
+
+/**
+ * Title: DirtyTileStepper
+ * Description: Double buffered stepping that only recomputes tiles which changed in the last generation
+ * or border a tile that did. A tile is one long word (64 columns) wide and TILE_ROWS rows high.
+ * A quiet tile holds the same cells in both buffers, so it is skipped without copying. Each tile row keeps its
+ * own tile count and hash change, so bands of tile rows never share a counter and a step allocates nothing.
+ */
+
+public class DirtyTileStepper {
+
+    public static final int TILE_ROWS = 16; //height of a tile (cells), a tile is one long word wide
+
+    private final int tileColumns; //number of tiles across the grid
+    private final int tileRows; //number of tiles down the grid
+    private boolean[] changed; //tiles changed by the last generation
+    private boolean[] nextChanged; //tiles changed by the generation being computed
+    private final int[] rowActive; //tiles recomputed in each tile row by the generation being computed
+    private final long[] rowDelta; //grid hash change made in each tile row by the generation being computed
+    private final ParallelStepper.BandAction bandAction = this::stepTileRows; //steps a band of tile rows
+    private boolean allDirty = true; //set when the buffers no longer follow each other, forces a full step
+    private MazeGrid src; //grid holding the current generation during a step
+    private MazeGrid dst; //grid receiving the next generation during a step
+    private int birthMask; //birth mask of the rule used by the step
+    private int surviveMask; //survive mask of the rule used by the step
+    private boolean full; //true if the step recomputes every tile
+    private volatile int activeTiles = 0; //tiles recomputed by the last generation
+    private volatile long hashDelta = 0; //change of the grid hash made by the last generation
+
+    /**
+     * Creates a tile stepper for grids of a given size
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public DirtyTileStepper(int width, int height) {
+        this.tileColumns = (width + 63) >>> 6;
+        this.tileRows = (height + TILE_ROWS - 1) / TILE_ROWS;
+        this.changed = new boolean[tileColumns * tileRows];
+        this.nextChanged = new boolean[tileColumns * tileRows];
+        this.rowActive = new int[tileRows];
+        this.rowDelta = new long[tileRows];
+    }
+
+    public int getTileCount() {
+        return tileColumns * tileRows;
+    }
+
+    /**
+     * Gives the number of tiles recomputed by the last generation
+     * @return - active tile count
+     */
+    public int getActiveTiles() {
+        return activeTiles;
+    }
+
+    /**
+     * Gives the change of the grid hash made by the last generation, see ConvergenceDetector.gridHash
+     * @return - XOR of the old and new word hashes of every changed word
+     */
+    public long getHashDelta() {
+        return hashDelta;
+    }
+
+    /**
+     * Gives the tiles changed by the last generation or by cell edits since, row by row with one tile per long
+     * word column. The array is reused by the next generation.
+     * @return - true for each changed tile, null after invalidate until the next step as any tile may have changed
+     */
+    public boolean[] getChangedTiles() {
+        return allDirty ? null : changed;
+    }
+
+    /**
+     * Forces every tile to be recomputed by the next generation, used after bulk changes to the grid
+     */
+    public void invalidate() {
+        allDirty = true;
+    }
+
+    /**
+     * Marks the tile holding a cell as changed, used after single cell edits between generations
+     * @param x - x coordinate of edited cell
+     * @param y - y coordinate of edited cell
+     */
+    public void markChanged(int x, int y) {
+        changed[(y / TILE_ROWS) * tileColumns + (x >>> 6)] = true;
+    }
+
+    /**
+     * Computes the next generation into dst, only visiting active tiles
+     * @param src - grid holding the current generation
+     * @param dst - grid holding the previous generation, receives the next generation
+     * @param birthMask - bit n set if a dead cell with n alive neighbours is born
+     * @param surviveMask - bit n set if an alive cell with n alive neighbours survives
+     * @param stepper - parallel stepper splitting tile rows over several cores, null to step serially
+     */
+    public void step(MazeGrid src, MazeGrid dst, int birthMask, int surviveMask, ParallelStepper stepper) {
+        this.src = src;
+        this.dst = dst;
+        this.birthMask = birthMask;
+        this.surviveMask = surviveMask;
+        this.full = allDirty;
+        if (stepper != null) {
+            stepper.forEachBand(tileRows, TILE_ROWS * src.getWordsPerRow(), bandAction);
+        } else {
+            stepTileRows(0, tileRows);
+        }
+        this.src = null;
+        this.dst = null;
+        boolean[] swap = changed;
+        changed = nextChanged;
+        nextChanged = swap;
+        allDirty = false;
+        int active = 0;
+        long delta = 0;
+        for (int ty = 0; ty < tileRows; ty++) {
+            active += rowActive[ty];
+            delta ^= rowDelta[ty];
+        }
+        activeTiles = active;
+        hashDelta = delta;
+    }
+
+    /**
+     * Steps the active tiles of a band of tile rows, recording the tile count and hash change of each tile row
+     * @param tileRowFrom - first tile row of the band
+     * @param tileRowTo - tile row after the last tile row of the band
+     */
+    private void stepTileRows(int tileRowFrom, int tileRowTo) {
+        long[] current = src.getWords();
+        long[] next = dst.getWords();
+        int height = src.getHeight();
+        long lastWordMask = lastWordMask(src.getWidth());
+        for (int ty = tileRowFrom; ty < tileRowTo; ty++) {
+            Arrays.fill(nextChanged, ty * tileColumns, (ty + 1) * tileColumns, false);
+            rowActive[ty] = 0;
+            rowDelta[ty] = 0;
+            if (!full && !isTileRowActive(changed, tileColumns, tileRows, ty)) {
+                continue;
+            }
+            int yFrom = ty * TILE_ROWS;
+            int yTo = Math.min(height, yFrom + TILE_ROWS);
+            for (int tx = 0; tx < tileColumns; tx++) {
+                if (!full && !isNeighbourhoodChanged(changed, tileColumns, tileRows, tx, ty)) {
+                    continue;
+                }
+                rowActive[ty]++;
+                nextChanged[ty * tileColumns + tx] = stepTile(current, 0, next, 0, yFrom, yTo, height, tx,
+                        tileColumns, lastWordMask, birthMask, surviveMask, rowDelta, ty);
+            }
+        }
+    }
+
+    /**
+     * Mask of the cells of the last word of a row that lie inside the grid
+     * @param width - width of grid (cells)
+     * @return - bits of the columns inside the grid
+     */
+    static long lastWordMask(int width) {
+        return (width & 63) == 0 ? -1L : (1L << width) - 1;
+    }
+
+    /**
+     * Steps one tile with the bit-parallel kernel and hashes the words it changes. The rows may be a window of
+     * the grid, current must hold the rows above and below the tile that lie inside the grid.
+     * @param current - rows of the current generation
+     * @param currentFirstRow - grid row held at the start of current
+     * @param next - rows receiving the next generation
+     * @param nextFirstRow - grid row held at the start of next
+     * @param yFrom - first row of the tile
+     * @param yTo - row after the last row of the tile
+     * @param height - height of grid (cells)
+     * @param tx - tile column, the word within each row
+     * @param wordsPerRow - long words per row
+     * @param lastWordMask - mask of the cells of the last word of a row, see lastWordMask
+     * @param birthMask - bit n set if a dead cell with n alive neighbours is born
+     * @param surviveMask - bit n set if an alive cell with n alive neighbours survives
+     * @param delta - accumulates the grid hash change, see ConvergenceDetector.gridHash
+     * @param deltaIndex - element of delta receiving the change of the tile
+     * @return - true if any cell of the tile changed
+     */
+    static boolean stepTile(long[] current, int currentFirstRow, long[] next, int nextFirstRow, int yFrom, int yTo,
+                            int height, int tx, int wordsPerRow, long lastWordMask, int birthMask, int surviveMask,
+                            long[] delta, int deltaIndex) {
+        boolean tileChanged = false;
+        long tileDelta = 0;
+        for (int y = yFrom; y < yTo; y++) {
+            int row = (y - currentFirstRow) * wordsPerRow;
+            int above = y > 0 ? row - wordsPerRow : -1;
+            int below = y < height - 1 ? row + wordsPerRow : -1;
+            long word = BitParallelKernel.stepWord(current, row, above, below, tx, wordsPerRow,
+                    birthMask, surviveMask);
+            if (tx == wordsPerRow - 1) {
+                word &= lastWordMask;
+            }
+            next[(y - nextFirstRow) * wordsPerRow + tx] = word;
+            if (word != current[row + tx]) {
+                tileChanged = true;
+                long index = (long) y * wordsPerRow + tx;
+                tileDelta ^= ConvergenceDetector.wordHash(index, current[row + tx])
+                        ^ ConvergenceDetector.wordHash(index, word);
+            }
+        }
+        delta[deltaIndex] ^= tileDelta;
+        return tileChanged;
+    }
+
+    /**
+     * Checks if any tile of a tile row or of the tile rows above and below changed in the last generation
+     * @param changed - tiles changed by the last generation, row by row
+     * @return - false if every tile of the row is quiet and can be skipped
+     */
+    static boolean isTileRowActive(boolean[] changed, int tileColumns, int tileRows, int ty) {
+        int from = Math.max(ty - 1, 0) * tileColumns;
+        int to = (Math.min(ty + 1, tileRows - 1) + 1) * tileColumns;
+        for (int i = from; i < to; i++) {
+            if (changed[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a tile or any of its eight neighbouring tiles changed in the last generation
+     * @param changed - tiles changed by the last generation, row by row
+     * @return - false if the tile is quiet and can be skipped
+     */
+    static boolean isNeighbourhoodChanged(boolean[] changed, int tileColumns, int tileRows, int tx, int ty) {
+        for (int ny = Math.max(ty - 1, 0); ny <= Math.min(ty + 1, tileRows - 1); ny++) {
+            for (int nx = Math.max(tx - 1, 0); nx <= Math.min(tx + 1, tileColumns - 1); nx++) {
+                if (changed[ny * tileColumns + nx]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
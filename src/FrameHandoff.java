@@ -0,0 +1,103 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Title: FrameHandoff
+ * Description: Lock-free handoff of finished generations from the simulation thread to the renderer.
+ * Frames are copies of the grid in recycled buffers, so at most three exist: one being written, the latest
+ * published and one being drawn. Every generation is copied into a free buffer and swapped in as the latest
+ * frame, replacing a frame the renderer has not taken yet, so a render tick always shows the newest completed
+ * generation and copying costs at most one grid per generation.
+ */
+
+public class FrameHandoff {
+
+    /**
+     * Copy of one generation
+     */
+    public static class Frame {
+        private final MazeGrid grid;
+        private long generation;
+
+        Frame(int width, int height) {
+            this.grid = new MazeGrid(width, height);
+        }
+
+        public MazeGrid getGrid() {
+            return grid;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+    }
+
+    private final int width; //width of grid (cells)
+    private final int height; //height of grid (cells)
+    private final AtomicReference<Frame> latest = new AtomicReference<>(); //published and not yet taken
+    private final AtomicReference<Frame> free = new AtomicReference<>(); //buffer ready for the next copy
+    private final AtomicReference<Frame> spare = new AtomicReference<>(); //second buffer ready for a copy
+
+    /**
+     * Creates an empty handoff for grids of a given size
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public FrameHandoff(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Publishes a copy of a grid as the latest frame, called by the simulation thread
+     * @param grid - grid to copy, must have the size of the handoff
+     * @param generation - generation of the grid
+     * @return - false if the copy replaced a frame that was never taken, i.e. a generation was dropped
+     */
+    public boolean publish(MazeGrid grid, long generation) {
+        Frame frame = free.getAndSet(null);
+        if (frame == null) {
+            frame = spare.getAndSet(null);
+        }
+        if (frame == null) {
+            frame = new Frame(width, height);
+        }
+        long[] words = grid.getWords();
+        System.arraycopy(words, 0, frame.grid.getWords(), 0, words.length);
+        frame.generation = generation;
+        Frame replaced = latest.getAndSet(frame);
+        if (replaced != null) {
+            release(replaced);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Takes the latest frame, called by the renderer, which hands it back with release once drawn
+     * @return - latest frame, null if nothing was published since the last take
+     */
+    public Frame take() {
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * Returns a drawn frame for reuse
+     * @param frame - frame given by take
+     */
+    public void release(Frame frame) {
+        if (!free.compareAndSet(null, frame)) {
+            spare.compareAndSet(null, frame);
+        }
+    }
+
+    /**
+     * Drops the latest frame, used when the grid was changed directly after the simulation stopped
+     */
+    public void clear() {
+        Frame frame = take();
+        if (frame != null) {
+            release(frame);
+        }
+    }
+
+}
@@ -0,0 +1,430 @@
+import java.util.Arrays;
+
+/**
+ * Title: HashlifeUniverse
+ * Description: Quadtree of hash-consed nodes holding one maze generation, stepped Hashlife style.
+ * Equal squares of cells share one node, and each node remembers its centre one generation later,
+ * so repeated corridor textures and settled areas are computed once. Leaves are 8x8 cells packed in a long
+ * and stepped with the bit-parallel kernel. Cells outside the grid are cleared after every generation,
+ * which keeps the result identical to a MazeEngine step. The node table is bounded by a mark and sweep
+ * collection between generations that keeps only the nodes of live generations. The next collection waits until
+ * the table has grown to twice the nodes kept, so a live set above the limit is not swept every generation.
+ */
+
+public class HashlifeUniverse {
+
+    /**
+     * Square of 2^level cells, a leaf at level 3 or four children one level down
+     */
+    private static final class Node {
+        final int level;
+        final Node nw, ne, sw, se; //quadrants, null for leaves
+        final long bits; //cells of a leaf, bit y * 8 + x
+        final long hash; //hash of the cells, equal squares hash equally
+        Node result; //centre square one generation later, null until computed
+        Node next; //next node in the same table bucket
+        int mark; //collection epoch the node was last reached in
+
+        private Node(long bits, long hash) {
+            this.level = LEAF_LEVEL;
+            this.nw = this.ne = this.sw = this.se = null;
+            this.bits = bits;
+            this.hash = hash;
+        }
+
+        private Node(Node nw, Node ne, Node sw, Node se, long hash) {
+            this.level = nw.level + 1;
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            this.bits = 0;
+            this.hash = hash;
+        }
+    }
+
+    public static final int DEFAULT_MAX_NODES = 1 << 21; //node table size that triggers a collection, about 128 MB
+    private static final int LEAF_LEVEL = 3; //leaves are 8x8 cells
+    private static final int MIN_BUCKETS = 1 << 12; //smallest node table
+
+    private final int width;
+    private final int height;
+    private final int rootLevel; //level of the square covering the grid
+    private final Node[] empty; //canonical empty node of each level
+    private Node[] table = new Node[MIN_BUCKETS]; //hash-consing buckets
+    private int nodeCount = 0;
+    private int maxNodes = DEFAULT_MAX_NODES;
+    private int collectThreshold = DEFAULT_MAX_NODES; //node count triggering the next collection
+    private int epoch = 0; //current collection epoch
+    private long collections = 0; //number of collections run
+    private MazeRule resultRule; //rule the remembered results were computed with
+    private Node root; //current generation
+    private Node padded; //square stepped by the last generation, kept with its results for the next one
+    private final MazeGrid[] heldGrids = new MazeGrid[2]; //grids written from the tree
+    private final Node[] heldRoots = new Node[2]; //generation each held grid contains
+    private final long[] leafRows = new long[16]; //scratch rows of the leaf step
+    private final long[] leafNext = new long[16];
+
+    /**
+     * Creates an empty universe for grids of a given size
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public HashlifeUniverse(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int level = LEAF_LEVEL + 1;
+        while ((1L << level) < Math.max(width, height)) {
+            level++;
+        }
+        this.rootLevel = level;
+        this.empty = new Node[level + 2];
+        empty[LEAF_LEVEL] = leaf(0);
+        for (int l = LEAF_LEVEL + 1; l < empty.length; l++) {
+            empty[l] = join(empty[l - 1], empty[l - 1], empty[l - 1], empty[l - 1]);
+        }
+        this.root = empty[rootLevel];
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public long getCollections() {
+        return collections;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Sets the node count above which unreachable nodes are collected after a generation. While more nodes than
+     * that are live, the next collection waits until the table holds twice the nodes kept by the last one.
+     * @param maxNodes - node table limit
+     */
+    public void setMaxNodes(int maxNodes) {
+        if (maxNodes < 1024) {
+            throw new IllegalArgumentException("Node limit too small: " + maxNodes);
+        }
+        this.maxNodes = maxNodes;
+        this.collectThreshold = maxNodes;
+    }
+
+    /**
+     * Gives the hash of the current generation, equal generations give equal hashes
+     * @return - hash of the root node
+     */
+    public long getHash() {
+        return root.hash;
+    }
+
+    /**
+     * Replaces the current generation with the cells of a grid
+     * @param grid - grid of the size of the universe
+     */
+    public void load(MazeGrid grid) {
+        if (grid.getWidth() != width || grid.getHeight() != height) {
+            throw new IllegalArgumentException("Grid is " + grid.getWidth() + "x" + grid.getHeight()
+                    + " but universe is " + width + "x" + height);
+        }
+        root = build(grid.getWords(), grid.getWordsPerRow(), rootLevel, 0, 0);
+        Arrays.fill(heldGrids, null);
+        Arrays.fill(heldRoots, null);
+        heldGrids[0] = grid;
+        heldRoots[0] = root;
+    }
+
+    /**
+     * Writes the current generation into a grid, only the squares that differ from what the grid last
+     * received from this universe are written
+     * @param grid - grid of the size of the universe
+     */
+    public void store(MazeGrid grid) {
+        int slot = heldGrids[0] == grid ? 0 : heldGrids[1] == grid ? 1 : -1;
+        Node previous = slot >= 0 ? heldRoots[slot] : null;
+        if (slot < 0) {
+            slot = heldGrids[0] == null ? 0 : 1;
+            heldGrids[slot] = grid;
+        }
+        write(root, previous, grid.getWords(), grid.getWordsPerRow(), 0, 0);
+        heldRoots[slot] = root;
+    }
+
+    /**
+     * Advances the current generation by one generation
+     * @param rule - two state radius 1 Moore rule
+     */
+    public void step(MazeRule rule) {
+        if (!rule.isBitParallel()) {
+            throw new IllegalArgumentException("Hashlife needs a two state radius 1 Moore rule: " + rule);
+        }
+        if (!rule.equals(resultRule)) {
+            clearResults();
+            resultRule = rule;
+        }
+        //centre the root in a square twice its size, the result of that square covers the root one generation on
+        Node e = empty[rootLevel - 1];
+        padded = join(join(e, e, e, root.nw), join(e, e, root.ne, e),
+                join(e, root.sw, e, e), join(root.se, e, e, e));
+        root = clip(result(padded, rule.getBirthMask(), rule.getSurviveMask()), 0, 0);
+        if (nodeCount > collectThreshold) {
+            collect();
+        }
+    }
+
+    /**
+     * Forgets every remembered result, needed when the rule changes
+     */
+    public void clearResults() {
+        for (Node bucket : table) {
+            for (Node node = bucket; node != null; node = node.next) {
+                node.result = null;
+            }
+        }
+    }
+
+    /**
+     * Gives the centre of a node one generation later
+     */
+    private Node result(Node node, int birthMask, int surviveMask) {
+        if (node.result != null) {
+            return node.result;
+        }
+        Node result;
+        if (node == empty[node.level] && (birthMask & 1) == 0) {
+            result = empty[node.level - 1];
+        } else if (node.level == LEAF_LEVEL + 1) {
+            result = leafResult(node, birthMask, surviveMask);
+        } else {
+            //nine overlapping squares one level down, stepped, then recombined into the centre
+            Node n00 = result(node.nw, birthMask, surviveMask);
+            Node n01 = result(join(node.nw.ne, node.ne.nw, node.nw.se, node.ne.sw), birthMask, surviveMask);
+            Node n02 = result(node.ne, birthMask, surviveMask);
+            Node n10 = result(join(node.nw.sw, node.nw.se, node.sw.nw, node.sw.ne), birthMask, surviveMask);
+            Node n11 = result(join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw), birthMask, surviveMask);
+            Node n12 = result(join(node.ne.sw, node.ne.se, node.se.nw, node.se.ne), birthMask, surviveMask);
+            Node n20 = result(node.sw, birthMask, surviveMask);
+            Node n21 = result(join(node.sw.ne, node.se.nw, node.sw.se, node.se.sw), birthMask, surviveMask);
+            Node n22 = result(node.se, birthMask, surviveMask);
+            result = join(centre(n00, n01, n10, n11), centre(n01, n02, n11, n12),
+                    centre(n10, n11, n20, n21), centre(n11, n12, n21, n22));
+        }
+        node.result = result;
+        return result;
+    }
+
+    /**
+     * Steps the centre 8x8 cells of a 16x16 node with the bit-parallel kernel
+     */
+    private Node leafResult(Node node, int birthMask, int surviveMask) {
+        for (int y = 0; y < 8; y++) {
+            leafRows[y] = (node.nw.bits >>> (y * 8) & 0xFF) | (node.ne.bits >>> (y * 8) & 0xFF) << 8;
+            leafRows[y + 8] = (node.sw.bits >>> (y * 8) & 0xFF) | (node.se.bits >>> (y * 8) & 0xFF) << 8;
+        }
+        BitParallelKernel.stepRows(leafRows, leafNext, 16, 16, 1, 4, 12, birthMask, surviveMask);
+        long bits = 0;
+        for (int y = 0; y < 8; y++) {
+            bits |= (leafNext[y + 4] >>> 4 & 0xFF) << (y * 8);
+        }
+        return leaf(bits);
+    }
+
+    /**
+     * Gives the square centred on the corner shared by four nodes of the same level, one level down
+     */
+    private Node centre(Node nw, Node ne, Node sw, Node se) {
+        if (nw.level == LEAF_LEVEL) {
+            return leaf(((nw.bits >>> 32) & 0xF0F0F0F0L) >>> 4
+                    | ((ne.bits >>> 32) & 0x0F0F0F0FL) << 4
+                    | ((sw.bits & 0xF0F0F0F0L) >>> 4) << 32
+                    | ((se.bits & 0x0F0F0F0FL) << 4) << 32);
+        }
+        return join(nw.se, ne.sw, sw.ne, se.nw);
+    }
+
+    /**
+     * Clears every cell of a node that lies outside the grid
+     */
+    private Node clip(Node node, int x0, int y0) {
+        int size = 1 << node.level;
+        if (x0 + size <= width && y0 + size <= height) {
+            return node;
+        }
+        if (x0 >= width || y0 >= height) {
+            return empty[node.level];
+        }
+        if (node.level == LEAF_LEVEL) {
+            long columns = (1L << Math.min(8, width - x0)) - 1;
+            long bits = 0;
+            for (int y = 0; y < Math.min(8, height - y0); y++) {
+                bits |= node.bits & (columns << (y * 8));
+            }
+            return leaf(bits);
+        }
+        int half = size >>> 1;
+        return join(clip(node.nw, x0, y0), clip(node.ne, x0 + half, y0),
+                clip(node.sw, x0, y0 + half), clip(node.se, x0 + half, y0 + half));
+    }
+
+    /**
+     * Builds the node covering a square of a grid
+     */
+    private Node build(long[] words, int wordsPerRow, int level, int x0, int y0) {
+        if (x0 >= width || y0 >= height) {
+            return empty[level];
+        }
+        if (level == LEAF_LEVEL) {
+            long bits = 0;
+            for (int y = 0; y < Math.min(8, height - y0); y++) {
+                bits |= (words[(y0 + y) * wordsPerRow + (x0 >>> 6)] >>> (x0 & 63) & 0xFF) << (y * 8);
+            }
+            return leaf(bits);
+        }
+        int half = 1 << (level - 1);
+        return join(build(words, wordsPerRow, level - 1, x0, y0), build(words, wordsPerRow, level - 1, x0 + half, y0),
+                build(words, wordsPerRow, level - 1, x0, y0 + half),
+                build(words, wordsPerRow, level - 1, x0 + half, y0 + half));
+    }
+
+    /**
+     * Writes the cells of a node into a grid, skipping squares equal to the previous node
+     */
+    private void write(Node node, Node previous, long[] words, int wordsPerRow, int x0, int y0) {
+        if (node == previous || x0 >= width || y0 >= height) {
+            return;
+        }
+        if (node.level == LEAF_LEVEL) {
+            long mask = 0xFFL << (x0 & 63);
+            for (int y = 0; y < Math.min(8, height - y0); y++) {
+                int index = (y0 + y) * wordsPerRow + (x0 >>> 6);
+                words[index] = (words[index] & ~mask) | (node.bits >>> (y * 8) & 0xFF) << (x0 & 63);
+            }
+            return;
+        }
+        int half = 1 << (node.level - 1);
+        boolean known = previous != null;
+        write(node.nw, known ? previous.nw : null, words, wordsPerRow, x0, y0);
+        write(node.ne, known ? previous.ne : null, words, wordsPerRow, x0 + half, y0);
+        write(node.sw, known ? previous.sw : null, words, wordsPerRow, x0, y0 + half);
+        write(node.se, known ? previous.se : null, words, wordsPerRow, x0 + half, y0 + half);
+    }
+
+    /**
+     * Gives the canonical leaf holding some cells
+     */
+    private Node leaf(long bits) {
+        long hash = MazeSeeder.mix(bits ^ 0x5DEECE66DL);
+        int bucket = (int) hash & (table.length - 1);
+        for (Node node = table[bucket]; node != null; node = node.next) {
+            if (node.level == LEAF_LEVEL && node.bits == bits) {
+                return node;
+            }
+        }
+        return insert(new Node(bits, hash), bucket);
+    }
+
+    /**
+     * Gives the canonical node with four quadrants
+     */
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        long hash = MazeSeeder.mix(MazeSeeder.mix(MazeSeeder.mix(nw.hash * 31 + ne.hash) * 31 + sw.hash) * 31
+                + se.hash + nw.level + 1);
+        int bucket = (int) hash & (table.length - 1);
+        for (Node node = table[bucket]; node != null; node = node.next) {
+            if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) {
+                return node;
+            }
+        }
+        return insert(new Node(nw, ne, sw, se, hash), bucket);
+    }
+
+    private Node insert(Node node, int bucket) {
+        node.mark = epoch;
+        node.next = table[bucket];
+        table[bucket] = node;
+        if (++nodeCount > table.length) {
+            rehash(table.length * 2);
+        }
+        return node;
+    }
+
+    private void rehash(int buckets) {
+        Node[] old = table;
+        table = new Node[buckets];
+        for (Node bucket : old) {
+            Node node = bucket;
+            while (node != null) {
+                Node next = node.next;
+                int index = (int) node.hash & (buckets - 1);
+                node.next = table[index];
+                table[index] = node;
+                node = next;
+            }
+        }
+    }
+
+    /**
+     * Drops every node not reachable from the current generation, the last stepped square, the held grids or the
+     * empty nodes. Results of kept nodes are kept too, so an unchanged area is not computed again after a
+     * collection. The table shrinks when it is mostly empty afterwards.
+     */
+    private void collect() {
+        epoch++;
+        collections++;
+        mark(root);
+        if (padded != null) {
+            mark(padded);
+        }
+        for (Node held : heldRoots) {
+            if (held != null) {
+                mark(held);
+            }
+        }
+        for (Node node : empty) {
+            if (node != null) {
+                mark(node);
+            }
+        }
+        nodeCount = 0;
+        for (int i = 0; i < table.length; i++) {
+            Node kept = null;
+            Node node = table[i];
+            while (node != null) {
+                Node next = node.next;
+                if (node.mark == epoch) {
+                    node.next = kept;
+                    kept = node;
+                    nodeCount++;
+                }
+                node = next;
+            }
+            table[i] = kept;
+        }
+        collectThreshold = (int) Math.max(maxNodes, Math.min(Integer.MAX_VALUE, 2L * nodeCount));
+        int buckets = table.length;
+        while (buckets > MIN_BUCKETS && nodeCount < buckets / 4) {
+            buckets >>= 1;
+        }
+        if (buckets != table.length) {
+            rehash(buckets);
+        }
+    }
+
+    private void mark(Node node) {
+        if (node.mark == epoch) {
+            return;
+        }
+        node.mark = epoch;
+        if (node.result != null) {
+            mark(node.result);
+        }
+        if (node.level > LEAF_LEVEL) {
+            mark(node.nw);
+            mark(node.ne);
+            mark(node.sw);
+            mark(node.se);
+        }
+    }
+
+}
@@ -0,0 +1,427 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Title: MazeBatch
+ * Description: Headless command line mode generating many mazes in parallel and streaming them to disk.
+ * Each worker thread reuses one MazeEngine, finished grids are handed to a single writer thread.
+ */
+
+public class MazeBatch {
+
+    public static final String USAGE = "Usage: --batch [--width cells] [--height cells] [--rule rulestring]"
+            + " [--seed n] [--density 0..1] [--pattern density|blob|noise] [--generations n] [--until-converged] [--border]"
+            + " [--hashlife] [--off-heap] [--map-file file] [--count n] [--threads n] [--output file] [--rle]"
+            + " [--metrics file.csv|file.json] [--stop-when target] [--filter target]"
+            + "\nTargets are conditions on wallDensity, deadEnds, junctions, corridors, meanCorridor, longestCorridor,"
+            + " regions and longestPath, e.g. --filter \"regions<=1,longestPath>=400\"";
+
+    public int width = 160; //width of each maze (cells)
+    public int height = 120; //height of each maze (cells)
+    public MazeRule rule = MazeRule.MAZE; //rule used by every maze, see MazeRule.parse
+    public long seed = 0; //seed of the first maze, maze i uses seed + i
+    public double density = 0.5; //chance of a cell being alive in the initial fill
+    public MazeSeeder.Pattern pattern = MazeSeeder.Pattern.DENSITY; //shape of the initial fill
+    public int generations = 1000; //generations stepped per maze, upper bound with untilConverged
+    public boolean untilConverged = false; //stop a maze early once it has converged
+    public boolean border = false; //insert a border around each maze before generating
+    public boolean hashlife = false; //step with the memoised quadtree instead of the bit-parallel kernel
+    public boolean offHeap = false; //keep each maze outside the heap and step it with all threads, see OffHeapEngine
+    public String mapFile = null; //scratch file the off-heap grids are mapped onto, null for direct buffers
+    public int count = 1; //number of mazes to generate
+    public int threads = Runtime.getRuntime().availableProcessors(); //worker threads
+    public String output = "mazes" + MazeFile.EXTENSION; //maze file receiving the mazes
+    public boolean rle = false; //run-length encode the rows of each maze
+    public String metrics = null; //file receiving a metrics sample every second, null for none
+    public MazeQuality.Target stopWhen = null; //stop a maze early once it meets this target, null to step on
+    public MazeQuality.Target filter = null; //only write mazes meeting this target, null to write every maze
+
+    /**
+     * Finished maze waiting to be written
+     */
+    private static class Result {
+        final long seed;
+        final long generations;
+        final long[] words;
+
+        Result(long seed, long generations, long[] words) {
+            this.seed = seed;
+            this.generations = generations;
+            this.words = words;
+        }
+    }
+
+    private static final Result END = new Result(0, 0, null); //tells the writer no more mazes follow
+
+    /**
+     * Runs a batch from command line arguments
+     * @param args - batch options, see USAGE
+     */
+    public static void main(String[] args) {
+        MazeBatch batch;
+        try {
+            batch = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            batch.run();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Batch failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses command line arguments into a batch
+     * @param args - batch options, a leading --batch is ignored
+     * @return - configured batch
+     */
+    public static MazeBatch parse(String[] args) {
+        MazeBatch batch = new MazeBatch();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--batch":
+                    break;
+                case "--width":
+                    batch.width = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--height":
+                    batch.height = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--rule":
+                    batch.rule = MazeRule.parse(value(args, ++i, arg));
+                    break;
+                case "--seed":
+                    batch.seed = Long.parseLong(value(args, ++i, arg));
+                    break;
+                case "--density":
+                    batch.density = Double.parseDouble(value(args, ++i, arg));
+                    break;
+                case "--pattern":
+                    batch.pattern = parsePattern(value(args, ++i, arg));
+                    break;
+                case "--generations":
+                    batch.generations = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--until-converged":
+                    batch.untilConverged = true;
+                    break;
+                case "--border":
+                    batch.border = true;
+                    break;
+                case "--hashlife":
+                    batch.hashlife = true;
+                    break;
+                case "--off-heap":
+                    batch.offHeap = true;
+                    break;
+                case "--map-file":
+                    batch.mapFile = value(args, ++i, arg);
+                    batch.offHeap = true;
+                    break;
+                case "--count":
+                    batch.count = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--threads":
+                    batch.threads = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--rle":
+                    batch.rle = true;
+                    break;
+                case "--output":
+                    batch.output = value(args, ++i, arg);
+                    break;
+                case "--metrics":
+                    batch.metrics = value(args, ++i, arg);
+                    break;
+                case "--stop-when":
+                    batch.stopWhen = MazeQuality.Target.parse(value(args, ++i, arg));
+                    break;
+                case "--filter":
+                    batch.filter = MazeQuality.Target.parse(value(args, ++i, arg));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (batch.width <= 0 || batch.height <= 0 || batch.count <= 0 || batch.threads <= 0 || batch.generations < 0) {
+            throw new IllegalArgumentException("Sizes, counts and threads must be positive");
+        }
+        if (batch.density < 0 || batch.density > 1) {
+            throw new IllegalArgumentException("Density must be between 0 and 1: " + batch.density);
+        }
+        if (batch.offHeap && (batch.hashlife || !batch.rule.isBitParallel())) {
+            throw new IllegalArgumentException("Off-heap grids only step two state radius 1 Moore rules without hashlife");
+        }
+        if (batch.offHeap && (batch.stopWhen != null || batch.filter != null)) {
+            throw new IllegalArgumentException("Quality targets need grids on the heap, remove --off-heap");
+        }
+        return batch;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[i];
+    }
+
+    /**
+     * Parses the name of a fill pattern
+     * @param name - density, blob or noise
+     * @return - fill pattern
+     */
+    static MazeSeeder.Pattern parsePattern(String name) {
+        switch (name.toLowerCase()) {
+            case "density":
+                return MazeSeeder.Pattern.DENSITY;
+            case "blob":
+                return MazeSeeder.Pattern.CENTRE_BLOB;
+            case "noise":
+                return MazeSeeder.Pattern.NOISE;
+            default:
+                throw new IllegalArgumentException("Unknown pattern: " + name);
+        }
+    }
+
+    /**
+     * Generates all mazes of the batch and prints throughput stats
+     */
+    public void run() throws IOException, InterruptedException {
+        if (offHeap) {
+            runOffHeap();
+            return;
+        }
+        BlockingQueue<Result> results = new ArrayBlockingQueue<>(threads * 4);
+        AtomicInteger nextMaze = new AtomicInteger();
+        AtomicInteger filtered = new AtomicInteger(); //mazes not meeting the filter
+        AtomicLong cellUpdates = new AtomicLong();
+        long start = System.nanoTime();
+        MazeMetrics stepMetrics = null;
+        if (metrics != null) {
+            stepMetrics = new MazeMetrics();
+            stepMetrics.startExport(Paths.get(metrics));
+            stepMetrics.start(MazeMetrics.DEFAULT_PERIOD);
+        }
+        MazeMetrics workerMetrics = stepMetrics;
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(workers.submit(() -> {
+                MazeEngine engine = new MazeEngine(width, height);
+                engine.setRule(rule);
+                engine.setMetrics(workerMetrics);
+                if (hashlife) {
+                    engine.setStepMode(MazeEngine.StepMode.HASHLIFE);
+                }
+                MazeQuality quality = stopWhen != null || filter != null ? new MazeQuality(width, height) : null;
+                int index;
+                while ((index = nextMaze.getAndIncrement()) < count) {
+                    long mazeSeed = seed + index;
+                    long stepped = generate(engine, mazeSeed, quality);
+                    cellUpdates.addAndGet(stepped * width * height);
+                    if (filter != null) {
+                        quality.update(engine.getGrid());
+                        if (!filter.isMet(quality)) {
+                            filtered.incrementAndGet();
+                            continue;
+                        }
+                    }
+                    results.put(new Result(mazeSeed, stepped, engine.getGrid().getWords().clone()));
+                }
+                return null;
+            }));
+        }
+        workers.shutdown();
+
+        AtomicReference<IOException> writeFailure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                writeResults(results);
+            } catch (IOException e) {
+                //Keep draining so workers never block on a full queue
+                writeFailure.set(e);
+                try {
+                    while (results.take() != END) {
+                        continue;
+                    }
+                } catch (InterruptedException ignored) {}
+            } catch (InterruptedException ignored) {}
+        }, "maze-batch-writer");
+        writer.start();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            workers.shutdownNow();
+            writer.interrupt();
+            throw new IOException("Maze worker failed", e.getCause());
+        } finally {
+            if (stepMetrics != null) {
+                stepMetrics.stop();
+            }
+        }
+        results.put(END);
+        writer.join();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        if (writeFailure.get() != null) {
+            throw writeFailure.get();
+        }
+        if (stepMetrics != null && stepMetrics.getExportFailure() != null) {
+            throw stepMetrics.getExportFailure();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d mazes of %dx%d in %.2f s: %.1f mazes/s, %.3g cell updates/s%n",
+                count, width, height, seconds, count / seconds, cellUpdates.get() / seconds);
+        if (filter != null) {
+            System.out.printf("Kept %d of %d mazes meeting %s%n", count - filtered.get(), count, filter);
+        }
+    }
+
+    /**
+     * Fills, optionally borders and steps one maze
+     * @param engine - engine reused by the worker
+     * @param mazeSeed - seed of the initial fill
+     * @return - number of generations stepped
+     */
+    public long generate(MazeEngine engine, long mazeSeed) {
+        return generate(engine, mazeSeed, null);
+    }
+
+    /**
+     * Fills, optionally borders and steps one maze, stopping once it converges with untilConverged or once
+     * it meets stopWhen
+     * @param engine - engine reused by the worker
+     * @param mazeSeed - seed of the initial fill
+     * @param quality - analyser reused by the worker, updated after every generation when stopWhen is set
+     * @return - number of generations stepped
+     */
+    public long generate(MazeEngine engine, long mazeSeed, MazeQuality quality) {
+        MazeQuality.Target target = quality != null ? stopWhen : null;
+        engine.reset();
+        MazeGrid grid = engine.getGrid();
+        new MazeSeeder(pattern, density).fill(grid, mazeSeed, null);
+        if (border) {
+            grid.createBorder();
+        }
+        engine.invalidate();
+        for (int g = 0; g < generations; g++) {
+            engine.step();
+            if (untilConverged && engine.isConverged()) {
+                break;
+            }
+            if (target != null) {
+                //after the first generation the last update was one step ago, so only changed tiles need comparing
+                quality.update(engine.getGrid(), g > 0 ? engine.getChangedTiles() : null);
+                if (target.isMet(quality)) {
+                    break;
+                }
+            }
+        }
+        return engine.getGeneration();
+    }
+
+    /**
+     * Generates the mazes one at a time in off-heap grids, each generation split over all threads, and streams
+     * each maze to the output maze file straight from its grid
+     */
+    private void runOffHeap() throws IOException {
+        long cellUpdates = 0;
+        long start = System.nanoTime();
+        MazeMetrics stepMetrics = null;
+        if (metrics != null) {
+            stepMetrics = new MazeMetrics();
+            stepMetrics.startExport(Paths.get(metrics));
+            stepMetrics.start(MazeMetrics.DEFAULT_PERIOD);
+        }
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        ParallelStepper stepper = pool != null ? new ParallelStepper(pool, ParallelStepper.DEFAULT_MIN_BAND_WORDS) : null;
+        try (OffHeapEngine engine = mapFile != null ? new OffHeapEngine(width, height, Paths.get(mapFile))
+                : new OffHeapEngine(width, height);
+             MazeFile.Writer writer = new MazeFile.Writer(Paths.get(output), rle)) {
+            engine.setRule(rule);
+            engine.setParallelStepper(stepper);
+            engine.setMetrics(stepMetrics);
+            String rulestring = rule.toString();
+            for (int index = 0; index < count; index++) {
+                long mazeSeed = seed + index;
+                long stepped = generate(engine, mazeSeed, stepper);
+                cellUpdates += stepped * width * height;
+                writer.write(engine.getGrid(), rulestring, mazeSeed, stepped);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            if (stepMetrics != null) {
+                stepMetrics.stop();
+            }
+        }
+        if (stepMetrics != null && stepMetrics.getExportFailure() != null) {
+            throw stepMetrics.getExportFailure();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d off-heap mazes of %dx%d in %.2f s: %.1f mazes/s, %.3g cell updates/s%n",
+                count, width, height, seconds, count / seconds, cellUpdates / seconds);
+    }
+
+    /**
+     * Fills, optionally borders and steps one off-heap maze
+     * @param engine - engine reused for every maze
+     * @param mazeSeed - seed of the initial fill
+     * @param stepper - parallel stepper filling the grid, null to fill on the calling thread
+     * @return - number of generations stepped
+     */
+    public long generate(OffHeapEngine engine, long mazeSeed, ParallelStepper stepper) {
+        engine.reset();
+        OffHeapGrid grid = engine.getGrid();
+        new MazeSeeder(pattern, density).fill(grid, mazeSeed, stepper);
+        if (border) {
+            grid.createBorder();
+        }
+        engine.invalidate();
+        for (int g = 0; g < generations; g++) {
+            engine.step();
+            if (untilConverged && engine.isConverged()) {
+                break;
+            }
+        }
+        return engine.getGeneration();
+    }
+
+    /**
+     * Writes finished mazes to the output maze file until the end marker arrives
+     */
+    private void writeResults(BlockingQueue<Result> results) throws IOException, InterruptedException {
+        String rulestring = rule.toString();
+        try (MazeFile.Writer writer = new MazeFile.Writer(Paths.get(output), rle)) {
+            Result result;
+            while ((result = results.take()) != END) {
+                writer.write(result.words, width, height, rulestring, result.seed, result.generations);
+            }
+        }
+    }
+
+}
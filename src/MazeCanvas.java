@@ -0,0 +1,215 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Title: MazeCanvas
+ * Description: Single component drawing the maze grid from a BufferedImage with one pixel per cell.
+ * Pixels are written straight into the image's DataBufferInt from the grid bits and the image is scaled to
+ * the component size, so the window can be resized. Only the rows that changed are repainted.
+ */
+
+public class MazeCanvas extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int BAND_ROWS = 16; //rows merged into one dirty rectangle
+
+    private final int columns; //width of grid (cells)
+    private final int rows; //height of grid (cells)
+    private final int wordsPerRow; //long words per row of the packed arrays
+    private final BufferedImage image; //one pixel per cell
+    private final int[] pixels; //pixels of the image, index y * columns + x
+    private final long[] shown; //alive cells currently drawn, packed like MazeGrid
+    private final long[] solvePath; //cells marked as solve pathway, packed like MazeGrid
+    private final int aliveRGB;
+    private final int deadRGB;
+    private final int solveRGB;
+    private volatile String[] overlay; //lines of text drawn over the grid, null for none
+
+    /**
+     * Creates a canvas with every cell dead
+     * @param columns - width of grid (cells)
+     * @param rows - height of grid (cells)
+     * @param cellSize - preferred height/width of individual cell (pixels)
+     * @param aliveColor - alive cell color
+     * @param deadColor - dead cell color
+     * @param solveColor - color of solve pathway
+     */
+    public MazeCanvas(int columns, int rows, int cellSize, Color aliveColor, Color deadColor, Color solveColor) {
+        this.columns = columns;
+        this.rows = rows;
+        this.wordsPerRow = (columns + 63) >>> 6;
+        this.image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        this.shown = new long[wordsPerRow * rows];
+        this.solvePath = new long[wordsPerRow * rows];
+        this.aliveRGB = aliveColor.getRGB();
+        this.deadRGB = deadColor.getRGB();
+        this.solveRGB = solveColor.getRGB();
+        Arrays.fill(pixels, deadRGB);
+        setPreferredSize(new Dimension(columns * cellSize, rows * cellSize));
+        setOpaque(true);
+    }
+
+    /**
+     * Converts a component x coordinate into a cell column
+     * @param x - x coordinate in the component (pixels)
+     * @return - column of the cell under the point, clamped to the grid
+     */
+    public int cellX(int x) {
+        return Math.max(0, Math.min(columns - 1, (int) ((long) x * columns / Math.max(1, getWidth()))));
+    }
+
+    /**
+     * Converts a component y coordinate into a cell row
+     * @param y - y coordinate in the component (pixels)
+     * @return - row of the cell under the point, clamped to the grid
+     */
+    public int cellY(int y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((long) y * rows / Math.max(1, getHeight()))));
+    }
+
+    /**
+     * Draws the cells of a grid that differ from the cells shown, then repaints the changed rows
+     * @param grid - grid to show, must have the size of the canvas
+     */
+    public void refresh(MazeGrid grid) {
+        long[] words = grid.getWords();
+        for (int band = 0; band < rows; band += BAND_ROWS) {
+            int minX = columns;
+            int maxX = -1;
+            int minY = rows;
+            int maxY = -1;
+            for (int y = band; y < Math.min(rows, band + BAND_ROWS); y++) {
+                for (int w = 0; w < wordsPerRow; w++) {
+                    int i = y * wordsPerRow + w;
+                    long changed = words[i] ^ shown[i];
+                    if (changed == 0) {
+                        continue;
+                    }
+                    shown[i] = words[i];
+                    solvePath[i] &= ~words[i]; //cells coming alive lose their solve mark
+                    minX = Math.min(minX, (w << 6) + Long.numberOfTrailingZeros(changed));
+                    maxX = Math.max(maxX, (w << 6) + 63 - Long.numberOfLeadingZeros(changed));
+                    minY = Math.min(minY, y);
+                    maxY = y;
+                    while (changed != 0) {
+                        int x = (w << 6) + Long.numberOfTrailingZeros(changed);
+                        pixels[y * columns + x] = colorOf(x, y);
+                        changed &= changed - 1;
+                    }
+                }
+            }
+            if (maxX >= 0) {
+                repaintCells(minX, minY, maxX, maxY);
+            }
+        }
+    }
+
+    /**
+     * Marks or unmarks a dead cell as part of a solve pathway
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @param onPath - true to mark the cell
+     */
+    public void setSolvePath(int x, int y, boolean onPath) {
+        int i = y * wordsPerRow + (x >>> 6);
+        if (onPath) {
+            solvePath[i] |= 1L << x;
+        } else {
+            solvePath[i] &= ~(1L << x);
+        }
+        pixels[y * columns + x] = colorOf(x, y);
+        repaintCells(x, y, x, y);
+    }
+
+    /**
+     * Checks if a cell is marked as part of a solve pathway
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @return - true if the cell is marked
+     */
+    public boolean isSolvePath(int x, int y) {
+        return (solvePath[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Gives a copy of the solve pathway marks
+     * @return - marked cells, packed like MazeGrid
+     */
+    public long[] getSolvePaths() {
+        return solvePath.clone();
+    }
+
+    /**
+     * Removes every solve pathway mark
+     */
+    public void clearSolvePaths() {
+        for (int y = 0; y < rows; y++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                long marked = solvePath[y * wordsPerRow + w];
+                solvePath[y * wordsPerRow + w] = 0;
+                while (marked != 0) {
+                    int x = (w << 6) + Long.numberOfTrailingZeros(marked);
+                    pixels[y * columns + x] = colorOf(x, y);
+                    marked &= marked - 1;
+                }
+            }
+        }
+        repaint();
+    }
+
+    /**
+     * Sets the text drawn in a box over the top left corner of the grid
+     * @param lines - lines of text, null to remove the box
+     */
+    public void setOverlay(String[] lines) {
+        overlay = lines;
+        repaint();
+    }
+
+    private int colorOf(int x, int y) {
+        int i = y * wordsPerRow + (x >>> 6);
+        if ((shown[i] & (1L << x)) != 0) {
+            return aliveRGB;
+        }
+        return (solvePath[i] & (1L << x)) != 0 ? solveRGB : deadRGB;
+    }
+
+    /**
+     * Repaints the component area covering a rectangle of cells
+     */
+    private void repaintCells(int minX, int minY, int maxX, int maxY) {
+        int w = getWidth();
+        int h = getHeight();
+        int left = (int) ((long) minX * w / columns);
+        int top = (int) ((long) minY * h / rows);
+        int right = (int) (((long) (maxX + 1) * w + columns - 1) / columns);
+        int bottom = (int) (((long) (maxY + 1) * h + rows - 1) / rows);
+        repaint(left, top, right - left, bottom - top);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+        String[] lines = overlay;
+        if (lines != null) {
+            g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            FontMetrics metrics = g.getFontMetrics();
+            int boxWidth = 0;
+            for (String line : lines) {
+                boxWidth = Math.max(boxWidth, metrics.stringWidth(line));
+            }
+            g.setColor(new Color(0, 0, 0, 160));
+            g.fillRect(4, 4, boxWidth + 12, lines.length * metrics.getHeight() + 8);
+            g.setColor(Color.WHITE);
+            for (int i = 0; i < lines.length; i++) {
+                g.drawString(lines[i], 10, 8 + i * metrics.getHeight() + metrics.getAscent());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,412 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Title: MazeEngine
+ * Description: Headless stepping engine that advances a MazeGrid one generation at a time.
+ * The Swing UI only observes the engine through generation listeners, so the engine can also run in batch jobs.
+ */
+
+public class MazeEngine {
+
+    /**
+     * Listener notified after every completed generation
+     */
+    public interface GenerationListener {
+        void generationCompleted(MazeEngine engine);
+    }
+
+    /**
+     * How a generation is computed from the previous one
+     */
+    public enum StepMode {
+        /** Every cell is computed from the previous generation into a back buffer, then the buffers are swapped */
+        DOUBLE_BUFFERED,
+        /** Legacy column-by-column sweep updating cells in place, later cells see already updated neighbours.
+         *  Only two state radius 1 Moore rules sweep in place, other rules always step double buffered */
+        IN_PLACE,
+        /** Hash-consed quadtree remembering the next generation of every square it has seen, fastest on large
+         *  or settled grids. Only two state radius 1 Moore rules use the quadtree, other rules step double buffered */
+        HASHLIFE
+    }
+
+    private volatile MazeGrid grid; //front buffer, current generation
+    private MazeGrid backGrid; //back buffer, receives the next generation
+    private volatile StepMode stepMode = StepMode.DOUBLE_BUFFERED; //step mode used by following generations
+    private volatile ParallelStepper parallelStepper; //steps row bands on several cores, null for a serial step
+    private final DirtyTileStepper tileStepper; //tracks changed tiles so quiet areas are skipped
+    private final RuleTableStepper ruleStepper; //steps rules the bit-parallel kernel cannot run
+    private HashlifeUniverse hashlife; //quadtree of the current generation in hashlife mode, created on first use
+    private boolean hashlifeStale = true; //grid changed since the quadtree was built
+    private volatile boolean dirtyTileTracking = true; //skip tiles with no change around them
+    private final ConvergenceDetector convergenceDetector = new ConvergenceDetector(); //spots repeating grids
+    private long stateHash = 0; //hash of the current generation, see ConvergenceDetector.gridHash
+    private boolean stateHashValid = false; //false after the grid was changed directly
+    private final List<GenerationListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile MazeRule rule = MazeRule.MAZE; //rule used by following generations
+    private long generation = 0; //number of generations stepped since last reset
+    private volatile MazeMetrics metrics; //receives the latency and work of every step, null when not measured
+
+    /**
+     * Creates an engine with an empty grid
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public MazeEngine(int width, int height) {
+        this.grid = new MazeGrid(width, height);
+        this.backGrid = new MazeGrid(width, height);
+        this.tileStepper = new DirtyTileStepper(width, height);
+        this.ruleStepper = new RuleTableStepper(width, height);
+    }
+
+    /**
+     * Gives the grid holding the current generation, the returned grid changes after a double buffered step
+     * @return - front buffer of the engine
+     */
+    public MazeGrid getGrid() {
+        return grid;
+    }
+
+    public StepMode getStepMode() {
+        return stepMode;
+    }
+
+    public void setStepMode(StepMode stepMode) {
+        this.stepMode = stepMode;
+        invalidate(); //hashlife mode hashes generations differently
+    }
+
+    public boolean isDirtyTileTracking() {
+        return dirtyTileTracking;
+    }
+
+    /**
+     * Enables or disables skipping of tiles with no change around them in double buffered steps
+     * @param dirtyTileTracking - true to only recompute active tiles
+     */
+    public void setDirtyTileTracking(boolean dirtyTileTracking) {
+        this.dirtyTileTracking = dirtyTileTracking;
+        tileStepper.invalidate();
+    }
+
+    /**
+     * Gives the number of tiles recomputed by the last generation
+     * @return - active tile count, every tile counts as active without dirty tile tracking
+     */
+    public int getActiveTiles() {
+        return dirtyTileTracking && stepMode == StepMode.DOUBLE_BUFFERED && rule.isBitParallel()
+                ? tileStepper.getActiveTiles() : tileStepper.getTileCount();
+    }
+
+    public int getTileCount() {
+        return tileStepper.getTileCount();
+    }
+
+    /**
+     * Gives the tiles whose cells changed in the last generation or through setCell since, see
+     * DirtyTileStepper.getChangedTiles. Only double buffered steps with dirty tile tracking keep them.
+     * @return - true for each changed tile, null if any tile may have changed
+     */
+    public boolean[] getChangedTiles() {
+        return tileStepper.getChangedTiles();
+    }
+
+    /**
+     * Sets a cell of the current generation and marks its tile as changed
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @param alive - new state of cell
+     */
+    public void setCell(int x, int y, boolean alive) {
+        MazeGrid grid = this.grid;
+        int index = y * grid.getWordsPerRow() + (x >>> 6);
+        long before = grid.getWords()[index];
+        grid.setAlive(x, y, alive);
+        tileStepper.markChanged(x, y);
+        ruleStepper.clearState(x, y);
+        hashlifeStale = true;
+        stateHash ^= ConvergenceDetector.wordHash(index, before) ^ ConvergenceDetector.wordHash(index, grid.getWords()[index]);
+        if (rule.getStates() > 2) {
+            stateHashValid = false; //dying state of the cell was cleared
+        }
+        convergenceDetector.reset();
+    }
+
+    /**
+     * Must be called after changing the grid directly, forces the next generation to recompute every tile
+     */
+    public void invalidate() {
+        tileStepper.invalidate();
+        hashlifeStale = true;
+        stateHashValid = false;
+        convergenceDetector.reset();
+    }
+
+    /**
+     * Checks if the grid has reached a fixed point or a short period oscillator
+     * @return - true once a recent generation has repeated
+     */
+    public boolean isConverged() {
+        return convergenceDetector.isConverged();
+    }
+
+    /**
+     * Gives the generation from which the grid repeats
+     * @return - first generation of the cycle, -1 if not converged
+     */
+    public long getConvergedGeneration() {
+        return convergenceDetector.getConvergedGeneration();
+    }
+
+    /**
+     * Gives the period of the cycle the grid has converged to
+     * @return - 1 for a fixed point, 0 if not converged
+     */
+    public int getConvergedPeriod() {
+        return convergenceDetector.getPeriod();
+    }
+
+    /**
+     * Gives the hash of the current generation, kept up to date from the words changed by each step
+     * @return - grid hash, see ConvergenceDetector.gridHash, combined with the dying cells of Generations rules,
+     * or the quadtree hash in hashlife mode
+     */
+    public long getStateHash() {
+        if (stepMode == StepMode.HASHLIFE && hashlife != null && !hashlifeStale) {
+            return hashlife.getHash();
+        }
+        if (!stateHashValid) {
+            stateHash = ConvergenceDetector.gridHash(grid);
+            if (rule.getStates() > 2) {
+                stateHash ^= ruleStepper.getStatesHash();
+            }
+            stateHashValid = true;
+        }
+        return stateHash;
+    }
+
+    public ParallelStepper getParallelStepper() {
+        return parallelStepper;
+    }
+
+    /**
+     * Sets the stepper used to split double buffered generations over several cores
+     * @param parallelStepper - parallel stepper, null to step on the calling thread
+     */
+    public void setParallelStepper(ParallelStepper parallelStepper) {
+        this.parallelStepper = parallelStepper;
+    }
+
+    public MazeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics recording every following step
+     * @param metrics - metrics, shared by several engines in a batch, null to stop recording
+     */
+    public void setMetrics(MazeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public MazeRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Sets the rule used by following generations, dying cells of the previous rule are forgotten
+     * @param rule - compiled rule, see MazeRule.parse
+     */
+    public void setRule(MazeRule rule) {
+        this.rule = rule;
+        ruleStepper.clearStates();
+        invalidate();
+    }
+
+    /**
+     * Gives the state of a cell under the current rule
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @return - 0 dead, 1 alive, 2 and above dying for Generations rules
+     */
+    public int getCellState(int x, int y) {
+        return rule.getStates() > 2 ? ruleStepper.getState(grid, x, y) : (grid.isAlive(x, y) ? 1 : 0);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Sets the generation counter after the grid was replaced with another generation, e.g. one restored from
+     * MazeHistory. Dying cells of Generations rules are not restored and start dead.
+     * @param generation - generation now held by the grid
+     */
+    public void setGeneration(long generation) {
+        this.generation = generation;
+        ruleStepper.clearStates();
+        invalidate();
+    }
+
+    public void addGenerationListener(GenerationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Advances the grid by one generation using the current step mode
+     */
+    public void step() {
+        MazeMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        MazeRule rule = this.rule;
+        boolean hashlifeStep = stepMode == StepMode.HASHLIFE && rule.isBitParallel();
+        if (hashlifeStep && hashlifeStale) {
+            if (hashlife == null) {
+                hashlife = new HashlifeUniverse(grid.getWidth(), grid.getHeight());
+            }
+            hashlife.load(grid);
+            hashlifeStale = false;
+        }
+        if (!convergenceDetector.hasHistory()) {
+            convergenceDetector.record(generation, getStateHash());
+        }
+        if (hashlifeStep) {
+            stepHashlife(rule);
+            stateHashValid = false;
+        } else if (!rule.isBitParallel()) {
+            stepLookupTable(rule);
+            stateHashValid = false;
+        } else if (stepMode == StepMode.IN_PLACE) {
+            stepInPlace(rule);
+            stateHashValid = false;
+        } else {
+            boolean hashed = stateHashValid && dirtyTileTracking;
+            stepDoubleBuffered(rule);
+            if (hashed) {
+                stateHash ^= tileStepper.getHashDelta();
+            } else {
+                stateHashValid = false;
+            }
+        }
+        hashlifeStale = !hashlifeStep;
+        generation++;
+        convergenceDetector.record(generation, getStateHash());
+        if (metrics != null) {
+            //Tiles at the right and bottom edges may hang over the grid
+            int activeTiles = getActiveTiles();
+            long cells = Math.min((long) activeTiles * 64 * DirtyTileStepper.TILE_ROWS,
+                    (long) grid.getWidth() * grid.getHeight());
+            metrics.recordStep(System.nanoTime() - start, cells, activeTiles, getTileCount());
+        }
+        for (GenerationListener listener : listeners) {
+            listener.generationCompleted(this);
+        }
+    }
+
+    /**
+     * Computes every cell of the next generation from the front buffer into the back buffer with the
+     * bit-parallel kernel, then swaps them
+     * @param rule - two state radius 1 Moore rule
+     */
+    private void stepDoubleBuffered(MazeRule rule) {
+        MazeGrid front = grid;
+        MazeGrid back = backGrid;
+        ParallelStepper stepper = parallelStepper;
+        int birthMask = rule.getBirthMask();
+        int surviveMask = rule.getSurviveMask();
+        if (dirtyTileTracking) {
+            tileStepper.step(front, back, birthMask, surviveMask, stepper);
+        } else {
+            if (stepper != null) {
+                stepper.step(front, back, birthMask, surviveMask);
+            } else {
+                BitParallelKernel.stepRows(front.getWords(), back.getWords(), front.getWidth(), front.getHeight(),
+                        front.getWordsPerRow(), 0, front.getHeight(), birthMask, surviveMask);
+            }
+            tileStepper.invalidate();
+        }
+        backGrid = front;
+        grid = back;
+    }
+
+    /**
+     * Computes the next generation of a Generations or larger neighbourhood rule through the rule's lookup
+     * table, then swaps the buffers. Such rules always step double buffered with every tile recomputed.
+     * @param rule - rule the bit-parallel kernel cannot run
+     */
+    private void stepLookupTable(MazeRule rule) {
+        MazeGrid front = grid;
+        MazeGrid back = backGrid;
+        ruleStepper.step(front, back, rule, parallelStepper);
+        tileStepper.invalidate();
+        backGrid = front;
+        grid = back;
+    }
+
+    /**
+     * Advances the quadtree by one generation and writes the squares that changed into the back buffer,
+     * then swaps the buffers
+     * @param rule - two state radius 1 Moore rule
+     */
+    private void stepHashlife(MazeRule rule) {
+        MazeGrid back = backGrid;
+        hashlife.step(rule);
+        hashlife.store(back);
+        tileStepper.invalidate();
+        backGrid = grid;
+        grid = back;
+    }
+
+    /**
+     * Reference step counting neighbours one cell at a time, gives the same result as the bit-parallel kernel
+     * @param src - grid holding the current generation
+     * @param dst - grid receiving the next generation, must not be src
+     * @param rule - two state radius 1 Moore rule
+     */
+    public static void stepScalar(MazeGrid src, MazeGrid dst, MazeRule rule) {
+        long[] next = dst.getWords();
+        int wordsPerRow = src.getWordsPerRow();
+        for (int y = 0; y < src.getHeight(); y++) {
+            for (int w = 0; w < wordsPerRow; w++) {
+                long word = 0;
+                int end = Math.min(64, src.getWidth() - (w << 6));
+                for (int b = 0; b < end; b++) {
+                    int x = (w << 6) + b;
+                    if (rule.nextState(src.isAlive(x, y) ? 1 : 0, src.countNeighbours(x, y)) == 1) {
+                        word |= 1L << b;
+                    }
+                }
+                next[y * wordsPerRow + w] = word;
+            }
+        }
+    }
+
+    /**
+     * Legacy step sweeping columns in the same order as the original Swing grid, updating cells in place
+     * @param rule - two state radius 1 Moore rule
+     */
+    private void stepInPlace(MazeRule rule) {
+        MazeGrid grid = this.grid;
+        for (int x = 0; x < grid.getWidth(); x++) {
+            for (int y = 0; y < grid.getHeight(); y++) {
+                boolean alive = grid.isAlive(x, y);
+                boolean next = rule.nextState(alive ? 1 : 0, grid.countNeighbours(x, y)) == 1;
+                if (next != alive) {
+                    grid.setAlive(x, y, next);
+                }
+            }
+        }
+        tileStepper.invalidate();
+    }
+
+    /**
+     * Kills every cell and resets the generation counter
+     */
+    public void reset() {
+        grid.clear();
+        ruleStepper.clearStates();
+        generation = 0;
+        invalidate();
+    }
+
+}
@@ -0,0 +1,515 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Title: MazeFile
+ * Description: Compact binary maze format holding one or more maze records.
+ * Each record is a little-endian header (magic, version, flags, width, height, seed, generation, rule,
+ * payload size) followed by the bit-packed rows, optionally run-length encoded as (run, word) pairs.
+ * Writing goes through a FileChannel with a direct buffer, reading maps the file in windows so
+ * large files and batches are streamed one record at a time.
+ */
+
+public class MazeFile {
+
+    public static final int MAGIC = 0x5A4D4143; //"CAMZ" in little-endian byte order
+    public static final short VERSION = 1; //format version written by this class
+    public static final short FLAG_RLE = 1; //payload is run-length encoded
+    public static final String EXTENSION = ".camz"; //file extension used by the Swing file dialogs
+
+    private static final int FIXED_HEADER_BYTES = 4 + 2 + 2 + 4 + 4 + 8 + 8 + 2; //header bytes before the rule
+    private static final int MAX_RULE_BYTES = 0xFFFF; //longest rule, its length is stored in an unsigned short
+    private static final long WINDOW_BYTES = 1L << 28; //size of the mapped window used by readers
+
+    private MazeFile() {}
+
+    /**
+     * Saves a single maze to a file, replacing its content
+     * @param path - file to write
+     * @param grid - cells to save
+     * @param rule - rulestring of the maze, e.g. B3/S1234
+     * @param seed - seed of the initial fill, 0 if drawn by hand
+     * @param generation - generation of the saved cells
+     * @param rle - true to run-length encode the rows
+     */
+    public static void save(Path path, MazeGrid grid, String rule, long seed, long generation, boolean rle) throws IOException {
+        try (Writer writer = new Writer(path, rle)) {
+            writer.write(grid, rule, seed, generation);
+        }
+    }
+
+    /**
+     * Encodes a single maze as the bytes of a maze file, e.g. to send it over a network
+     * @param grid - cells to encode
+     * @param rule - rulestring of the maze, e.g. B3/S1234
+     * @param seed - seed of the initial fill, 0 if drawn by hand
+     * @param generation - generation of the cells
+     * @param rle - true to run-length encode the rows
+     * @return - content of a maze file holding the maze
+     */
+    public static byte[] toBytes(MazeGrid grid, String rule, long seed, long generation, boolean rle) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(FIXED_HEADER_BYTES + 64 + grid.getWords().length * 8);
+        try (Writer writer = new Writer(Channels.newChannel(bytes), rle)) {
+            writer.write(grid, rule, seed, generation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); //a byte array stream does not fail
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Loads the first maze of a file
+     * @param path - file to read
+     * @return - grid holding the cells of the first record
+     */
+    public static MazeGrid load(Path path) throws IOException {
+        try (Reader reader = new Reader(path)) {
+            if (!reader.next()) {
+                throw new IOException("No maze found in " + path);
+            }
+            MazeGrid grid = new MazeGrid(reader.getWidth(), reader.getHeight());
+            reader.readInto(grid);
+            return grid;
+        }
+    }
+
+    /**
+     * Appends maze records to a file through a FileChannel, or to any other channel
+     */
+    public static class Writer implements Closeable {
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer; //direct for files, on the heap for other channels
+        private final boolean rle; //run-length encode the rows of each record
+
+        /**
+         * Opens a file for writing, replacing its content
+         * @param path - file to write
+         * @param rle - true to run-length encode the rows
+         */
+        public Writer(Path path, boolean rle) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            this.rle = rle;
+        }
+
+        /**
+         * Writes to a channel, which is closed with the writer
+         * @param channel - channel receiving the records, e.g. a stream wrapped by Channels.newChannel
+         * @param rle - true to run-length encode the rows
+         */
+        public Writer(WritableByteChannel channel, boolean rle) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(FIXED_HEADER_BYTES + MAX_RULE_BYTES + 8) //fits the longest header
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            this.rle = rle;
+        }
+
+        /**
+         * Writes one maze record
+         * @param grid - cells to write
+         * @param rule - rulestring of the maze
+         * @param seed - seed of the initial fill
+         * @param generation - generation of the cells
+         */
+        public void write(MazeGrid grid, String rule, long seed, long generation) throws IOException {
+            write(grid.getWords(), grid.getWidth(), grid.getHeight(), rule, seed, generation);
+        }
+
+        /**
+         * Writes one maze record from packed words
+         * @param words - packed rows, (width + 63) / 64 words per row
+         * @param width - width of maze (cells)
+         * @param height - height of maze (cells)
+         * @param rule - rulestring of the maze
+         * @param seed - seed of the initial fill
+         * @param generation - generation of the cells
+         */
+        public void write(long[] words, int width, int height, String rule, long seed, long generation) throws IOException {
+            writeHeader(width, height, rule, seed, generation, rle ? encodedBytes(words) : words.length * 8L);
+            if (rle) {
+                int i = 0;
+                while (i < words.length) {
+                    int run = 1;
+                    while (i + run < words.length && words[i + run] == words[i]) {
+                        run++;
+                    }
+                    ensure(12);
+                    buffer.putInt(run);
+                    buffer.putLong(words[i]);
+                    i += run;
+                }
+            } else {
+                for (long word : words) {
+                    ensure(8);
+                    buffer.putLong(word);
+                }
+            }
+        }
+
+        /**
+         * Writes one maze record from an off-heap grid, streaming its rows without copying the grid to the heap
+         * @param grid - cells to write
+         * @param rule - rulestring of the maze
+         * @param seed - seed of the initial fill
+         * @param generation - generation of the cells
+         */
+        public void write(OffHeapGrid grid, String rule, long seed, long generation) throws IOException {
+            int wordsPerRow = grid.getWordsPerRow();
+            long[] row = new long[wordsPerRow];
+            long payload = grid.getHeight() * (long) wordsPerRow * 8;
+            if (rle) {
+                //First pass counts the runs, the header needs the payload size
+                long runs = 0;
+                int run = 0;
+                long runWord = 0;
+                for (int y = 0; y < grid.getHeight(); y++) {
+                    grid.readRows(y, 1, row, 0);
+                    for (int w = 0; w < wordsPerRow; w++) {
+                        if (run > 0 && row[w] == runWord && run < Integer.MAX_VALUE) {
+                            run++;
+                        } else {
+                            runs++;
+                            run = 1;
+                            runWord = row[w];
+                        }
+                    }
+                }
+                payload = runs * 12;
+            }
+            writeHeader(grid.getWidth(), grid.getHeight(), rule, seed, generation, payload);
+            int run = 0;
+            long runWord = 0;
+            for (int y = 0; y < grid.getHeight(); y++) {
+                grid.readRows(y, 1, row, 0);
+                for (int w = 0; w < wordsPerRow; w++) {
+                    if (!rle) {
+                        ensure(8);
+                        buffer.putLong(row[w]);
+                    } else if (run > 0 && row[w] == runWord && run < Integer.MAX_VALUE) {
+                        run++;
+                    } else {
+                        if (run > 0) {
+                            ensure(12);
+                            buffer.putInt(run);
+                            buffer.putLong(runWord);
+                        }
+                        run = 1;
+                        runWord = row[w];
+                    }
+                }
+            }
+            if (run > 0) {
+                ensure(12);
+                buffer.putInt(run);
+                buffer.putLong(runWord);
+            }
+        }
+
+        private void writeHeader(int width, int height, String rule, long seed, long generation, long payload)
+                throws IOException {
+            byte[] ruleBytes = rule.getBytes(StandardCharsets.UTF_8);
+            if (ruleBytes.length > MAX_RULE_BYTES) {
+                throw new IllegalArgumentException("Rule is " + ruleBytes.length + " bytes long, at most "
+                        + MAX_RULE_BYTES + " fit in a maze file");
+            }
+            ensure(FIXED_HEADER_BYTES + ruleBytes.length + 8);
+            buffer.putInt(MAGIC);
+            buffer.putShort(VERSION);
+            buffer.putShort(rle ? FLAG_RLE : 0);
+            buffer.putInt(width);
+            buffer.putInt(height);
+            buffer.putLong(seed);
+            buffer.putLong(generation);
+            buffer.putShort((short) ruleBytes.length);
+            buffer.put(ruleBytes);
+            buffer.putLong(payload);
+        }
+
+        /**
+         * Makes room for a number of bytes in the buffer, flushing it to the channel when needed
+         */
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Size of run-length encoded words
+     * @param words - packed rows
+     * @return - number of payload bytes
+     */
+    private static long encodedBytes(long[] words) {
+        long runs = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (i == 0 || words[i] != words[i - 1]) {
+                runs++;
+            }
+        }
+        return runs * 12;
+    }
+
+    /**
+     * Reads maze records one at a time from a memory-mapped file
+     */
+    public static class Reader implements Closeable {
+
+        private final FileChannel channel;
+        private final long size; //size of the file (bytes)
+        private MappedByteBuffer window; //currently mapped part of the file
+        private long windowStart = 0; //file position of the start of the window
+        private long position = 0; //file position of the next record
+        private long payloadStart = -1; //file position of the payload of the current record
+        private int width;
+        private int height;
+        private long seed;
+        private long generation;
+        private String rule;
+        private boolean rle;
+        private long payloadBytes;
+
+        /**
+         * Opens a file for reading
+         * @param path - file to read
+         */
+        public Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+        }
+
+        /**
+         * Moves to the next record and reads its header
+         * @return - false if no more records follow
+         */
+        public boolean next() throws IOException {
+            if (payloadStart >= 0) {
+                position = payloadStart + payloadBytes;
+            }
+            if (position >= size) {
+                return false;
+            }
+            ByteBuffer header = map(position, FIXED_HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a maze file record at byte " + position);
+            }
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported maze file version " + version);
+            }
+            rle = (header.getShort() & FLAG_RLE) != 0;
+            width = header.getInt();
+            height = header.getInt();
+            seed = header.getLong();
+            generation = header.getLong();
+            int ruleLength = header.getShort() & 0xFFFF;
+            ByteBuffer ruleAndSize = map(position + FIXED_HEADER_BYTES, ruleLength + 8);
+            byte[] ruleBytes = new byte[ruleLength];
+            ruleAndSize.get(ruleBytes);
+            rule = new String(ruleBytes, StandardCharsets.UTF_8);
+            payloadBytes = ruleAndSize.getLong();
+            payloadStart = position + FIXED_HEADER_BYTES + ruleLength + 8;
+            if (width <= 0 || height <= 0 || payloadBytes < 0 || payloadStart + payloadBytes > size) {
+                throw new IOException("Corrupt maze file record at byte " + position);
+            }
+            return true;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+
+        /**
+         * Reads the cells of the current record
+         * @param grid - grid receiving the cells, must have the dimensions of the record
+         */
+        public void readInto(MazeGrid grid) throws IOException {
+            checkSize(grid.getWidth(), grid.getHeight());
+            long[] words = grid.getWords();
+            if (rle) {
+                if (payloadBytes % 12 != 0) {
+                    throw new IOException("Run-length data is not a whole number of runs: " + payloadBytes + " bytes");
+                }
+                int i = 0;
+                long offset = 0;
+                while (offset < payloadBytes) {
+                    long chunk = Math.min(payloadBytes - offset, WINDOW_BYTES / 12 * 12);
+                    ByteBuffer runs = map(payloadStart + offset, chunk);
+                    while (runs.hasRemaining()) {
+                        int count = runs.getInt();
+                        long word = runs.getLong();
+                        if (count <= 0 || count > words.length - i) {
+                            throw new IOException("Corrupt run-length data in record at byte " + position);
+                        }
+                        Arrays.fill(words, i, i + count, word);
+                        i += count;
+                    }
+                    offset += chunk;
+                }
+                if (i != words.length) {
+                    throw new IOException("Run-length data ends after " + i + " of " + words.length + " words");
+                }
+            } else {
+                if (payloadBytes != words.length * 8L) {
+                    throw new IOException("Expected " + words.length * 8L + " payload bytes, found " + payloadBytes);
+                }
+                int i = 0;
+                while (i < words.length) {
+                    int chunk = (int) Math.min(words.length - i, WINDOW_BYTES / 8);
+                    LongBuffer longs = map(payloadStart + i * 8L, chunk * 8L).asLongBuffer();
+                    longs.get(words, i, chunk);
+                    i += chunk;
+                }
+            }
+            //Cells past the width of each row must stay dead for the steppers
+            long lastWordMask = DirtyTileStepper.lastWordMask(width);
+            int wordsPerRow = grid.getWordsPerRow();
+            for (int last = wordsPerRow - 1; last < words.length; last += wordsPerRow) {
+                words[last] &= lastWordMask;
+            }
+        }
+
+        /**
+         * Reads the cells of the current record into an off-heap grid, streaming the rows through the mapped
+         * window without copying the grid to the heap
+         * @param grid - grid receiving the cells, must have the dimensions of the record
+         */
+        public void readInto(OffHeapGrid grid) throws IOException {
+            checkSize(grid.getWidth(), grid.getHeight());
+            int wordsPerRow = grid.getWordsPerRow();
+            long totalWords = (long) height * wordsPerRow;
+            long[] row = new long[wordsPerRow];
+            long lastWordMask = DirtyTileStepper.lastWordMask(width); //cells past the width must stay dead
+            if (rle) {
+                if (payloadBytes % 12 != 0) {
+                    throw new IOException("Run-length data is not a whole number of runs: " + payloadBytes + " bytes");
+                }
+                int y = 0;
+                int w = 0; //next word of the row being decoded
+                long offset = 0;
+                while (offset < payloadBytes) {
+                    long chunk = Math.min(payloadBytes - offset, WINDOW_BYTES / 12 * 12);
+                    ByteBuffer runs = map(payloadStart + offset, chunk);
+                    while (runs.hasRemaining()) {
+                        int count = runs.getInt();
+                        long word = runs.getLong();
+                        if (count <= 0 || count > totalWords - ((long) y * wordsPerRow + w)) {
+                            throw new IOException("Corrupt run-length data in record at byte " + position);
+                        }
+                        //A run may end inside the row or cover several rows
+                        while (count > 0) {
+                            int n = Math.min(count, wordsPerRow - w);
+                            Arrays.fill(row, w, w + n, word);
+                            w += n;
+                            count -= n;
+                            if (w == wordsPerRow) {
+                                row[wordsPerRow - 1] &= lastWordMask;
+                                grid.writeRows(y++, 1, row, 0);
+                                w = 0;
+                            }
+                        }
+                    }
+                    offset += chunk;
+                }
+                if (y != height) {
+                    throw new IOException("Run-length data ends after " + ((long) y * wordsPerRow + w) + " of "
+                            + totalWords + " words");
+                }
+            } else {
+                if (payloadBytes != totalWords * 8) {
+                    throw new IOException("Expected " + totalWords * 8 + " payload bytes, found " + payloadBytes);
+                }
+                int windowRows = (int) Math.max(1, WINDOW_BYTES / (wordsPerRow * 8L));
+                for (int y = 0; y < height; y += windowRows) {
+                    int rows = Math.min(windowRows, height - y);
+                    LongBuffer longs = map(payloadStart + (long) y * wordsPerRow * 8, (long) rows * wordsPerRow * 8)
+                            .asLongBuffer();
+                    for (int r = 0; r < rows; r++) {
+                        longs.get(row);
+                        row[wordsPerRow - 1] &= lastWordMask;
+                        grid.writeRows(y + r, 1, row, 0);
+                    }
+                }
+            }
+        }
+
+        private void checkSize(int gridWidth, int gridHeight) throws IOException {
+            if (gridWidth != width || gridHeight != height) {
+                throw new IOException("Maze is " + width + "x" + height + " but grid is " + gridWidth + "x" + gridHeight);
+            }
+        }
+
+        /**
+         * Gives a little-endian view of a region of the file, remapping the window when needed
+         */
+        private ByteBuffer map(long start, long length) throws IOException {
+            if (start + length > size) {
+                throw new IOException("Unexpected end of maze file at byte " + size);
+            }
+            if (window == null || start < windowStart || start + length > windowStart + window.capacity()) {
+                windowStart = start;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(size - start, Math.max(length, WINDOW_BYTES)));
+            }
+            ByteBuffer view = window.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            view.position((int) (start - windowStart));
+            view.limit((int) (start - windowStart + length));
+            return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+
+}
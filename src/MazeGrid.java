@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * Title: MazeGrid
+ * Description: Headless maze grid model storing one bit per cell, packed into long words row by row.
+ * Cells outside the grid are treated as dead, matching the bounds checks of the Swing grid.
+ */
+
+public class MazeGrid {
+
+    private final int width; //width of grid (cells)
+    private final int height; //height of grid (cells)
+    private final int wordsPerRow; //number of long words used to store one row
+    private final long[] cells; //packed cell states, bit x % 64 of word (y * wordsPerRow + x / 64) is cell (x, y)
+
+    /**
+     * Creates an empty grid with all cells dead
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public MazeGrid(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Grid dimensions must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        this.cells = new long[Math.multiplyExact(wordsPerRow, height)];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * Gives direct access to the packed cell words, used by the stepping kernels
+     * @return - backing array of the grid, row y starts at index y * wordsPerRow
+     */
+    public long[] getWords() {
+        return cells;
+    }
+
+    /**
+     * Checks if a cell is alive
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @return - returns true if cell is alive
+     */
+    public boolean isAlive(int x, int y) {
+        return (cells[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Sets a cell to alive or dead
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @param alive - new state of cell
+     */
+    public void setAlive(int x, int y, boolean alive) {
+        int index = y * wordsPerRow + (x >>> 6);
+        if (alive) {
+            cells[index] |= 1L << x;
+        } else {
+            cells[index] &= ~(1L << x);
+        }
+    }
+
+    /**
+     * Counts alive neighbours of a cell, cells outside of the grid count as dead
+     * @param x - x coordinate of cell to check
+     * @param y - y coordinate of cell to check
+     * @return - returns number of alive neighbours as an int
+     */
+    public int countNeighbours(int x, int y) {
+        int aliveNeighbours = 0;
+        for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ny++) {
+            for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+                if ((nx != x || ny != y) && isAlive(nx, ny)) {
+                    aliveNeighbours++;
+                }
+            }
+        }
+        return aliveNeighbours;
+    }
+
+    /**
+     * Counts all alive cells in the grid
+     * @return - number of alive cells
+     */
+    public long countAlive() {
+        long alive = 0;
+        for (long word : cells) {
+            alive += Long.bitCount(word);
+        }
+        return alive;
+    }
+
+    /**
+     * Sets every cell to dead
+     */
+    public void clear() {
+        Arrays.fill(cells, 0L);
+    }
+
+    /**
+     * Copies all cells from another grid of the same dimensions
+     * @param other - grid to copy from
+     */
+    public void copyFrom(MazeGrid other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("Grid dimensions differ: " + other.width + "x" + other.height
+                    + " vs " + width + "x" + height);
+        }
+        System.arraycopy(other.cells, 0, cells, 0, cells.length);
+    }
+
+    /**
+     * Sets all cells on the outer edge of the grid to alive
+     */
+    public void createBorder() {
+        for (int x = 0; x < width; x++) {
+            setAlive(x, 0, true);
+            setAlive(x, height - 1, true);
+        }
+        for (int y = 0; y < height; y++) {
+            setAlive(0, y, true);
+            setAlive(width - 1, y, true);
+        }
+    }
+
+}
@@ -0,0 +1,385 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Title: MazeHistory
+ * Description: Bounded ring buffer of past generations for rewinding and replaying a maze.
+ * Every KEYFRAME_INTERVAL generations a keyframe holds the whole grid, the generations in between hold the XOR
+ * of their grid with the generation before. Entries with few changed words keep only those words and their
+ * indexes. When the history outgrows its memory budget the oldest generations are dropped, the oldest kept
+ * generation is turned into a keyframe so every generation held can still be restored.
+ */
+
+public class MazeHistory {
+
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 32; //generations between two keyframes
+    public static final long DEFAULT_MAX_BYTES = 64L << 20; //default memory budget
+    private static final int ENTRY_BYTES = 48; //estimated size of an entry without its arrays
+
+    /**
+     * One generation, the XOR of its grid with the generation before or with an empty grid for a keyframe
+     */
+    private static class Entry {
+        final long generation;
+        final boolean keyframe;
+        final int[] indexes; //indexes of the words held, null when every word is held
+        final long[] words; //changed words, or every word when indexes is null
+
+        Entry(long generation, boolean keyframe, int[] indexes, long[] words) {
+            this.generation = generation;
+            this.keyframe = keyframe;
+            this.indexes = indexes;
+            this.words = words;
+        }
+
+        long bytes() {
+            return ENTRY_BYTES + words.length * 8L + (indexes == null ? 0 : indexes.length * 4L);
+        }
+
+        /**
+         * XORs the entry into a grid
+         * @param state - packed words of the grid
+         */
+        void apply(long[] state) {
+            if (indexes == null) {
+                for (int i = 0; i < words.length; i++) {
+                    state[i] ^= words[i];
+                }
+            } else {
+                for (int i = 0; i < indexes.length; i++) {
+                    state[indexes[i]] ^= words[i];
+                }
+            }
+        }
+    }
+
+    private final int width; //width of grid (cells)
+    private final int height; //height of grid (cells)
+    private final int wordCount; //packed words of a grid
+    private final long maxBytes; //memory budget of the entries
+    private final int keyframeInterval; //generations between two keyframes
+    private Entry[] ring = new Entry[64]; //entries oldest first from head, length a power of two
+    private int head = 0; //index of the oldest entry
+    private int count = 0; //entries held
+    private long bytes = 0; //memory used by the entries
+    private int sinceKeyframe = 0; //entries recorded since the newest keyframe
+    private final long[] newest; //grid of the newest entry
+    private final long[] scratch; //XOR of a new grid with the newest one
+    private final long[] restored; //grid of the last restored generation, kept for scrubbing
+    private long restoredGeneration = -1; //generation held by restored, -1 if none
+
+    /**
+     * Creates an empty history with the default budget and keyframe interval
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public MazeHistory(int width, int height) {
+        this(width, height, DEFAULT_MAX_BYTES, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Creates an empty history
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     * @param maxBytes - memory budget of the stored generations
+     * @param keyframeInterval - generations between two keyframes, restoring applies at most this many deltas
+     */
+    public MazeHistory(int width, int height, long maxBytes, int keyframeInterval) {
+        if (maxBytes <= 0 || keyframeInterval <= 0) {
+            throw new IllegalArgumentException("Budget and keyframe interval must be positive");
+        }
+        this.width = width;
+        this.height = height;
+        this.wordCount = Math.multiplyExact((width + 63) >>> 6, height);
+        this.maxBytes = maxBytes;
+        this.keyframeInterval = keyframeInterval;
+        this.newest = new long[wordCount];
+        this.scratch = new long[wordCount];
+        this.restored = new long[wordCount];
+    }
+
+    /**
+     * Stores a generation. Recording a generation not after the newest one first drops the newest generations
+     * from that generation on, so continuing from a rewound generation replaces the old future.
+     * @param generation - generation of the grid
+     * @param grid - grid to store, must have the size of the history
+     */
+    public synchronized void record(long generation, MazeGrid grid) {
+        if (grid.getWidth() != width || grid.getHeight() != height) {
+            throw new IllegalArgumentException("Grid is " + grid.getWidth() + "x" + grid.getHeight()
+                    + " but history is " + width + "x" + height);
+        }
+        if (count > 0 && generation <= getNewestGeneration()) {
+            truncate(generation);
+        }
+        long[] words = grid.getWords();
+        Entry entry;
+        if (count == 0 || sinceKeyframe + 1 >= keyframeInterval) {
+            entry = encode(generation, true, words);
+            sinceKeyframe = 0;
+        } else {
+            for (int i = 0; i < wordCount; i++) {
+                scratch[i] = words[i] ^ newest[i];
+            }
+            entry = encode(generation, false, scratch);
+            sinceKeyframe++;
+        }
+        System.arraycopy(words, 0, newest, 0, wordCount);
+        append(entry);
+        while (bytes > maxBytes && count > 1) {
+            evictOldest();
+        }
+    }
+
+    /**
+     * Writes a stored generation into a grid
+     * @param generation - generation to restore
+     * @param grid - grid receiving the cells, must have the size of the history
+     * @return - false if the generation is not held
+     */
+    public synchronized boolean restore(long generation, MazeGrid grid) {
+        int target = indexOf(generation);
+        if (target < 0) {
+            return false;
+        }
+        int from = indexOf(restoredGeneration);
+        if (from >= 0 && from <= target) {
+            //Scrubbing forward, apply the entries after the last restored generation
+            for (int i = from + 1; i <= target; i++) {
+                applyTo(restored, i);
+            }
+        } else if (from > target && !hasKeyframe(target + 1, from)) {
+            //Scrubbing back inside one chain, a delta undoes itself
+            for (int i = from; i > target; i--) {
+                get(i).apply(restored);
+            }
+        } else {
+            int keyframe = target;
+            while (!get(keyframe).keyframe) {
+                keyframe--;
+            }
+            for (int i = keyframe; i <= target; i++) {
+                applyTo(restored, i);
+            }
+        }
+        restoredGeneration = generation;
+        System.arraycopy(restored, 0, grid.getWords(), 0, wordCount);
+        return true;
+    }
+
+    /**
+     * Writes the stored generations of a range to a maze file, one record per generation
+     * @param path - maze file to write
+     * @param from - first generation written
+     * @param to - last generation written
+     * @param rule - rulestring stored with each record
+     * @param seed - seed of the initial fill stored with each record, 0 if drawn by hand
+     * @param rle - true to run-length encode the rows
+     * @return - number of generations written
+     */
+    public synchronized int export(Path path, long from, long to, String rule, long seed, boolean rle)
+            throws IOException {
+        if (count == 0 || from > to || to < getOldestGeneration() || from > getNewestGeneration()) {
+            throw new IllegalArgumentException("No stored generations between " + from + " and " + to);
+        }
+        MazeGrid grid = new MazeGrid(width, height);
+        int written = 0;
+        try (MazeFile.Writer writer = new MazeFile.Writer(path, rle)) {
+            for (int i = 0; i < count; i++) {
+                long generation = get(i).generation;
+                if (generation >= from && generation <= to) {
+                    restore(generation, grid);
+                    writer.write(grid, rule, seed, generation);
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Drops every stored generation
+     */
+    public synchronized void clear() {
+        Arrays.fill(ring, null);
+        head = 0;
+        count = 0;
+        bytes = 0;
+        sinceKeyframe = 0;
+        restoredGeneration = -1;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized long getMemoryUsed() {
+        return bytes + wordCount * 24L;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Gives the oldest generation held
+     * @return - generation, -1 if the history is empty
+     */
+    public synchronized long getOldestGeneration() {
+        return count == 0 ? -1 : get(0).generation;
+    }
+
+    /**
+     * Gives the newest generation held
+     * @return - generation, -1 if the history is empty
+     */
+    public synchronized long getNewestGeneration() {
+        return count == 0 ? -1 : get(count - 1).generation;
+    }
+
+    /**
+     * Checks if a generation can be restored
+     * @param generation - generation to look for
+     * @return - true if the history holds the generation
+     */
+    public synchronized boolean contains(long generation) {
+        return indexOf(generation) >= 0;
+    }
+
+    /**
+     * Encodes a grid or a delta, keeping only the non-zero words when that is smaller
+     */
+    private Entry encode(long generation, boolean keyframe, long[] words) {
+        int nonZero = 0;
+        for (long word : words) {
+            if (word != 0) {
+                nonZero++;
+            }
+        }
+        //An index and a word take 12 bytes, a dense word 8
+        if (nonZero * 3L >= wordCount * 2L) {
+            return new Entry(generation, keyframe, null, words.clone());
+        }
+        int[] indexes = new int[nonZero];
+        long[] changed = new long[nonZero];
+        int n = 0;
+        for (int i = 0; i < wordCount; i++) {
+            if (words[i] != 0) {
+                indexes[n] = i;
+                changed[n++] = words[i];
+            }
+        }
+        return new Entry(generation, keyframe, indexes, changed);
+    }
+
+    private Entry get(int i) {
+        return ring[(head + i) & (ring.length - 1)];
+    }
+
+    private void append(Entry entry) {
+        if (count == ring.length) {
+            Entry[] grown = new Entry[ring.length * 2];
+            for (int i = 0; i < count; i++) {
+                grown[i] = get(i);
+            }
+            ring = grown;
+            head = 0;
+        }
+        ring[(head + count) & (ring.length - 1)] = entry;
+        count++;
+        bytes += entry.bytes();
+    }
+
+    /**
+     * Drops the oldest generation, turning the next one into a keyframe if it is a delta
+     */
+    private void evictOldest() {
+        Entry oldest = get(0);
+        Entry next = get(1);
+        if (!next.keyframe) {
+            Arrays.fill(scratch, 0);
+            oldest.apply(scratch);
+            next.apply(scratch);
+            Entry keyframe = encode(next.generation, true, scratch);
+            bytes += keyframe.bytes() - next.bytes();
+            ring[(head + 1) & (ring.length - 1)] = keyframe;
+        }
+        bytes -= oldest.bytes();
+        ring[head] = null;
+        head = (head + 1) & (ring.length - 1);
+        count--;
+        if (restoredGeneration == oldest.generation) {
+            restoredGeneration = -1;
+        }
+    }
+
+    /**
+     * Drops the generations from a generation on and rebuilds the newest grid
+     */
+    private void truncate(long generation) {
+        while (count > 0 && get(count - 1).generation >= generation) {
+            Entry entry = get(count - 1);
+            bytes -= entry.bytes();
+            ring[(head + count - 1) & (ring.length - 1)] = null;
+            count--;
+        }
+        if (restoredGeneration >= generation) {
+            restoredGeneration = -1;
+        }
+        if (count == 0) {
+            return;
+        }
+        sinceKeyframe = 0;
+        int keyframe = count - 1;
+        while (!get(keyframe).keyframe) {
+            keyframe--;
+            sinceKeyframe++;
+        }
+        for (int i = keyframe; i < count; i++) {
+            applyTo(newest, i);
+        }
+    }
+
+    /**
+     * Applies an entry to a grid, a keyframe replaces the grid
+     */
+    private void applyTo(long[] state, int i) {
+        Entry entry = get(i);
+        if (entry.keyframe) {
+            Arrays.fill(state, 0);
+        }
+        entry.apply(state);
+    }
+
+    private boolean hasKeyframe(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            if (get(i).keyframe) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the entry of a generation, generations increase from the oldest entry
+     * @return - entry index from the oldest, -1 if the generation is not held
+     */
+    private int indexOf(long generation) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long found = get(mid).generation;
+            if (found < generation) {
+                low = mid + 1;
+            } else if (found > generation) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+}
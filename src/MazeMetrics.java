@@ -0,0 +1,525 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Title: MazeMetrics
+ * Description: Live counters and latency histograms of generation, solving and rendering.
+ * Recording is lock free so the generation thread, batch workers and the Swing thread can record at any time.
+ * A sampler thread turns the counters into a Snapshot once per period, giving rates and percentiles of that
+ * period, which the overlay, JMX and the CSV or JSON export all read.
+ */
+
+public class MazeMetrics implements MazeMetricsMBean {
+
+    public static final String OBJECT_NAME = "CellularAutomatonMazeGenerator:type=MazeMetrics"; //JMX name
+    public static final long DEFAULT_PERIOD = 1000; //sampling period (ms)
+
+    /**
+     * Listener notified after every sample
+     */
+    public interface SampleListener {
+        void sampled(Snapshot snapshot);
+    }
+
+    /**
+     * Log-linear histogram of nanosecond latencies, every power of two is split into 8 buckets so any value
+     * is known to within 12.5%. Draining hands the counts over and empties the histogram in one pass.
+     */
+    public static class Histogram {
+
+        private static final int SUB_BUCKETS = 8; //buckets per power of two
+        private static final int BUCKETS = 488; //enough for every positive long
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Records one latency
+         * @param nanos - latency (ns), negative values count as 0
+         */
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(bucket(value));
+            sum.addAndGet(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * Moves every recorded latency into a summary and empties the histogram
+         * @return - latencies recorded since the last drain
+         */
+        Summary drain() {
+            Summary summary = new Summary();
+            for (int b = 0; b < BUCKETS; b++) {
+                long count = counts.getAndSet(b, 0);
+                summary.counts[b] = count;
+                summary.count += count;
+            }
+            summary.sum = sum.getAndSet(0);
+            summary.max = max.getAndSet(0);
+            return summary;
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return ((exponent - 2) << 3) + (int) ((value >>> (exponent - 3)) & (SUB_BUCKETS - 1));
+        }
+
+        static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = (bucket >>> 3) + 2;
+            return (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1L))) << (exponent - 3);
+        }
+    }
+
+    /**
+     * Latencies drained from a histogram
+     */
+    static class Summary {
+        final long[] counts = new long[Histogram.BUCKETS];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+
+        /**
+         * Gives the latency below which a share of the recorded latencies fall
+         * @param quantile - share, 0 to 1
+         * @return - middle of the bucket holding the quantile (ns), 0 without latencies
+         */
+        long percentile(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank) {
+                    long low = Histogram.lowerBound(b);
+                    long high = b + 1 < counts.length ? Histogram.lowerBound(b + 1) : Long.MAX_VALUE;
+                    return Math.min(max, low + (high - low) / 2);
+                }
+            }
+            return 0;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+    }
+
+    /**
+     * Metrics of one sampling period, counters are totals since start or reset
+     */
+    public static class Snapshot {
+
+        public static final String CSV_HEADER = "time_ms,generations,generations_per_s,cells_evaluated_per_s,"
+                + "step_mean_ms,step_p50_ms,step_p99_ms,step_max_ms,active_tiles,tiles,solves,solver_nodes_expanded,"
+                + "frames_rendered,frames_dropped,edt_lag_p50_ms,edt_lag_p99_ms,edt_lag_max_ms";
+
+        public long timeMillis; //wall clock time of the sample
+        public long generations; //generations stepped
+        public double generationsPerSecond; //generations stepped per second over the period
+        public double cellsEvaluatedPerSecond; //cells recomputed per second over the period
+        public double stepMeanMillis; //generation step latency over the period
+        public double stepP50Millis;
+        public double stepP99Millis;
+        public double stepMaxMillis;
+        public int activeTiles; //tiles recomputed by the last generation
+        public int tileCount; //tiles of the grid
+        public long solves; //solves finished
+        public long solverNodesExpanded; //cells expanded by every solve
+        public long framesRendered; //grid refreshes drawn
+        public long framesDropped; //generations never drawn because a refresh was still queued
+        public double edtLagP50Millis; //time Swing events waited in the event queue over the period
+        public double edtLagP99Millis;
+        public double edtLagMaxMillis;
+
+        /**
+         * Formats the snapshot as a row below CSV_HEADER
+         * @return - comma separated values
+         */
+        public String toCsv() {
+            return String.format(Locale.ROOT, "%d,%d,%.2f,%.0f,%.3f,%.3f,%.3f,%.3f,%d,%d,%d,%d,%d,%d,%.3f,%.3f,%.3f",
+                    timeMillis, generations, generationsPerSecond, cellsEvaluatedPerSecond, stepMeanMillis,
+                    stepP50Millis, stepP99Millis, stepMaxMillis, activeTiles, tileCount, solves, solverNodesExpanded,
+                    framesRendered, framesDropped, edtLagP50Millis, edtLagP99Millis, edtLagMaxMillis);
+        }
+
+        /**
+         * Formats the snapshot as a single line JSON object with the keys of CSV_HEADER
+         * @return - JSON object
+         */
+        public String toJson() {
+            String[] keys = CSV_HEADER.split(",");
+            String[] values = toCsv().split(",");
+            StringBuilder json = new StringBuilder("{");
+            for (int i = 0; i < keys.length; i++) {
+                json.append(i == 0 ? "" : ",").append('"').append(keys[i]).append("\":").append(values[i]);
+            }
+            return json.append('}').toString();
+        }
+
+        /**
+         * Formats the snapshot for the metrics overlay
+         * @return - lines of text
+         */
+        public String[] toLines() {
+            return new String[] {
+                    String.format(Locale.ROOT, "Generation %d  %.1f gen/s  %.3g cells/s",
+                            generations, generationsPerSecond, cellsEvaluatedPerSecond),
+                    String.format(Locale.ROOT, "Step mean %.2f  p50 %.2f  p99 %.2f  max %.2f ms",
+                            stepMeanMillis, stepP50Millis, stepP99Millis, stepMaxMillis),
+                    String.format(Locale.ROOT, "Active tiles %d / %d", activeTiles, tileCount),
+                    String.format(Locale.ROOT, "Solves %d  nodes expanded %d", solves, solverNodesExpanded),
+                    String.format(Locale.ROOT, "Frames %d rendered  %d dropped", framesRendered, framesDropped),
+                    String.format(Locale.ROOT, "EDT lag p50 %.2f  p99 %.2f  max %.2f ms",
+                            edtLagP50Millis, edtLagP99Millis, edtLagMaxMillis)};
+        }
+    }
+
+    private final LongAdder generations = new LongAdder();
+    private final LongAdder cellsEvaluated = new LongAdder();
+    private final LongAdder solves = new LongAdder();
+    private final LongAdder solverNodesExpanded = new LongAdder();
+    private final LongAdder framesRendered = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private volatile int activeTiles = 0; //tiles recomputed by the last generation
+    private volatile int tileCount = 0; //tiles of the last grid stepped
+    private final Histogram stepLatency = new Histogram();
+    private final Histogram edtLag = new Histogram();
+    private final List<SampleListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot latest = new Snapshot(); //last sample taken
+
+    //Sampling state, guarded by this
+    private ScheduledExecutorService sampler; //takes the samples, null when not sampling
+    private long lastSampleNanos = System.nanoTime();
+    private long lastGenerations = 0;
+    private long lastCellsEvaluated = 0;
+    private BufferedWriter export; //file receiving every sample, null when not exporting
+    private boolean exportJson; //JSON lines instead of CSV
+    private IOException exportFailure; //error that stopped the last export
+
+    /**
+     * Records one generation step
+     * @param nanos - time taken by the step (ns)
+     * @param cells - cells recomputed by the step
+     * @param activeTiles - tiles recomputed by the step
+     * @param tileCount - tiles of the grid
+     */
+    public void recordStep(long nanos, long cells, int activeTiles, int tileCount) {
+        generations.increment();
+        cellsEvaluated.add(cells);
+        this.activeTiles = activeTiles;
+        this.tileCount = tileCount;
+        stepLatency.record(nanos);
+    }
+
+    /**
+     * Records a finished solve, the cells it expanded are recorded with recordSolverNodes
+     */
+    public void recordSolve() {
+        solves.increment();
+    }
+
+    /**
+     * Records cells expanded by a solve, while it runs or once it has finished
+     * @param nodesExpanded - cells expanded since the last call
+     */
+    public void recordSolverNodes(long nodesExpanded) {
+        solverNodesExpanded.add(nodesExpanded);
+    }
+
+    public void recordFrameRendered() {
+        framesRendered.increment();
+    }
+
+    public void recordFrameDropped() {
+        framesDropped.increment();
+    }
+
+    /**
+     * Records how long an event waited in the Swing event queue
+     * @param nanos - time from posting the event to running it (ns)
+     */
+    public void recordEdtLag(long nanos) {
+        edtLag.record(nanos);
+    }
+
+    public void addSampleListener(SampleListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeSampleListener(SampleListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts sampling on a daemon thread, does nothing if already sampling
+     * @param periodMillis - time between samples (ms)
+     */
+    public synchronized void start(long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Sampling period must be positive: " + periodMillis);
+        }
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "maze-metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling, then takes a last sample and closes the export so no recorded metric is lost
+     */
+    public void stop() {
+        ScheduledExecutorService stopped;
+        synchronized (this) {
+            stopped = sampler;
+            sampler = null;
+        }
+        if (stopped != null) {
+            stopped.shutdown();
+            try {
+                stopped.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sample();
+        stopExport();
+    }
+
+    /**
+     * Appends every following sample to a file, replacing any previous export
+     * @param path - file to write, JSON lines if the name ends in .json, CSV otherwise
+     */
+    public synchronized void startExport(Path path) throws IOException {
+        stopExport();
+        exportJson = path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json");
+        export = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        exportFailure = null;
+        if (!exportJson) {
+            export.write(Snapshot.CSV_HEADER);
+            export.newLine();
+            export.flush();
+        }
+    }
+
+    /**
+     * Closes the export file
+     */
+    public synchronized void stopExport() {
+        if (export == null) {
+            return;
+        }
+        try {
+            export.close();
+        } catch (IOException e) {
+            exportFailure = e;
+        }
+        export = null;
+    }
+
+    public synchronized boolean isExporting() {
+        return export != null;
+    }
+
+    /**
+     * Gives the write error that stopped the last export
+     * @return - error, null if the export is running or was stopped normally
+     */
+    public synchronized IOException getExportFailure() {
+        return exportFailure;
+    }
+
+    /**
+     * Takes a sample now, computing rates since the previous sample, and writes it to the export
+     * @return - the new snapshot
+     */
+    public Snapshot sample() {
+        Snapshot snapshot = new Snapshot();
+        synchronized (this) {
+            long now = System.nanoTime();
+            double seconds = Math.max(1e-9, (now - lastSampleNanos) / 1e9);
+            long generationTotal = generations.sum();
+            long cellTotal = cellsEvaluated.sum();
+            Summary steps = stepLatency.drain();
+            Summary lag = edtLag.drain();
+            snapshot.timeMillis = System.currentTimeMillis();
+            snapshot.generations = generationTotal;
+            snapshot.generationsPerSecond = (generationTotal - lastGenerations) / seconds;
+            snapshot.cellsEvaluatedPerSecond = (cellTotal - lastCellsEvaluated) / seconds;
+            snapshot.stepMeanMillis = steps.mean() / 1e6;
+            snapshot.stepP50Millis = steps.percentile(0.5) / 1e6;
+            snapshot.stepP99Millis = steps.percentile(0.99) / 1e6;
+            snapshot.stepMaxMillis = steps.max / 1e6;
+            snapshot.activeTiles = activeTiles;
+            snapshot.tileCount = tileCount;
+            snapshot.solves = solves.sum();
+            snapshot.solverNodesExpanded = solverNodesExpanded.sum();
+            snapshot.framesRendered = framesRendered.sum();
+            snapshot.framesDropped = framesDropped.sum();
+            snapshot.edtLagP50Millis = lag.percentile(0.5) / 1e6;
+            snapshot.edtLagP99Millis = lag.percentile(0.99) / 1e6;
+            snapshot.edtLagMaxMillis = lag.max / 1e6;
+            lastSampleNanos = now;
+            lastGenerations = generationTotal;
+            lastCellsEvaluated = cellTotal;
+            latest = snapshot;
+            if (export != null) {
+                try {
+                    export.write(exportJson ? snapshot.toJson() : snapshot.toCsv());
+                    export.newLine();
+                    export.flush();
+                } catch (IOException e) {
+                    stopExport();
+                    exportFailure = e;
+                }
+            }
+        }
+        for (SampleListener listener : listeners) {
+            listener.sampled(snapshot);
+        }
+        return snapshot;
+    }
+
+    public Snapshot getLatest() {
+        return latest;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server under OBJECT_NAME, replacing earlier metrics
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    @Override
+    public long getGenerations() {
+        return generations.sum();
+    }
+
+    @Override
+    public double getGenerationsPerSecond() {
+        return latest.generationsPerSecond;
+    }
+
+    @Override
+    public double getCellsEvaluatedPerSecond() {
+        return latest.cellsEvaluatedPerSecond;
+    }
+
+    @Override
+    public double getStepLatencyMeanMillis() {
+        return latest.stepMeanMillis;
+    }
+
+    @Override
+    public double getStepLatencyP50Millis() {
+        return latest.stepP50Millis;
+    }
+
+    @Override
+    public double getStepLatencyP99Millis() {
+        return latest.stepP99Millis;
+    }
+
+    @Override
+    public double getStepLatencyMaxMillis() {
+        return latest.stepMaxMillis;
+    }
+
+    @Override
+    public int getActiveTiles() {
+        return activeTiles;
+    }
+
+    @Override
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    @Override
+    public long getSolves() {
+        return solves.sum();
+    }
+
+    @Override
+    public long getSolverNodesExpanded() {
+        return solverNodesExpanded.sum();
+    }
+
+    @Override
+    public long getFramesRendered() {
+        return framesRendered.sum();
+    }
+
+    @Override
+    public long getFramesDropped() {
+        return framesDropped.sum();
+    }
+
+    @Override
+    public double getEdtLagP50Millis() {
+        return latest.edtLagP50Millis;
+    }
+
+    @Override
+    public double getEdtLagP99Millis() {
+        return latest.edtLagP99Millis;
+    }
+
+    @Override
+    public double getEdtLagMaxMillis() {
+        return latest.edtLagMaxMillis;
+    }
+
+    /**
+     * Sets every counter back to 0 and empties the histograms
+     */
+    @Override
+    public synchronized void reset() {
+        generations.reset();
+        cellsEvaluated.reset();
+        solves.reset();
+        solverNodesExpanded.reset();
+        framesRendered.reset();
+        framesDropped.reset();
+        stepLatency.drain();
+        edtLag.drain();
+        lastSampleNanos = System.nanoTime();
+        lastGenerations = 0;
+        lastCellsEvaluated = 0;
+        latest = new Snapshot();
+    }
+
+}
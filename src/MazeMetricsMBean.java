@@ -0,0 +1,43 @@
+/**
+ * Title: MazeMetricsMBean
+ * Description: JMX view of MazeMetrics. Counters are totals since start or reset, rates, percentiles and
+ * maximums cover the last sampling period.
+ */
+
+public interface MazeMetricsMBean {
+
+    long getGenerations();
+
+    double getGenerationsPerSecond();
+
+    double getCellsEvaluatedPerSecond();
+
+    double getStepLatencyMeanMillis();
+
+    double getStepLatencyP50Millis();
+
+    double getStepLatencyP99Millis();
+
+    double getStepLatencyMaxMillis();
+
+    int getActiveTiles();
+
+    int getTileCount();
+
+    long getSolves();
+
+    long getSolverNodesExpanded();
+
+    long getFramesRendered();
+
+    long getFramesDropped();
+
+    double getEdtLagP50Millis();
+
+    double getEdtLagP99Millis();
+
+    double getEdtLagMaxMillis();
+
+    void reset();
+
+}
@@ -0,0 +1,749 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Title: MazeQuality
+ * Description: Maze quality metrics kept up to date while a maze generates: wall density, dead ends, junctions,
+ * the length distribution of straight corridors, open regions and the longest shortest path.
+ * Open cells and their open neighbours above, right, below and left follow isStillIntersection, cells outside
+ * the grid count as walls. The analyser keeps a copy of the grid it last saw and each update only recounts
+ * around the words that changed since: wall and neighbour counts are recomputed 64 cells at a time for those
+ * words and the words around them, and only the corridors running through changed cells are taken out and
+ * counted again. Finding the changed words compares every word with the copy, unless the update follows a single
+ * tracked generation and is given the engine's changed tiles, then only the words of those tiles are compared.
+ * Region count and longest path depend on the whole maze, they are computed on demand when the grid changed
+ * since they were last asked for, so targets check the local metrics first.
+ */
+
+public class MazeQuality {
+
+    /**
+     * Metric checked by a quality target
+     */
+    public enum Metric {
+        /** Fraction of cells that are alive */
+        WALL_DENSITY("wallDensity", false),
+        /** Open cells with exactly one open neighbour */
+        DEAD_ENDS("deadEnds", false),
+        /** Open cells with three or four open neighbours */
+        JUNCTIONS("junctions", false),
+        /** Straight horizontal and vertical runs of at least two open cells */
+        CORRIDORS("corridors", false),
+        /** Mean length of the corridors (cells) */
+        MEAN_CORRIDOR("meanCorridor", false),
+        /** Length of the longest corridor (cells) */
+        LONGEST_CORRIDOR("longestCorridor", false),
+        /** Groups of open cells connected up, right, down or left, see MazeRegions */
+        REGIONS("regions", true),
+        /** Cells on the longest shortest path of the largest region */
+        LONGEST_PATH("longestPath", true);
+
+        private final String key; //name used in target specs
+        private final boolean global; //depends on the whole maze, computed on demand
+
+        Metric(String key, boolean global) {
+            this.key = key;
+            this.global = global;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public boolean isGlobal() {
+            return global;
+        }
+
+        /**
+         * Finds a metric by its key
+         * @param key - key, e.g. deadEnds
+         * @return - metric
+         */
+        public static Metric parse(String key) {
+            for (Metric metric : values()) {
+                if (metric.key.equalsIgnoreCase(key.trim())) {
+                    return metric;
+                }
+            }
+            throw new IllegalArgumentException("Unknown quality metric: " + key.trim());
+        }
+    }
+
+    /**
+     * Quality target, every condition must hold, e.g. "deadEnds>=40,regions<=1,longestPath>=300"
+     */
+    public static class Target {
+        private static final String[] OPERATORS = {">=", "<=", ">", "<", "="}; //longest first
+        private final Metric[] metrics; //metric of each condition, local metrics first
+        private final String[] operators;
+        private final double[] values;
+        private final String spec; //normalised spec
+
+        private Target(Metric[] metrics, String[] operators, double[] values) {
+            this.metrics = metrics;
+            this.operators = operators;
+            this.values = values;
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < metrics.length; i++) {
+                text.append(i == 0 ? "" : ",").append(metrics[i].getKey()).append(operators[i])
+                        .append(values[i] == Math.rint(values[i]) ? Long.toString((long) values[i]) : Double.toString(values[i]));
+            }
+            this.spec = text.toString();
+        }
+
+        /**
+         * Parses a target from comma separated conditions of a metric key, an operator (>=, <=, >, <, =) and a value
+         * @param spec - target, e.g. "wallDensity<=0.55,deadEnds>=40"
+         * @return - target
+         */
+        public static Target parse(String spec) {
+            List<Metric> metrics = new ArrayList<>();
+            List<String> operators = new ArrayList<>();
+            List<Double> values = new ArrayList<>();
+            for (String condition : spec.split(",")) {
+                if (condition.trim().isEmpty()) {
+                    continue;
+                }
+                String operator = null;
+                int at = -1;
+                for (String candidate : OPERATORS) {
+                    at = condition.indexOf(candidate);
+                    if (at > 0) {
+                        operator = candidate;
+                        break;
+                    }
+                }
+                if (operator == null) {
+                    throw new IllegalArgumentException("Quality condition needs >=, <=, >, < or =: " + condition.trim());
+                }
+                Metric metric = Metric.parse(condition.substring(0, at));
+                double value;
+                try {
+                    value = Double.parseDouble(condition.substring(at + operator.length()).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid quality value: " + condition.trim());
+                }
+                //Local metrics first so the global ones are only computed once the cheap ones pass
+                int index = metric.isGlobal() ? metrics.size() : (int) metrics.stream().filter(m -> !m.isGlobal()).count();
+                metrics.add(index, metric);
+                operators.add(index, operator);
+                values.add(index, value);
+            }
+            if (metrics.isEmpty()) {
+                throw new IllegalArgumentException("Quality target has no conditions: " + spec);
+            }
+            double[] unboxed = new double[values.size()];
+            for (int i = 0; i < unboxed.length; i++) {
+                unboxed[i] = values.get(i);
+            }
+            return new Target(metrics.toArray(new Metric[0]), operators.toArray(new String[0]), unboxed);
+        }
+
+        /**
+         * Checks the target against the last update of an analyser
+         * @param quality - analyser
+         * @return - true if every condition holds
+         */
+        public boolean isMet(MazeQuality quality) {
+            for (int i = 0; i < metrics.length; i++) {
+                double value = quality.getValue(metrics[i]);
+                boolean holds;
+                switch (operators[i]) {
+                    case ">=":
+                        holds = value >= values[i];
+                        break;
+                    case "<=":
+                        holds = value <= values[i];
+                        break;
+                    case ">":
+                        holds = value > values[i];
+                        break;
+                    case "<":
+                        holds = value < values[i];
+                        break;
+                    default:
+                        holds = value == values[i];
+                        break;
+                }
+                if (!holds) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return spec;
+        }
+    }
+
+    private final int width; //width of grid (cells)
+    private final int height; //height of grid (cells)
+    private final int wordsPerRow; //number of long words per row
+    private final long lastWordMask; //cells of the last word of a row inside the grid
+    private final MazeGrid seen; //grid of the last update
+    private final long[] changedBits; //cells changed by the update, for each changed word
+    private int[] changedWords = new int[64]; //indexes of the changed words in ascending order
+    private int[] affectedWords = new int[256]; //changed words and their four neighbours
+    private final long[] affectedMarks; //bit i set while word i is in affectedWords
+    private final int[] columnDone; //row after the last vertical corridor counted in each column
+    private final int[] columnStamp; //pass that set columnDone, so it needs no clearing
+    private int stamp = 0;
+
+    private long alive = 0; //alive cells
+    private final long[] degrees = new long[5]; //open cells by number of open neighbours
+    private final long[] runs; //straight runs of open cells by length, horizontal and vertical
+    private boolean fresh = true; //nothing counted yet, the next update counts every cell
+
+    private MazeRegions regions; //labeller, created on first use
+    private int regionCount = -1; //open regions, -1 until computed for the current grid
+    private int longestPath = -1; //cells on the longest shortest path, -1 until computed for the current grid
+    private int[] distances; //BFS distance of each cell, -1 when unvisited
+    private int[] queue; //BFS queue
+
+    /**
+     * Creates an analyser for grids of a given size
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public MazeQuality(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.seen = new MazeGrid(width, height);
+        this.wordsPerRow = seen.getWordsPerRow();
+        this.lastWordMask = (width & 63) == 0 ? -1L : (1L << width) - 1;
+        this.changedBits = new long[seen.getWords().length];
+        this.affectedMarks = new long[(seen.getWords().length + 63) >>> 6];
+        this.columnDone = new int[width];
+        this.columnStamp = new int[width];
+        this.runs = new long[Math.max(width, height) + 1];
+    }
+
+    /**
+     * Brings the metrics up to date with a grid, comparing every word with the grid of the last update
+     * @param grid - grid to analyse, must have the size of the analyser
+     */
+    public void update(MazeGrid grid) {
+        update(grid, null);
+    }
+
+    /**
+     * Brings the metrics up to date with a grid, comparing only the words of the tiles that may have changed
+     * @param grid - grid to analyse, must have the size of the analyser
+     * @param changedTiles - tiles holding every cell changed since the last update, laid out as in
+     *                     DirtyTileStepper.getChangedTiles, e.g. from MazeEngine.getChangedTiles right after the
+     *                     step following the last update. Null to compare every word.
+     */
+    public void update(MazeGrid grid, boolean[] changedTiles) {
+        if (grid.getWidth() != width || grid.getHeight() != height) {
+            throw new IllegalArgumentException("Grid is " + grid.getWidth() + "x" + grid.getHeight()
+                    + " but analyser is " + width + "x" + height);
+        }
+        long[] words = grid.getWords();
+        long[] old = seen.getWords();
+        int changed = 0;
+        if (changedTiles == null || fresh) {
+            for (int i = 0; i < words.length; i++) {
+                changed = compareWord(words, old, i, changed);
+            }
+        } else {
+            //Tile rows, rows and then columns in ascending order keep the changed words sorted
+            int tileRows = (height + DirtyTileStepper.TILE_ROWS - 1) / DirtyTileStepper.TILE_ROWS;
+            for (int ty = 0; ty < tileRows; ty++) {
+                int tileRow = ty * wordsPerRow;
+                if (!hasChangedTile(changedTiles, tileRow)) {
+                    continue;
+                }
+                int yEnd = Math.min(height, (ty + 1) * DirtyTileStepper.TILE_ROWS);
+                for (int y = ty * DirtyTileStepper.TILE_ROWS; y < yEnd; y++) {
+                    for (int tx = 0; tx < wordsPerRow; tx++) {
+                        if (changedTiles[tileRow + tx]) {
+                            changed = compareWord(words, old, y * wordsPerRow + tx, changed);
+                        }
+                    }
+                }
+            }
+        }
+        if (changed == 0 && !fresh) {
+            return;
+        }
+        regionCount = -1;
+        longestPath = -1;
+        if (fresh || changed > words.length / 4) {
+            //Most of the grid changed, counting from scratch is cheaper than following every changed corridor
+            System.arraycopy(words, 0, old, 0, words.length);
+            countAll(old);
+            fresh = false;
+        } else {
+            int affected = collectAffected(changed);
+            count(old, changed, affected, -1);
+            for (int c = 0; c < changed; c++) {
+                old[changedWords[c]] = words[changedWords[c]];
+            }
+            count(old, changed, affected, 1);
+            for (int a = 0; a < affected; a++) {
+                affectedMarks[affectedWords[a] >>> 6] = 0;
+            }
+        }
+        for (int c = 0; c < changed; c++) {
+            changedBits[changedWords[c]] = 0;
+        }
+    }
+
+    /**
+     * Records a word as changed if it differs from the grid of the last update
+     * @return - number of changed words so far
+     */
+    private int compareWord(long[] words, long[] old, int i, int changed) {
+        long bits = words[i] ^ old[i];
+        if (bits != 0) {
+            changedBits[i] = bits;
+            if (changed == changedWords.length) {
+                changedWords = Arrays.copyOf(changedWords, changed * 2);
+            }
+            changedWords[changed++] = i;
+        }
+        return changed;
+    }
+
+    private boolean hasChangedTile(boolean[] changedTiles, int tileRow) {
+        for (int tx = 0; tx < wordsPerRow; tx++) {
+            if (changedTiles[tileRow + tx]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forgets the analysed grid, the next update counts every cell
+     */
+    public void reset() {
+        seen.clear();
+        fresh = true;
+        regionCount = -1;
+        longestPath = -1;
+    }
+
+    /**
+     * Gives the value of a metric for the last update, computing region count and longest path if needed
+     * @param metric - metric
+     * @return - value of the metric
+     */
+    public double getValue(Metric metric) {
+        switch (metric) {
+            case WALL_DENSITY:
+                return getWallDensity();
+            case DEAD_ENDS:
+                return getDeadEnds();
+            case JUNCTIONS:
+                return getJunctions();
+            case CORRIDORS:
+                return getCorridors();
+            case MEAN_CORRIDOR:
+                return getMeanCorridorLength();
+            case LONGEST_CORRIDOR:
+                return getLongestCorridor();
+            case REGIONS:
+                return getRegionCount();
+            default:
+                return getLongestPath();
+        }
+    }
+
+    public double getWallDensity() {
+        return (double) alive / ((long) width * height);
+    }
+
+    public long getDeadEnds() {
+        return degrees[1];
+    }
+
+    public long getJunctions() {
+        return degrees[3] + degrees[4];
+    }
+
+    /**
+     * Gives the open cells by number of open neighbours
+     * @return - counts of open cells with 0 to 4 open neighbours
+     */
+    public long[] getNeighbourCounts() {
+        return degrees.clone();
+    }
+
+    /**
+     * Gives the corridor length distribution
+     * @return - number of corridors of each length, indexed by length (cells), lengths 0 and 1 are always 0
+     */
+    public long[] getCorridorLengths() {
+        long[] lengths = runs.clone();
+        lengths[1] = 0; //a single open cell between walls is not a corridor
+        return lengths;
+    }
+
+    public long getCorridors() {
+        long corridors = 0;
+        for (int length = 2; length < runs.length; length++) {
+            corridors += runs[length];
+        }
+        return corridors;
+    }
+
+    public double getMeanCorridorLength() {
+        long corridors = 0;
+        long cells = 0;
+        for (int length = 2; length < runs.length; length++) {
+            corridors += runs[length];
+            cells += runs[length] * length;
+        }
+        return corridors == 0 ? 0 : (double) cells / corridors;
+    }
+
+    public int getLongestCorridor() {
+        for (int length = runs.length - 1; length >= 2; length--) {
+            if (runs[length] != 0) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gives the number of open regions, labelled again only if the grid changed since the last call
+     * @return - open region count
+     */
+    public int getRegionCount() {
+        if (regionCount < 0) {
+            labelRegions();
+        }
+        return regionCount;
+    }
+
+    /**
+     * Gives the length of the longest shortest path inside the largest open region, found with two breadth first
+     * searches: the cell farthest from any cell, then the cell farthest from that one. Exact for mazes without
+     * loops, a lower bound otherwise. Computed again only if the grid changed since the last call.
+     * @return - cells on the path, 0 if the grid has no open cell
+     */
+    public int getLongestPath() {
+        if (longestPath < 0) {
+            if (regionCount < 0) {
+                labelRegions();
+            }
+            int largest = -1;
+            for (int r = 0; r < regionCount; r++) {
+                if (largest < 0 || regions.getSize(r) > regions.getSize(largest)) {
+                    largest = r;
+                }
+            }
+            if (largest < 0) {
+                longestPath = 0;
+            } else {
+                int[] ids = regions.getRegionIds();
+                int start = 0;
+                while (ids[start] != largest) {
+                    start++;
+                }
+                int far = farthest(start);
+                far = farthest(far);
+                longestPath = distances[far] + 1;
+            }
+        }
+        return longestPath;
+    }
+
+    /**
+     * Gives every metric of the last update
+     * @return - one line per metric, e.g. for the metrics overlay
+     */
+    public String[] toLines() {
+        return new String[] {
+                String.format(Locale.ROOT, "Wall density     %.3f", getWallDensity()),
+                String.format(Locale.ROOT, "Dead ends        %d", getDeadEnds()),
+                String.format(Locale.ROOT, "Junctions        %d", getJunctions()),
+                String.format(Locale.ROOT, "Corridors        %d (mean %.2f, longest %d)",
+                        getCorridors(), getMeanCorridorLength(), getLongestCorridor()),
+                String.format(Locale.ROOT, "Open regions     %d", getRegionCount()),
+                String.format(Locale.ROOT, "Longest path     %d", getLongestPath())
+        };
+    }
+
+    private void labelRegions() {
+        if (regions == null) {
+            regions = new MazeRegions(width, height);
+        }
+        regions.label(seen);
+        regionCount = regions.getRegionCount();
+    }
+
+    /**
+     * Breadth first search over open cells
+     * @param start - cell index y * width + x
+     * @return - a cell farthest from start, distances holds the distance of every reached cell
+     */
+    private int farthest(int start) {
+        if (distances == null) {
+            distances = new int[width * height];
+            queue = new int[width * height];
+        }
+        Arrays.fill(distances, -1);
+        long[] words = seen.getWords();
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        distances[start] = 0;
+        int last = start;
+        while (head < tail) {
+            int cell = queue[head++];
+            last = cell;
+            int x = cell % width;
+            int y = cell / width;
+            int next = distances[cell] + 1;
+            if (y > 0 && isOpen(words, x, y - 1) && distances[cell - width] < 0) {
+                distances[cell - width] = next;
+                queue[tail++] = cell - width;
+            }
+            if (x < width - 1 && isOpen(words, x + 1, y) && distances[cell + 1] < 0) {
+                distances[cell + 1] = next;
+                queue[tail++] = cell + 1;
+            }
+            if (y < height - 1 && isOpen(words, x, y + 1) && distances[cell + width] < 0) {
+                distances[cell + width] = next;
+                queue[tail++] = cell + width;
+            }
+            if (x > 0 && isOpen(words, x - 1, y) && distances[cell - 1] < 0) {
+                distances[cell - 1] = next;
+                queue[tail++] = cell - 1;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Lists the changed words and the words above, below, left and right of them, whose open neighbour
+     * counts may have changed
+     * @return - number of affected words
+     */
+    private int collectAffected(int changed) {
+        int affected = 0;
+        for (int c = 0; c < changed; c++) {
+            int i = changedWords[c];
+            int w = i % wordsPerRow;
+            affected = addAffected(affected, i);
+            if (i >= wordsPerRow) {
+                affected = addAffected(affected, i - wordsPerRow);
+            }
+            if (i + wordsPerRow < changedBits.length) {
+                affected = addAffected(affected, i + wordsPerRow);
+            }
+            if (w > 0 && (changedBits[i] & 1) != 0) {
+                affected = addAffected(affected, i - 1);
+            }
+            if (w < wordsPerRow - 1 && changedBits[i] < 0) {
+                affected = addAffected(affected, i + 1);
+            }
+        }
+        return affected;
+    }
+
+    private int addAffected(int affected, int i) {
+        if ((affectedMarks[i >>> 6] & (1L << i)) != 0) {
+            return affected;
+        }
+        affectedMarks[i >>> 6] |= 1L << i;
+        if (affected == affectedWords.length) {
+            affectedWords = Arrays.copyOf(affectedWords, affected * 2);
+        }
+        affectedWords[affected] = i;
+        return affected + 1;
+    }
+
+    /**
+     * Adds or takes away what the changed cells contribute to every metric
+     * @param words - grid before the changes to take away, after them to add
+     * @param sign - -1 to take away, 1 to add
+     */
+    private void count(long[] words, int changed, int affected, int sign) {
+        for (int c = 0; c < changed; c++) {
+            alive += sign * Long.bitCount(words[changedWords[c]]);
+        }
+        for (int a = 0; a < affected; a++) {
+            int i = affectedWords[a];
+            countDegrees(words, i / wordsPerRow, i % wordsPerRow, sign);
+        }
+        //Horizontal corridors through a changed cell or next to one, counted once per row from left to right
+        int row = -1;
+        int done = 0; //column after the last corridor counted in the row
+        for (int c = 0; c < changed; c++) {
+            int i = changedWords[c];
+            int y = i / wordsPerRow;
+            int x0 = (i % wordsPerRow) << 6;
+            if (y != row) {
+                row = y;
+                done = 0;
+            }
+            for (long bits = changedBits[i]; bits != 0; bits &= bits - 1) {
+                int x = x0 + Long.numberOfTrailingZeros(bits);
+                for (int cx = Math.max(x - 1, done); cx <= Math.min(x + 1, width - 1); cx++) {
+                    if (isOpen(words, cx, y)) {
+                        int end = runEnd(words, y, cx);
+                        runs[end - runStart(words, y, cx)] += sign;
+                        done = end;
+                        cx = end;
+                    }
+                }
+            }
+        }
+        //Vertical corridors, rows are visited in ascending order so columnDone skips corridors already counted
+        stamp++;
+        for (int c = 0; c < changed; c++) {
+            int i = changedWords[c];
+            int y = i / wordsPerRow;
+            int x0 = (i % wordsPerRow) << 6;
+            for (long bits = changedBits[i]; bits != 0; bits &= bits - 1) {
+                int x = x0 + Long.numberOfTrailingZeros(bits);
+                for (int cy = Math.max(y - 1, 0); cy <= Math.min(y + 1, height - 1); cy++) {
+                    if (columnStamp[x] == stamp && cy < columnDone[x]) {
+                        continue;
+                    }
+                    if (isOpen(words, x, cy)) {
+                        int start = cy;
+                        while (start > 0 && isOpen(words, x, start - 1)) {
+                            start--;
+                        }
+                        int end = cy + 1;
+                        while (end < height && isOpen(words, x, end)) {
+                            end++;
+                        }
+                        runs[end - start] += sign;
+                        columnStamp[x] = stamp;
+                        columnDone[x] = end;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts every metric of a grid from scratch
+     */
+    private void countAll(long[] words) {
+        alive = 0;
+        Arrays.fill(degrees, 0);
+        Arrays.fill(runs, 0);
+        for (long word : words) {
+            alive += Long.bitCount(word);
+        }
+        //Runs start and end where a cell differs from the cell before it, so only those cells are visited
+        for (int y = 0; y < height; y++) {
+            int row = y * wordsPerRow;
+            int start = 0;
+            long carry = 0; //open state of the last cell of the word before
+            for (int w = 0; w < wordsPerRow; w++) {
+                countDegrees(words, y, w, 1);
+                long open = ~words[row + w] & (w == wordsPerRow - 1 ? lastWordMask : -1L);
+                for (long edges = open ^ ((open << 1) | carry); edges != 0; edges &= edges - 1) {
+                    int x = (w << 6) + Long.numberOfTrailingZeros(edges);
+                    if (x < width && (open & (edges & -edges)) != 0) {
+                        start = x;
+                    } else {
+                        runs[x - start]++;
+                    }
+                }
+                carry = open >>> 63;
+            }
+            if (carry != 0) {
+                runs[width - start]++; //open to the last column of a width divisible by 64
+            }
+        }
+        int[] startRows = new int[64];
+        for (int w = 0; w < wordsPerRow; w++) {
+            long mask = w == wordsPerRow - 1 ? lastWordMask : -1L;
+            long above = 0; //open cells of the row above
+            for (int y = 0; y <= height; y++) {
+                long open = y < height ? ~words[y * wordsPerRow + w] & mask : 0;
+                for (long bits = open & ~above; bits != 0; bits &= bits - 1) {
+                    startRows[Long.numberOfTrailingZeros(bits)] = y;
+                }
+                for (long bits = above & ~open; bits != 0; bits &= bits - 1) {
+                    runs[y - startRows[Long.numberOfTrailingZeros(bits)]]++;
+                }
+                above = open;
+            }
+        }
+    }
+
+    /**
+     * Finds the first column of the horizontal run of open cells holding an open cell
+     */
+    private int runStart(long[] words, int y, int x) {
+        int row = y * wordsPerRow;
+        int w = x >>> 6;
+        long walls = words[row + w] & ((1L << x) - 1); //walls left of x in its word
+        while (walls == 0) {
+            if (w == 0) {
+                return 0;
+            }
+            walls = words[row + --w];
+        }
+        return (w << 6) + 64 - Long.numberOfLeadingZeros(walls);
+    }
+
+    /**
+     * Finds the column after the horizontal run of open cells holding an open cell
+     */
+    private int runEnd(long[] words, int y, int x) {
+        int row = y * wordsPerRow;
+        int w = x >>> 6;
+        long walls = (words[row + w] | (w == wordsPerRow - 1 ? ~lastWordMask : 0)) & (-2L << x); //walls right of x
+        while (walls == 0) {
+            if (++w == wordsPerRow) {
+                return width;
+            }
+            walls = words[row + w] | (w == wordsPerRow - 1 ? ~lastWordMask : 0);
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(walls);
+    }
+
+    /**
+     * Adds or takes away the open cells of one word by number of open neighbours, counting 64 cells at once
+     * with adders over the open masks of the four neighbours
+     */
+    private void countDegrees(long[] words, int y, int w, int sign) {
+        int i = y * wordsPerRow + w;
+        long mask = w == wordsPerRow - 1 ? lastWordMask : -1L;
+        long open = ~words[i] & mask;
+        if (open == 0) {
+            return;
+        }
+        long up = y > 0 ? ~words[i - wordsPerRow] & mask : 0;
+        long down = y < height - 1 ? ~words[i + wordsPerRow] & mask : 0;
+        long left = (open << 1) | (w > 0 ? ~words[i - 1] >>> 63 : 0);
+        long right = (open >>> 1);
+        if (w < wordsPerRow - 1) {
+            long nextMask = w + 1 == wordsPerRow - 1 ? lastWordMask : -1L;
+            right |= (~words[i + 1] & nextMask) << 63;
+        }
+        long sum1 = up ^ down;
+        long carry1 = up & down;
+        long sum2 = left ^ right;
+        long carry2 = left & right;
+        long ones = sum1 ^ sum2;
+        long carry3 = sum1 & sum2;
+        long twos = carry1 ^ carry2 ^ carry3;
+        long fours = (carry1 & carry2) | (carry3 & (carry1 ^ carry2));
+        degrees[0] += sign * Long.bitCount(open & ~ones & ~twos & ~fours);
+        degrees[1] += sign * Long.bitCount(open & ones & ~twos);
+        degrees[2] += sign * Long.bitCount(open & ~ones & twos);
+        degrees[3] += sign * Long.bitCount(open & ones & twos);
+        degrees[4] += sign * Long.bitCount(open & fours);
+    }
+
+    private boolean isOpen(long[] words, int x, int y) {
+        return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) == 0;
+    }
+
+}
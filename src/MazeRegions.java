@@ -0,0 +1,263 @@
+import java.util.Arrays;
+
+/**
+ * Title: MazeRegions
+ * Description: Labels the open regions of a maze, the groups of dead cells connected up, right, down or left.
+ * A single scanline pass finds the runs of dead cells in each row and joins runs that touch the row above
+ * with union-find, then every cell gets a dense region id. Each region keeps its size, bounding box and the
+ * grid edges it touches, so reachability questions become lookups.
+ */
+
+public class MazeRegions {
+
+    public static final int EDGE_TOP = 1; //region touches row 0
+    public static final int EDGE_RIGHT = 2; //region touches the last column
+    public static final int EDGE_BOTTOM = 4; //region touches the last row
+    public static final int EDGE_LEFT = 8; //region touches column 0
+
+    private final int width;
+    private final int height;
+    private final int[] regionIds; //region of each cell by index y * width + x, -1 for alive cells
+    private int regionCount = 0;
+    private int[] sizes = new int[16]; //number of cells in each region
+    private int[] minX = new int[16]; //bounding box of each region
+    private int[] minY = new int[16];
+    private int[] maxX = new int[16];
+    private int[] maxY = new int[16];
+    private int[] edges = new int[16]; //EDGE_ flags of each region
+
+    //Scratch space reused by every labelling
+    private int[] labelParent = new int[64]; //union-find parent of each provisional label
+    private int[] runs = new int[64]; //row, start, end and label of every run found
+    private int runCount = 0;
+
+    /**
+     * Creates a labeller for grids of a given size
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public MazeRegions(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.regionIds = new int[Math.multiplyExact(width, height)];
+    }
+
+    /**
+     * Labels the open regions of a grid, replacing the previous labelling
+     * @param grid - grid to label, must have the size of the labeller
+     */
+    public void label(MazeGrid grid) {
+        if (grid.getWidth() != width || grid.getHeight() != height) {
+            throw new IllegalArgumentException("Grid is " + grid.getWidth() + "x" + grid.getHeight()
+                    + " but labeller is " + width + "x" + height);
+        }
+        long[] words = grid.getWords();
+        int wordsPerRow = grid.getWordsPerRow();
+        int labels = 0;
+        runCount = 0;
+        int previousFirst = 0; //first run of the row above
+        int previousEnd = 0; //run after the last run of the row above
+        for (int y = 0; y < height; y++) {
+            int rowFirst = runCount;
+            int above = previousFirst;
+            int row = y * wordsPerRow;
+            int x = 0;
+            while ((x = nextCell(words, row, wordsPerRow, x, true)) < width) {
+                int end = nextCell(words, row, wordsPerRow, x, false);
+                int label = labels++;
+                ensureLabels(labels);
+                labelParent[label] = label;
+                //join with every run of the row above that shares a column
+                while (above < previousEnd && runs[above * 4 + 2] <= x) {
+                    above++;
+                }
+                for (int r = above; r < previousEnd && runs[r * 4 + 1] < end; r++) {
+                    union(label, runs[r * 4 + 3]);
+                }
+                addRun(y, x, end, label);
+                x = end;
+            }
+            previousFirst = rowFirst;
+            previousEnd = runCount;
+        }
+        resolve(labels);
+    }
+
+    /**
+     * Finds the next dead or alive cell of a row
+     * @param words - packed cells of the grid
+     * @param row - index of the first word of the row
+     * @param wordsPerRow - number of long words per row
+     * @param from - first x coordinate to check
+     * @param dead - true to look for a dead cell, false for an alive cell
+     * @return - x coordinate of the cell found, width if there is none
+     */
+    private int nextCell(long[] words, int row, int wordsPerRow, int from, boolean dead) {
+        if (from >= width) {
+            return width;
+        }
+        int w = from >>> 6;
+        long word = dead ? ~words[row + w] : words[row + w];
+        word &= -1L << from;
+        while (word == 0) {
+            if (++w >= wordsPerRow) {
+                return width;
+            }
+            word = dead ? ~words[row + w] : words[row + w];
+        }
+        return Math.min(width, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Gives every run its dense region id and builds the region statistics
+     */
+    private void resolve(int labels) {
+        Arrays.fill(regionIds, -1);
+        //A parent is never larger than its label, so in increasing order every parent is already resolved
+        //and the parent array can be overwritten with region ids
+        regionCount = 0;
+        for (int label = 0; label < labels; label++) {
+            int parent = labelParent[label];
+            labelParent[label] = parent == label ? regionCount++ : labelParent[parent];
+        }
+        ensureRegions(regionCount);
+        Arrays.fill(sizes, 0, regionCount, 0);
+        Arrays.fill(edges, 0, regionCount, 0);
+        Arrays.fill(minX, 0, regionCount, Integer.MAX_VALUE);
+        Arrays.fill(minY, 0, regionCount, Integer.MAX_VALUE);
+        Arrays.fill(maxX, 0, regionCount, -1);
+        Arrays.fill(maxY, 0, regionCount, -1);
+        for (int r = 0; r < runCount; r++) {
+            int y = runs[r * 4];
+            int start = runs[r * 4 + 1];
+            int end = runs[r * 4 + 2];
+            int region = labelParent[runs[r * 4 + 3]];
+            Arrays.fill(regionIds, y * width + start, y * width + end, region);
+            sizes[region] += end - start;
+            minX[region] = Math.min(minX[region], start);
+            maxX[region] = Math.max(maxX[region], end - 1);
+            minY[region] = Math.min(minY[region], y);
+            maxY[region] = Math.max(maxY[region], y);
+            if (y == 0) {
+                edges[region] |= EDGE_TOP;
+            }
+            if (y == height - 1) {
+                edges[region] |= EDGE_BOTTOM;
+            }
+            if (start == 0) {
+                edges[region] |= EDGE_LEFT;
+            }
+            if (end == width) {
+                edges[region] |= EDGE_RIGHT;
+            }
+        }
+    }
+
+    private int find(int label) {
+        while (labelParent[label] != label) {
+            labelParent[label] = labelParent[labelParent[label]];
+            label = labelParent[label];
+        }
+        return label;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA < rootB) {
+            labelParent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            labelParent[rootA] = rootB;
+        }
+    }
+
+    private void addRun(int y, int start, int end, int label) {
+        if ((runCount + 1) * 4 > runs.length) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        runs[runCount * 4] = y;
+        runs[runCount * 4 + 1] = start;
+        runs[runCount * 4 + 2] = end;
+        runs[runCount * 4 + 3] = label;
+        runCount++;
+    }
+
+    private void ensureLabels(int labels) {
+        if (labels > labelParent.length) {
+            labelParent = Arrays.copyOf(labelParent, Math.max(labels, labelParent.length * 2));
+        }
+    }
+
+    private void ensureRegions(int regions) {
+        if (regions > sizes.length) {
+            int length = Math.max(regions, sizes.length * 2);
+            sizes = Arrays.copyOf(sizes, length);
+            minX = Arrays.copyOf(minX, length);
+            minY = Arrays.copyOf(minY, length);
+            maxX = Arrays.copyOf(maxX, length);
+            maxY = Arrays.copyOf(maxY, length);
+            edges = Arrays.copyOf(edges, length);
+        }
+    }
+
+    public int getRegionCount() {
+        return regionCount;
+    }
+
+    /**
+     * Gives the region id array, indexed by y * width + x
+     * @return - region of each cell, -1 for alive cells
+     */
+    public int[] getRegionIds() {
+        return regionIds;
+    }
+
+    /**
+     * Gives the region of a cell
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @return - region id, -1 if the cell is alive
+     */
+    public int getRegion(int x, int y) {
+        return regionIds[y * width + x];
+    }
+
+    /**
+     * Checks if two cells are connected by open cells
+     * @return - true if both cells are dead and in the same region
+     */
+    public boolean isReachable(int x1, int y1, int x2, int y2) {
+        int region = getRegion(x1, y1);
+        return region >= 0 && region == getRegion(x2, y2);
+    }
+
+    public int getSize(int region) {
+        return sizes[region];
+    }
+
+    public int getMinX(int region) {
+        return minX[region];
+    }
+
+    public int getMinY(int region) {
+        return minY[region];
+    }
+
+    public int getMaxX(int region) {
+        return maxX[region];
+    }
+
+    public int getMaxY(int region) {
+        return maxY[region];
+    }
+
+    /**
+     * Gives the grid edges a region touches
+     * @param region - region id
+     * @return - EDGE_ flags of the region
+     */
+    public int getEdges(int region) {
+        return edges[region];
+    }
+
+}
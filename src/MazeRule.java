@@ -0,0 +1,299 @@
+import java.util.Locale;
+
+/**
+ * Title: MazeRule
+ * Description: Life-like rulestring compiled into a transition lookup table.
+ * Accepts B/S notation (B3/S1234), S/B notation (1234/3), Generations with a state count (B3/S1234/C4 or 1234/3/4)
+ * and Larger than Life rules with a radius (R2,C0,M0,S4..12,B6..8,NM). Radius 1 Moore rules with two states also
+ * give birth and survival bitmasks for the bit-parallel kernel.
+ */
+
+public final class MazeRule {
+
+    public static final MazeRule MAZE = parse("B3/S1234"); //Maze rule
+    public static final MazeRule MAZECTRIC = parse("B3/S12345"); //Mazectric rule
+
+    private final int radius; //neighbourhood radius
+    private final boolean vonNeumann; //diamond neighbourhood instead of a square one
+    private final boolean includeCentre; //cell counts itself as a neighbour
+    private final int states; //2 for life-like rules, more for Generations rules
+    private final boolean[] births; //births[n] is true if a dead cell with n alive neighbours is born
+    private final boolean[] survivals; //survivals[n] is true if an alive cell with n alive neighbours survives
+    private final byte[] table; //next state indexed by state * (maxCount + 1) + count
+    private final String rulestring; //canonical rulestring
+
+    private MazeRule(int radius, boolean vonNeumann, boolean includeCentre, int states,
+                     boolean[] births, boolean[] survivals, String rulestring) {
+        this.radius = radius;
+        this.vonNeumann = vonNeumann;
+        this.includeCentre = includeCentre;
+        this.states = states;
+        this.births = births;
+        this.survivals = survivals;
+        this.rulestring = rulestring;
+        int counts = births.length;
+        this.table = new byte[states * counts];
+        for (int n = 0; n < counts; n++) {
+            table[n] = (byte) (births[n] ? 1 : 0);
+            table[counts + n] = (byte) (survivals[n] ? 1 : (states > 2 ? 2 : 0));
+            for (int state = 2; state < states; state++) {
+                table[state * counts + n] = (byte) (state + 1 < states ? state + 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Parses a rulestring
+     * @param rule - rulestring in B/S, S/B, Generations or Larger than Life notation, or legacy rule 0 or 1
+     * @return - compiled rule
+     */
+    public static MazeRule parse(String rule) {
+        String text = rule.trim().toUpperCase(Locale.ROOT);
+        if (text.equals("0") || text.equals("1")) {
+            //legacy rule numbers, 0 = B3/S1234, 1 = B3/S12345
+            text = text.equals("0") ? "B3/S1234" : "B3/S12345";
+        }
+        if (text.startsWith("R") && text.contains(",")) {
+            return parseLargerThanLife(rule, text);
+        }
+        String[] parts = text.split("/");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("Invalid rulestring: " + rule);
+        }
+        String birth = null;
+        String survival = null;
+        int states = 2;
+        boolean lettered = text.contains("B") || text.contains("S");
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.startsWith("B")) {
+                birth = part.substring(1);
+            } else if (part.startsWith("S")) {
+                survival = part.substring(1);
+            } else if (part.startsWith("C") || part.startsWith("G")) {
+                states = parseNumber(part.substring(1), rule);
+            } else if (!lettered && i == 0) {
+                survival = part;
+            } else if (!lettered && i == 1) {
+                birth = part;
+            } else if (i == 2) {
+                states = parseNumber(part, rule);
+            } else {
+                throw new IllegalArgumentException("Invalid rulestring: " + rule);
+            }
+        }
+        if (birth == null || survival == null || states < 2 || states > 256) {
+            throw new IllegalArgumentException("Invalid rulestring: " + rule);
+        }
+        boolean[] births = parseDigits(birth, rule);
+        boolean[] survivals = parseDigits(survival, rule);
+        StringBuilder canonical = new StringBuilder("B");
+        appendDigits(canonical, births);
+        canonical.append("/S");
+        appendDigits(canonical, survivals);
+        if (states > 2) {
+            canonical.append("/C").append(states);
+        }
+        return new MazeRule(1, false, false, states, births, survivals, canonical.toString());
+    }
+
+    /**
+     * Parses a Larger than Life rule such as R2,C0,M0,S4..12,B6..8,NM
+     */
+    private static MazeRule parseLargerThanLife(String rule, String text) {
+        int radius = -1;
+        int states = 2;
+        boolean includeCentre = false;
+        boolean vonNeumann = false;
+        int[] survival = null;
+        int[] birth = null;
+        for (String token : text.split(",")) {
+            token = token.trim();
+            if (token.isEmpty()) {
+                throw new IllegalArgumentException("Invalid rulestring: " + rule);
+            }
+            String value = token.substring(1);
+            switch (token.charAt(0)) {
+                case 'R':
+                    radius = parseNumber(value, rule);
+                    break;
+                case 'C':
+                    states = Math.max(2, parseNumber(value, rule));
+                    break;
+                case 'M':
+                    includeCentre = parseNumber(value, rule) == 1;
+                    break;
+                case 'S':
+                    survival = parseRange(value, rule);
+                    break;
+                case 'B':
+                    birth = parseRange(value, rule);
+                    break;
+                case 'N':
+                    if (!value.equals("M") && !value.equals("N")) {
+                        throw new IllegalArgumentException("Unknown neighbourhood in rulestring: " + rule);
+                    }
+                    vonNeumann = value.equals("N");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid rulestring: " + rule);
+            }
+        }
+        if (radius < 1 || radius > 100 || states > 256 || survival == null || birth == null) {
+            throw new IllegalArgumentException("Invalid rulestring: " + rule);
+        }
+        int maxCount = vonNeumann ? 2 * radius * (radius + 1) : (2 * radius + 1) * (2 * radius + 1) - 1;
+        if (includeCentre) {
+            maxCount++;
+        }
+        boolean[] births = new boolean[maxCount + 1];
+        boolean[] survivals = new boolean[maxCount + 1];
+        for (int n = birth[0]; n <= Math.min(birth[1], maxCount); n++) {
+            births[n] = true;
+        }
+        for (int n = survival[0]; n <= Math.min(survival[1], maxCount); n++) {
+            survivals[n] = true;
+        }
+        String canonical = "R" + radius + ",C" + (states > 2 ? states : 0) + ",M" + (includeCentre ? 1 : 0)
+                + ",S" + survival[0] + ".." + survival[1] + ",B" + birth[0] + ".." + birth[1] + ",N" + (vonNeumann ? "N" : "M");
+        return new MazeRule(radius, vonNeumann, includeCentre, states, births, survivals, canonical);
+    }
+
+    private static int parseNumber(String value, String rule) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in rulestring: " + rule);
+        }
+    }
+
+    private static int[] parseRange(String value, String rule) {
+        int dots = value.indexOf("..");
+        int[] range = dots < 0
+                ? new int[] {parseNumber(value, rule), parseNumber(value, rule)}
+                : new int[] {parseNumber(value.substring(0, dots), rule), parseNumber(value.substring(dots + 2), rule)};
+        if (range[0] < 0 || range[1] < range[0]) {
+            throw new IllegalArgumentException("Invalid range in rulestring: " + rule);
+        }
+        return range;
+    }
+
+    private static boolean[] parseDigits(String digits, String rule) {
+        boolean[] counts = new boolean[9];
+        for (char c : digits.toCharArray()) {
+            if (c < '0' || c > '8') {
+                throw new IllegalArgumentException("Invalid neighbour count '" + c + "' in rulestring: " + rule);
+            }
+            counts[c - '0'] = true;
+        }
+        return counts;
+    }
+
+    private static void appendDigits(StringBuilder builder, boolean[] counts) {
+        for (int n = 0; n < counts.length; n++) {
+            if (counts[n]) {
+                builder.append(n);
+            }
+        }
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public boolean isVonNeumann() {
+        return vonNeumann;
+    }
+
+    public boolean isIncludeCentre() {
+        return includeCentre;
+    }
+
+    /**
+     * Gives the number of cell states
+     * @return - 2 for life-like rules, more for Generations rules
+     */
+    public int getStates() {
+        return states;
+    }
+
+    /**
+     * Gives the highest neighbour count the rule can see
+     * @return - 8 for radius 1 Moore rules
+     */
+    public int getMaxCount() {
+        return births.length - 1;
+    }
+
+    /**
+     * Checks if the rule can run on the bit-parallel kernel
+     * @return - true for two state radius 1 Moore rules
+     */
+    public boolean isBitParallel() {
+        return radius == 1 && !vonNeumann && !includeCentre && states == 2;
+    }
+
+    /**
+     * Gives the birth bitmask consumed by the bit-parallel kernel
+     * @return - bit n is set if a dead cell with n alive neighbours is born
+     */
+    public int getBirthMask() {
+        return mask(births);
+    }
+
+    /**
+     * Gives the survival bitmask consumed by the bit-parallel kernel
+     * @return - bit n is set if an alive cell with n alive neighbours survives
+     */
+    public int getSurviveMask() {
+        return mask(survivals);
+    }
+
+    private static int mask(boolean[] counts) {
+        int mask = 0;
+        for (int n = 0; n < Math.min(counts.length, 31); n++) {
+            if (counts[n]) {
+                mask |= 1 << n;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Looks up the next state of a cell
+     * @param state - current state, 0 dead, 1 alive, 2 and above dying
+     * @param aliveNeighbours - number of alive cells in the neighbourhood
+     * @return - next state of cell
+     */
+    public int nextState(int state, int aliveNeighbours) {
+        return table[state * births.length + aliveNeighbours] & 0xFF;
+    }
+
+    /**
+     * Gives the compiled transition table
+     * @return - unsigned next state indexed by state * (getMaxCount() + 1) + count, must not be modified
+     */
+    public byte[] getTable() {
+        return table;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof MazeRule && ((MazeRule) other).rulestring.equals(rulestring);
+    }
+
+    @Override
+    public int hashCode() {
+        return rulestring.hashCode();
+    }
+
+    /**
+     * Gives the canonical rulestring
+     * @return - rulestring that parses back to this rule
+     */
+    @Override
+    public String toString() {
+        return rulestring;
+    }
+
+}
@@ -0,0 +1,179 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Title: MazeScheduler
+ * Description: Runs a simulation task one step at a time on its own thread, at full speed or paced to a target
+ * rate. Pacing waits for a deadline instead of sleeping after every step, so time spent stepping counts towards
+ * the period. The task never waits for painting, results go to the renderer through a FrameHandoff.
+ * Edits from other threads are queued and applied between two steps, so only the worker touches the engine
+ * while a task runs.
+ */
+
+public class MazeScheduler {
+
+    /**
+     * Work run by the scheduler
+     */
+    public interface Task {
+        /**
+         * Runs one step
+         * @return - true while more steps follow
+         */
+        boolean step();
+    }
+
+    private static final int MAX_LAG_STEPS = 4; //steps a late task catches up on before its schedule restarts
+
+    private final String name; //name of the worker thread
+    private volatile double rate = 0; //target steps per second, 0 for full speed
+    private volatile boolean running = false; //cleared to stop the worker
+    private Thread worker; //thread running the task, null when stopped, guarded by this
+    private final ArrayDeque<Runnable> edits = new ArrayDeque<>(); //edits waiting for the worker, guarded by this
+
+    /**
+     * Creates a stopped scheduler
+     * @param name - name of the worker thread
+     */
+    public MazeScheduler(String name) {
+        this.name = name;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Sets the target rate, taking effect from the next step
+     * @param rate - steps per second, 0 for full speed
+     */
+    public void setRate(double rate) {
+        if (!(rate >= 0) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException("Rate must be 0 or positive: " + rate);
+        }
+        this.rate = rate;
+        Thread worker = currentWorker();
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return worker != null;
+    }
+
+    /**
+     * Stops any running task, then starts a task on a new worker thread
+     * @param task - task to run
+     * @param completed - run on the worker after the task's last step, not run when the task is stopped
+     */
+    public void start(Task task, Runnable completed) {
+        stop();
+        synchronized (this) {
+            running = true;
+            worker = new Thread(() -> run(task, completed), name);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Stops the running task and waits for its current step to finish, so the caller can then use the engine.
+     * Does nothing when called by the worker itself.
+     */
+    public void stop() {
+        Thread stopped;
+        synchronized (this) {
+            running = false;
+            stopped = worker;
+        }
+        if (stopped == null || stopped == Thread.currentThread()) {
+            return;
+        }
+        LockSupport.unpark(stopped);
+        boolean interrupted = false;
+        while (stopped.isAlive()) {
+            try {
+                stopped.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs an edit between two steps of the running task, or straight away on the calling thread when stopped
+     * @param edit - change to the state stepped by the task
+     */
+    public void execute(Runnable edit) {
+        synchronized (this) {
+            if (worker != null) {
+                edits.add(edit);
+                LockSupport.unpark(worker);
+                return;
+            }
+        }
+        edit.run();
+    }
+
+    private synchronized Thread currentWorker() {
+        return worker;
+    }
+
+    private synchronized Runnable nextEdit() {
+        return edits.poll();
+    }
+
+    private void applyEdits() {
+        Runnable edit;
+        while ((edit = nextEdit()) != null) {
+            edit.run();
+        }
+    }
+
+    /**
+     * Worker loop, steps until the task finishes or the scheduler is stopped
+     */
+    private void run(Task task, Runnable completed) {
+        long deadline = System.nanoTime();
+        boolean more = true;
+        try {
+            while (running && more) {
+                applyEdits();
+                more = task.step();
+                double rate = this.rate;
+                if (rate > 0 && more) {
+                    long period = (long) (1e9 / rate);
+                    deadline += period;
+                    if (System.nanoTime() - deadline > MAX_LAG_STEPS * period) {
+                        //Too far behind, e.g. after a slow step, start a new schedule instead of bursting
+                        deadline = System.nanoTime();
+                    }
+                    long wait;
+                    while (running && rate == this.rate && (wait = deadline - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(this, wait);
+                        applyEdits();
+                    }
+                } else {
+                    deadline = System.nanoTime();
+                }
+            }
+            if (!more && completed != null) {
+                completed.run();
+            }
+        } finally {
+            //Edits queued while the worker was ending run here, later edits run on their caller
+            synchronized (this) {
+                Runnable edit;
+                while ((edit = edits.poll()) != null) {
+                    edit.run();
+                }
+                worker = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,349 @@
+import java.util.Arrays;
+
+/**
+ * Title: MazeSeeder
+ * Description: Seeded random initial fill of a MazeGrid.
+ * Every word of the grid is drawn from a counter-based SplitMix64 generator keyed by the seed and the word index,
+ * so rows can be filled by any number of threads in any order and the grid only depends on the seed.
+ * Uniform fills build each word from random words following the binary digits of the density, 64 cells at a time.
+ * Every pattern leaves the fill density of the grid alive on average: the centre blob is filled more densely than
+ * the density, and grows when even a full blob would hold too few cells, and the noise is cut at the level that
+ * the fill density of noise values fall below.
+ */
+
+public class MazeSeeder {
+
+    /**
+     * Shape of the initial fill
+     */
+    public enum Pattern {
+        /** Every cell is alive with the fill density */
+        DENSITY,
+        /** Cells inside a centred ellipse are alive, cells outside stay dead */
+        CENTRE_BLOB,
+        /** Smoothed value noise below a threshold is alive, giving clustered alive areas */
+        NOISE
+    }
+
+    private static final int DENSITY_BITS = 16; //precision of the density, draws per word of a uniform fill
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; //SplitMix64 counter increment
+    private static final double BLOB_RADIUS = 0.25; //smallest radius of the centre blob as a fraction of the grid size
+    private static final double MAX_BLOB_RADIUS = 0.75; //radius at which the blob covers the whole grid
+    private static final int NOISE_SCALE = 8; //distance between noise lattice points (cells)
+    private static final int NOISE_SAMPLES = 512; //lattice cells sampled for the noise levels
+    private static final long NOISE_SAMPLE_KEY = 0x2545F4914F6CDD1DL; //stream of the sampled lattice values
+
+    private final Pattern pattern;
+    private final double density; //chance of a cell being alive
+
+    /**
+     * Noise values at every cell position of sampled lattice cells, sorted, so the value at a fraction of the
+     * array is the level that fraction of the noise falls below
+     */
+    private static final class NoiseLevels {
+        static final double[] LEVELS = sample();
+
+        private static double[] sample() {
+            double[] levels = new double[NOISE_SAMPLES * NOISE_SCALE * NOISE_SCALE];
+            int n = 0;
+            for (int sample = 0; sample < NOISE_SAMPLES; sample++) {
+                double topLeft = unitDouble(streamWord(NOISE_SAMPLE_KEY, 4L * sample));
+                double topRight = unitDouble(streamWord(NOISE_SAMPLE_KEY, 4L * sample + 1));
+                double bottomLeft = unitDouble(streamWord(NOISE_SAMPLE_KEY, 4L * sample + 2));
+                double bottomRight = unitDouble(streamWord(NOISE_SAMPLE_KEY, 4L * sample + 3));
+                for (int y = 0; y < NOISE_SCALE; y++) {
+                    double fy = smooth((y + 0.5) / NOISE_SCALE);
+                    double left = lerp(topLeft, bottomLeft, fy);
+                    double right = lerp(topRight, bottomRight, fy);
+                    for (int x = 0; x < NOISE_SCALE; x++) {
+                        levels[n++] = lerp(left, right, smooth((x + 0.5) / NOISE_SCALE));
+                    }
+                }
+            }
+            Arrays.sort(levels);
+            return levels;
+        }
+    }
+
+    /**
+     * Shape of a fill worked out for one grid size
+     */
+    private static final class Layout {
+        final double blobRadius; //radius of the centre blob as a fraction of the grid size
+        final long densityBits; //chance of a cell being alive where drawn uniformly, in DENSITY_BITS binary digits
+        final double noiseLevel; //noise values below the level are alive
+
+        Layout(double blobRadius, double cellDensity, double noiseLevel) {
+            this.blobRadius = blobRadius;
+            this.densityBits = Math.round(cellDensity * (1 << DENSITY_BITS));
+            this.noiseLevel = noiseLevel;
+        }
+    }
+
+    /**
+     * Creates a seeder
+     * @param pattern - shape of the fill
+     * @param density - chance of a cell being alive, between 0 and 1
+     */
+    public MazeSeeder(Pattern pattern, double density) {
+        if (density < 0 || density > 1) {
+            throw new IllegalArgumentException("Density must be between 0 and 1: " + density);
+        }
+        this.pattern = pattern;
+        this.density = density;
+    }
+
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public double getDensity() {
+        return density;
+    }
+
+    /**
+     * Replaces every cell of a grid with the seeded fill, the engine owning the grid must be invalidated after
+     * @param grid - grid to fill
+     * @param seed - seed of the fill, the same seed always gives the same grid
+     * @param stepper - parallel stepper filling row bands on several cores, null to fill on the calling thread
+     */
+    public void fill(MazeGrid grid, long seed, ParallelStepper stepper) {
+        Layout layout = layout(grid.getWidth(), grid.getHeight());
+        if (stepper != null) {
+            stepper.forEachBand(grid.getHeight(), grid.getWordsPerRow() * DENSITY_BITS,
+                    (rowFrom, rowTo) -> fillRows(layout, grid, seed, rowFrom, rowTo));
+        } else {
+            fillRows(layout, grid, seed, 0, grid.getHeight());
+        }
+    }
+
+    /**
+     * Replaces every cell of an off-heap grid with the seeded fill, giving the same cells as filling a MazeGrid
+     * @param grid - grid to fill
+     * @param seed - seed of the fill, the same seed always gives the same grid
+     * @param stepper - parallel stepper filling row bands on several cores, null to fill on the calling thread
+     */
+    public void fill(OffHeapGrid grid, long seed, ParallelStepper stepper) {
+        Layout layout = layout(grid.getWidth(), grid.getHeight());
+        ParallelStepper.BandAction fillBand = (rowFrom, rowTo) -> {
+            long key = mix(seed);
+            long[] row = new long[grid.getWordsPerRow()];
+            for (int y = rowFrom; y < rowTo; y++) {
+                fillRow(layout, key, row, 0, y, grid.getWidth(), grid.getHeight(), grid.getWordsPerRow());
+                grid.writeRows(y, 1, row, 0);
+            }
+        };
+        if (stepper != null) {
+            stepper.forEachBand(grid.getHeight(), grid.getWordsPerRow() * DENSITY_BITS, fillBand);
+        } else {
+            fillBand.run(0, grid.getHeight());
+        }
+    }
+
+    /**
+     * Works out the blob size, uniform density and noise level that leave the fill density of a grid alive
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     * @return - layout of the fill
+     */
+    private Layout layout(int width, int height) {
+        switch (pattern) {
+            case CENTRE_BLOB: {
+                double wanted = density * width * height; //alive cells on average
+                double radius = BLOB_RADIUS;
+                long cells = blobCells(radius, width, height);
+                if (cells < wanted) {
+                    //Smallest blob that still holds the cells when every one of them is alive
+                    double low = BLOB_RADIUS;
+                    double high = MAX_BLOB_RADIUS;
+                    for (int i = 0; i < 40; i++) {
+                        double middle = (low + high) / 2;
+                        if (blobCells(middle, width, height) < wanted) {
+                            low = middle;
+                        } else {
+                            high = middle;
+                        }
+                    }
+                    radius = high;
+                    cells = blobCells(radius, width, height);
+                }
+                return new Layout(radius, cells == 0 ? 0 : Math.min(1, wanted / cells), 0);
+            }
+            case NOISE: {
+                double[] levels = NoiseLevels.LEVELS;
+                int below = (int) Math.round(density * levels.length); //sampled values that should be alive
+                double level = below == 0 ? Double.NEGATIVE_INFINITY
+                        : below == levels.length ? Double.POSITIVE_INFINITY : levels[below];
+                return new Layout(BLOB_RADIUS, density, level);
+            }
+            default:
+                return new Layout(BLOB_RADIUS, density, 0);
+        }
+    }
+
+    /**
+     * Counts the cells inside a centre blob
+     */
+    private static long blobCells(double radius, int width, int height) {
+        long cells = 0;
+        for (int y = 0; y < height; y++) {
+            cells += Math.max(0, blobColumnTo(radius, y, width, height) - blobColumnFrom(radius, y, width, height));
+        }
+        return cells;
+    }
+
+    /**
+     * Gives the first column of row y inside the centre blob
+     */
+    private static long blobColumnFrom(double radius, int y, int width, int height) {
+        return Math.max(0, (long) Math.ceil(width / 2.0 - blobHalfSpan(radius, y, width, height) - 0.5));
+    }
+
+    /**
+     * Gives the column after the last column of row y inside the centre blob
+     */
+    private static long blobColumnTo(double radius, int y, int width, int height) {
+        return Math.min(width, (long) Math.floor(width / 2.0 + blobHalfSpan(radius, y, width, height) - 0.5) + 1);
+    }
+
+    /**
+     * Gives half the width of the centre blob through the middle of row y (cells), negative outside the blob
+     */
+    private static double blobHalfSpan(double radius, int y, int width, int height) {
+        double dy = (y + 0.5 - height / 2.0) / (radius * height);
+        return dy * dy <= 1 ? radius * width * Math.sqrt(1 - dy * dy) : -1;
+    }
+
+    /**
+     * Fills rows [rowFrom, rowTo) of a grid
+     */
+    private void fillRows(Layout layout, MazeGrid grid, long seed, int rowFrom, int rowTo) {
+        long key = mix(seed); //stream key, so seeds close together give unrelated streams
+        int wordsPerRow = grid.getWordsPerRow();
+        for (int y = rowFrom; y < rowTo; y++) {
+            fillRow(layout, key, grid.getWords(), y * wordsPerRow, y, grid.getWidth(), grid.getHeight(), wordsPerRow);
+        }
+    }
+
+    /**
+     * Fills one row
+     * @param layout - layout of the fill for the grid size
+     * @param key - stream key of the seed
+     * @param words - array receiving the row
+     * @param offset - index in words of the first word of the row
+     * @param y - row filled
+     */
+    private void fillRow(Layout layout, long key, long[] words, int offset, int y, int width, int height,
+                         int wordsPerRow) {
+        long lastWordMask = (width & 63) == 0 ? -1L : (1L << width) - 1;
+        long columnFrom = 0; //columns [columnFrom, columnTo) inside the centre blob
+        long columnTo = width;
+        if (pattern == Pattern.CENTRE_BLOB) {
+            columnFrom = blobColumnFrom(layout.blobRadius, y, width, height);
+            columnTo = blobColumnTo(layout.blobRadius, y, width, height);
+        }
+        for (int w = 0; w < wordsPerRow; w++) {
+            long word;
+            if (pattern == Pattern.NOISE) {
+                word = noiseWord(key, w << 6, y, width, layout.noiseLevel);
+            } else {
+                word = densityWord(key, (long) y * wordsPerRow + w, layout.densityBits)
+                        & columnMask(w << 6, columnFrom, columnTo);
+            }
+            words[offset + w] = w == wordsPerRow - 1 ? word & lastWordMask : word;
+        }
+    }
+
+    /**
+     * Draws 64 cells that are each alive with a density of threshold / 2^DENSITY_BITS.
+     * Going from the lowest set digit of the density to the highest, a one digit ORs in a random word and a
+     * zero digit ANDs one in, so each bit ends up set with the density rounded to DENSITY_BITS binary digits.
+     */
+    private static long densityWord(long key, long index, long threshold) {
+        if (threshold == 0) {
+            return 0;
+        }
+        if (threshold >= 1 << DENSITY_BITS) {
+            return -1L;
+        }
+        long word = 0;
+        long counter = index * DENSITY_BITS;
+        for (int digit = Long.numberOfTrailingZeros(threshold); digit < DENSITY_BITS; digit++) {
+            long random = streamWord(key, counter + digit);
+            word = ((threshold >>> digit) & 1) != 0 ? word | random : word & random;
+        }
+        return word;
+    }
+
+    /**
+     * Gives the bits of a word at column x0 that lie in columns [from, to)
+     */
+    private static long columnMask(int x0, long from, long to) {
+        long start = Math.max(0, from - x0);
+        long end = Math.min(64, to - x0);
+        if (end <= start) {
+            return 0;
+        }
+        long high = end == 64 ? -1L : (1L << end) - 1;
+        return high & (-1L << start);
+    }
+
+    /**
+     * Draws 64 cells of the noise pattern starting at column x0, cells with noise below the level are alive
+     */
+    private static long noiseWord(long key, int x0, int y, int width, double level) {
+        long word = 0;
+        int latticeY = y / NOISE_SCALE;
+        double fy = smooth((y % NOISE_SCALE + 0.5) / NOISE_SCALE);
+        int latticeX = -1;
+        double left = 0; //noise of the lattice column left of the cell, interpolated down to row y
+        double right = 0; //noise of the lattice column right of the cell
+        for (int b = 0; b < Math.min(64, width - x0); b++) {
+            int x = x0 + b;
+            if (x / NOISE_SCALE != latticeX) {
+                latticeX = x / NOISE_SCALE;
+                left = lerp(latticeValue(key, latticeX, latticeY), latticeValue(key, latticeX, latticeY + 1), fy);
+                right = lerp(latticeValue(key, latticeX + 1, latticeY), latticeValue(key, latticeX + 1, latticeY + 1), fy);
+            }
+            if (lerp(left, right, smooth((x % NOISE_SCALE + 0.5) / NOISE_SCALE)) < level) {
+                word |= 1L << b;
+            }
+        }
+        return word;
+    }
+
+    private static double latticeValue(long key, int x, int y) {
+        return unitDouble(streamWord(~key, ((long) y << 32) ^ (x & 0xFFFFFFFFL)));
+    }
+
+    /**
+     * Gives a uniform double in [0, 1) from the top 53 bits of a random word
+     */
+    private static double unitDouble(long random) {
+        return (random >>> 11) * 0x1.0p-53;
+    }
+
+    private static double smooth(double t) {
+        return t * t * (3 - 2 * t);
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+
+    private static long streamWord(long key, long counter) {
+        return mix(key + (counter + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * SplitMix64 finaliser
+     * @param z - value to mix
+     * @return - mixed value
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,659 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Title: MazeServer
+ * Description: Local HTTP API generating and solving mazes for other tools, on the JDK's built-in HTTP server.
+ * Each request runs on its own virtual thread when the JDK has them, or on a pooled thread before Java 21,
+ * and waits for a bounded pool of compute threads. A compute thread takes queued jobs in batches and runs
+ * them back to back on one engine and solver per maze size. Finished mazes are kept in an LRU cache and
+ * identical requests arriving together share one computation.
+ *
+ * GET /maze?rule=&width=&height=&seed=&generations=&density=&pattern=&until-converged=&border=&format=camz|text&rle=
+ * GET /solve?(maze parameters)&sx=&sy=&ex=&ey=&strategy=bfs|astar|bidirectional
+ * GET /stats
+ */
+
+public class MazeServer {
+
+    public static final String USAGE = "Usage: --serve [--port n] [--threads n] [--queue n] [--cache-mb n]";
+    public static final int MAX_CELLS = 1 << 22; //largest maze served (cells)
+    public static final int MAX_GENERATIONS = 100_000; //most generations stepped for one maze
+
+    private static final int MAX_BATCH = 64; //jobs taken by a compute thread at once
+    private static final int SIZES_PER_THREAD = 4; //maze sizes a compute thread keeps an engine and solver for
+    private static final long TIMEOUT_SECONDS = 60; //longest wait of a request for its job
+
+    public int port = 8080; //port listened on, bound to the loopback address
+    public int threads = Runtime.getRuntime().availableProcessors(); //compute threads
+    public int queue = 4096; //jobs waiting for a compute thread before requests are turned away
+    public long cacheBytes = 64L << 20; //memory budget of the maze cache
+
+    /**
+     * Work run on a compute thread
+     */
+    private interface Work<T> {
+        T compute(ComputeThread thread);
+    }
+
+    /**
+     * Queued work and the future receiving its result
+     */
+    private static final class Job<T> {
+        final CompletableFuture<T> future;
+        final Work<T> work;
+
+        Job(CompletableFuture<T> future, Work<T> work) {
+            this.future = future;
+            this.work = work;
+        }
+
+        /**
+         * Runs the work, any failure including an Error only fails this job and not the compute thread
+         */
+        void run(ComputeThread thread) {
+            try {
+                future.complete(work.compute(thread));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Everything that decides the cells of a generated maze
+     */
+    private static final class Key {
+        final MazeRule rule;
+        final int width;
+        final int height;
+        final long seed;
+        final int generations;
+        final double density;
+        final MazeSeeder.Pattern pattern;
+        final boolean untilConverged;
+        final boolean border;
+
+        Key(MazeRule rule, int width, int height, long seed, int generations, double density,
+                MazeSeeder.Pattern pattern, boolean untilConverged, boolean border) {
+            this.rule = rule;
+            this.width = width;
+            this.height = height;
+            this.seed = seed;
+            this.generations = generations;
+            this.density = density;
+            this.pattern = pattern;
+            this.untilConverged = untilConverged;
+            this.border = border;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && height == key.height && seed == key.seed && generations == key.generations
+                    && Double.compare(density, key.density) == 0 && untilConverged == key.untilConverged
+                    && border == key.border && pattern == key.pattern && rule.equals(key.rule);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rule, width, height, seed, generations, density, pattern, untilConverged, border);
+        }
+    }
+
+    /**
+     * Generated maze, never changed once cached
+     */
+    private static final class Maze {
+        final MazeGrid grid;
+        final long generation; //generations stepped
+        final byte[] file; //maze file holding the maze, without run-length encoding
+
+        Maze(MazeGrid grid, long generation, byte[] file) {
+            this.grid = grid;
+            this.generation = generation;
+            this.file = file;
+        }
+
+        long bytes() {
+            return grid.getWords().length * 8L + file.length + 128;
+        }
+    }
+
+    /**
+     * Shortest path found by a solve job
+     */
+    private static final class Solution {
+        final int[] path;
+        final long nodesExpanded;
+
+        Solution(int[] path, long nodesExpanded) {
+            this.path = path;
+            this.nodesExpanded = nodesExpanded;
+        }
+    }
+
+    /**
+     * Compute thread, takes up to MAX_BATCH queued jobs at a time
+     */
+    private final class ComputeThread extends Thread {
+        //Engines and solvers of the sizes used last, width << 32 | height
+        private final Map<Long, MazeEngine> engines = new LinkedHashMap<>(8, 0.75f, true);
+        private final Map<Long, MazeSolver> solvers = new LinkedHashMap<>(8, 0.75f, true);
+
+        ComputeThread(int index) {
+            super("maze-server-compute-" + index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<Job<?>> batch = new ArrayList<>(MAX_BATCH);
+            try {
+                while (true) {
+                    batch.add(jobs.take());
+                    jobs.drainTo(batch, MAX_BATCH - 1);
+                    batches.incrementAndGet();
+                    batchedJobs.addAndGet(batch.size());
+                    for (Job<?> job : batch) {
+                        job.run(this);
+                    }
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                //Server stopped
+            }
+        }
+
+        Maze generate(Key key) {
+            MazeEngine engine = reuse(engines, key.width, key.height, () -> new MazeEngine(key.width, key.height));
+            engine.setRule(key.rule);
+            MazeBatch settings = new MazeBatch();
+            settings.pattern = key.pattern;
+            settings.density = key.density;
+            settings.generations = key.generations;
+            settings.untilConverged = key.untilConverged;
+            settings.border = key.border;
+            long generation = settings.generate(engine, key.seed);
+            MazeGrid grid = new MazeGrid(key.width, key.height);
+            grid.copyFrom(engine.getGrid());
+            return new Maze(grid, generation, MazeFile.toBytes(grid, key.rule.toString(), key.seed, generation, false));
+        }
+
+        MazeSolver solver(int width, int height) {
+            return reuse(solvers, width, height, () -> new MazeSolver(width, height));
+        }
+
+        private <T> T reuse(Map<Long, T> bySize, int width, int height, java.util.function.Supplier<T> create) {
+            long size = (long) width << 32 | height;
+            T found = bySize.get(size);
+            if (found == null) {
+                found = create.get();
+                bySize.put(size, found);
+                Iterator<T> eldest = bySize.values().iterator();
+                while (bySize.size() > SIZES_PER_THREAD) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return found;
+        }
+    }
+
+    private HttpServer server;
+    private ExecutorService requestExecutor; //runs the request handlers
+    private final List<ComputeThread> computeThreads = new ArrayList<>();
+    private BlockingQueue<Job<?>> jobs; //jobs waiting for a compute thread
+    private volatile boolean accepting = false; //false once stopped, new jobs are rejected
+    private final Map<Key, CompletableFuture<Maze>> inFlight = new ConcurrentHashMap<>(); //mazes being generated
+    private final LinkedHashMap<Key, Maze> cache = new LinkedHashMap<>(256, 0.75f, true); //guarded by itself
+    private long cachedBytes = 0; //memory used by the cache, guarded by cache
+
+    //Stats
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong(); //requests that joined a maze already being generated
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedJobs = new AtomicLong();
+    private final MazeMetrics metrics = new MazeMetrics(); //solves and the cells they expanded, never sampled
+
+    /**
+     * Runs the server from command line arguments until the process is stopped
+     * @param args - server options, see USAGE
+     */
+    public static void main(String[] args) {
+        MazeServer server;
+        try {
+            server = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Server failed: " + e);
+            System.exit(1);
+            return;
+        }
+        System.out.println("Serving mazes on http://localhost:" + server.getPort() + "/maze with "
+                + server.threads + " compute threads");
+    }
+
+    /**
+     * Parses command line arguments into a server
+     * @param args - server options, a leading --serve is ignored
+     * @return - configured server, not started
+     */
+    public static MazeServer parse(String[] args) {
+        MazeServer server = new MazeServer();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--serve":
+                    break;
+                case "--port":
+                    server.port = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--threads":
+                    server.threads = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--queue":
+                    server.queue = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--cache-mb":
+                    server.cacheBytes = Long.parseLong(value(args, ++i, arg)) << 20;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (server.port < 0 || server.threads <= 0 || server.queue <= 0 || server.cacheBytes < 0) {
+            throw new IllegalArgumentException("Port, threads, queue and cache size must be positive");
+        }
+        return server;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[i];
+    }
+
+    /**
+     * Starts listening and starts the compute threads
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        jobs = new ArrayBlockingQueue<>(queue);
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/maze", exchange -> handle(exchange, this::serveMaze));
+        server.createContext("/solve", exchange -> handle(exchange, this::serveSolve));
+        server.createContext("/stats", exchange -> handle(exchange, this::serveStats));
+        requestExecutor = newRequestExecutor();
+        server.setExecutor(requestExecutor);
+        for (int i = 0; i < threads; i++) {
+            ComputeThread thread = new ComputeThread(i);
+            computeThreads.add(thread);
+            thread.start();
+        }
+        accepting = true;
+        server.start();
+    }
+
+    /**
+     * Fails the queued jobs, stops listening, waiting up to a second for open exchanges to answer,
+     * and stops the compute threads
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        accepting = false;
+        failQueuedJobs();
+        server.stop(1);
+        requestExecutor.shutdownNow();
+        for (ComputeThread thread : computeThreads) {
+            thread.interrupt();
+        }
+        computeThreads.clear();
+        server = null;
+    }
+
+    /**
+     * Gives the port listened on, the one chosen by the system when started with port 0
+     * @return - port
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    /**
+     * Creates the executor running request handlers, one virtual thread per request on Java 21 and later.
+     * Looked up by reflection so the server also builds and runs on Java 17, where a pool of daemon
+     * threads is used instead.
+     * @return - request executor
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicLong count = new AtomicLong();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "maze-server-request-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Handler of one endpoint
+     */
+    private interface Endpoint {
+        void serve(HttpExchange exchange, Map<String, String> query) throws Exception;
+    }
+
+    /**
+     * Runs an endpoint, turning bad parameters into 400, a full queue into 503 and failures into 500
+     */
+    private void handle(HttpExchange exchange, Endpoint endpoint) {
+        requests.incrementAndGet();
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                send(exchange, 405, "text/plain", "Only GET is supported\n".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            endpoint.serve(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+        } catch (IllegalArgumentException e) {
+            sendQuietly(exchange, 400, e.getMessage());
+        } catch (RejectedExecutionException | TimeoutException e) {
+            rejected.incrementAndGet();
+            sendQuietly(exchange, 503, "Server busy, try again later");
+        } catch (Exception e) {
+            sendQuietly(exchange, 500, "Maze request failed: " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void serveMaze(HttpExchange exchange, Map<String, String> query) throws Exception {
+        Key key = parseKey(query);
+        String format = query.getOrDefault("format", "camz");
+        if (!format.equals("camz") && !format.equals("text")) {
+            throw new IllegalArgumentException("Unknown format: " + format); //before any maze is generated
+        }
+        boolean rle = Boolean.parseBoolean(query.getOrDefault("rle", "false"));
+        Maze maze = await(maze(key));
+        exchange.getResponseHeaders().set("X-Maze-Generation", Long.toString(maze.generation));
+        if (format.equals("text")) {
+            send(exchange, 200, "text/plain", toText(maze.grid));
+        } else {
+            byte[] file = rle ? MazeFile.toBytes(maze.grid, key.rule.toString(), key.seed, maze.generation, true)
+                    : maze.file;
+            send(exchange, 200, "application/octet-stream", file);
+        }
+    }
+
+    private void serveSolve(HttpExchange exchange, Map<String, String> query) throws Exception {
+        Key key = parseKey(query);
+        int startX = parseInt(query, "sx", -1);
+        int startY = parseInt(query, "sy", -1);
+        int endX = parseInt(query, "ex", -1);
+        int endY = parseInt(query, "ey", -1);
+        if (startX < 0 || startX >= key.width || endX < 0 || endX >= key.width
+                || startY < 0 || startY >= key.height || endY < 0 || endY >= key.height) {
+            throw new IllegalArgumentException("sx, sy, ex and ey must be cells of the maze");
+        }
+        MazeSolver.Strategy strategy = parseStrategy(query.getOrDefault("strategy", "bfs"));
+        Maze maze = await(maze(key));
+        CompletableFuture<Solution> solution = new CompletableFuture<>();
+        submit(new Job<>(solution, thread -> {
+            MazeSolver solver = thread.solver(key.width, key.height);
+            int[] path = solver.solve(maze.grid, strategy, startX, startY, endX, endY);
+            metrics.recordSolverNodes(solver.getNodesExpanded());
+            metrics.recordSolve();
+            return new Solution(path, solver.getNodesExpanded());
+        }));
+        Solution solved = await(solution);
+        StringBuilder json = new StringBuilder();
+        json.append("{\"generation\":").append(maze.generation)
+                .append(",\"length\":").append(solved.path.length)
+                .append(",\"nodesExpanded\":").append(solved.nodesExpanded)
+                .append(",\"path\":[");
+        for (int i = 0; i < solved.path.length; i++) {
+            json.append(i == 0 ? "[" : ",[").append(solved.path[i] % key.width).append(',')
+                    .append(solved.path[i] / key.width).append(']');
+        }
+        json.append("]}\n");
+        send(exchange, 200, "application/json", json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void serveStats(HttpExchange exchange, Map<String, String> query) throws IOException {
+        long batchCount = batches.get();
+        int cached;
+        long bytes;
+        synchronized (cache) {
+            cached = cache.size();
+            bytes = cachedBytes;
+        }
+        String json = String.format(Locale.ROOT, "{\"requests\":%d,\"cacheHits\":%d,\"cacheMisses\":%d,\"shared\":%d,"
+                        + "\"rejected\":%d,\"batches\":%d,\"meanBatchSize\":%.2f,\"queued\":%d,\"cachedMazes\":%d,"
+                        + "\"cachedBytes\":%d,\"solves\":%d,\"solverNodesExpanded\":%d}%n",
+                requests.get(), cacheHits.get(), cacheMisses.get(), shared.get(), rejected.get(), batchCount,
+                batchCount == 0 ? 0.0 : (double) batchedJobs.get() / batchCount, jobs.size(), cached, bytes,
+                metrics.getSolves(), metrics.getSolverNodesExpanded());
+        send(exchange, 200, "application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Gives a maze from the cache, joins its generation if already running, or queues its generation
+     * @param key - parameters of the maze
+     * @return - future completed with the maze
+     */
+    private CompletableFuture<Maze> maze(Key key) {
+        Maze cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Maze> created = new CompletableFuture<>();
+        CompletableFuture<Maze> running = inFlight.putIfAbsent(key, created);
+        if (running != null) {
+            shared.incrementAndGet();
+            return running;
+        }
+        cacheMisses.incrementAndGet();
+        created.whenComplete((maze, failure) -> inFlight.remove(key));
+        try {
+            submit(new Job<>(created, thread -> {
+                Maze maze = thread.generate(key);
+                cachePut(key, maze);
+                return maze;
+            }));
+        } catch (RejectedExecutionException e) {
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private void submit(Job<?> job) {
+        if (!accepting) {
+            throw new RejectedExecutionException("Server stopped");
+        }
+        if (!jobs.offer(job)) {
+            throw new RejectedExecutionException("Compute queue full");
+        }
+        if (!accepting && jobs.remove(job)) {
+            throw new RejectedExecutionException("Server stopped"); //queued after stop failed the queue
+        }
+    }
+
+    /**
+     * Fails every job still waiting for a compute thread, their requests are answered with 503
+     */
+    private void failQueuedJobs() {
+        List<Job<?>> queued = new ArrayList<>();
+        jobs.drainTo(queued);
+        for (Job<?> job : queued) {
+            job.future.completeExceptionally(new RejectedExecutionException("Server stopped"));
+        }
+    }
+
+    private void cachePut(Key key, Maze maze) {
+        synchronized (cache) {
+            Maze replaced = cache.put(key, maze);
+            cachedBytes += maze.bytes() - (replaced == null ? 0 : replaced.bytes());
+            Iterator<Maze> eldest = cache.values().iterator();
+            while (cachedBytes > cacheBytes && eldest.hasNext()) {
+                cachedBytes -= eldest.next().bytes();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Waits for a job, rethrowing its failure
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Key parseKey(Map<String, String> query) {
+        MazeRule rule = MazeRule.parse(query.getOrDefault("rule", "B3/S1234"));
+        int width = parseInt(query, "width", 160);
+        int height = parseInt(query, "height", 120);
+        if (width <= 0 || height <= 0 || (long) width * height > MAX_CELLS) {
+            throw new IllegalArgumentException("Maze must have between 1 and " + MAX_CELLS + " cells");
+        }
+        long seed = Long.parseLong(query.getOrDefault("seed", "0"));
+        int generations = parseInt(query, "generations", 1000);
+        if (generations < 0 || generations > MAX_GENERATIONS) {
+            throw new IllegalArgumentException("Generations must be between 0 and " + MAX_GENERATIONS);
+        }
+        double density = Double.parseDouble(query.getOrDefault("density", "0.5"));
+        if (!(density >= 0 && density <= 1)) {
+            throw new IllegalArgumentException("Density must be between 0 and 1: " + density);
+        }
+        MazeSeeder.Pattern pattern = MazeBatch.parsePattern(query.getOrDefault("pattern", "density"));
+        boolean untilConverged = Boolean.parseBoolean(query.getOrDefault("until-converged", "false"));
+        boolean border = Boolean.parseBoolean(query.getOrDefault("border", "false"));
+        return new Key(rule, width, height, seed, generations, density, pattern, untilConverged, border);
+    }
+
+    private static int parseInt(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            if (defaultValue < 0) {
+                throw new IllegalArgumentException("Missing parameter: " + name);
+            }
+            return defaultValue;
+        }
+        return Integer.parseInt(value);
+    }
+
+    private static MazeSolver.Strategy parseStrategy(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "bfs":
+                return MazeSolver.Strategy.BFS;
+            case "astar":
+                return MazeSolver.Strategy.A_STAR;
+            case "bidirectional":
+                return MazeSolver.Strategy.BIDIRECTIONAL_BFS;
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    /**
+     * Draws a grid as text, # for alive and . for dead cells, one line per row
+     */
+    private static byte[] toText(MazeGrid grid) {
+        int width = grid.getWidth();
+        byte[] text = new byte[(width + 1) * grid.getHeight()];
+        int i = 0;
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < width; x++) {
+                text[i++] = (byte) (grid.isAlive(x, y) ? '#' : '.');
+            }
+            text[i++] = '\n';
+        }
+        return text;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendQuietly(HttpExchange exchange, int status, String message) {
+        try {
+            send(exchange, status, "text/plain", (message + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | IllegalStateException ignored) {
+            //Headers already sent or client gone
+        }
+    }
+
+}
@@ -0,0 +1,372 @@
+import java.util.Arrays;
+
+/**
+ * Title: MazeSolver
+ * Description: Shortest path solver over the dead cells of a MazeGrid, moving up, right, down and left.
+ * Runs breadth-first search, A* and bidirectional breadth-first search with int-indexed queues,
+ * a visited bitset and parent arrays that are allocated once and reused by every solve.
+ * Cells are addressed by index y * width + x.
+ */
+
+public class MazeSolver {
+
+    /**
+     * Search algorithm used by solve
+     */
+    public enum Strategy {
+        BFS,
+        A_STAR,
+        BIDIRECTIONAL_BFS
+    }
+
+    private static final int[] DX = {0, 1, 0, -1}; //x offsets of up, right, down, left
+    private static final int[] DY = {-1, 0, 1, 0}; //y offsets of up, right, down, left
+
+    private MazeGrid grid; //grid of the current solve, dead cells are open
+    private final int width;
+    private final int height;
+    private final int[] queue; //open queue of cell indices, also the heap of A*
+    private final int[] otherQueue; //second open queue of bidirectional search
+    private final int[] parent; //cell each visited cell was reached from
+    private final int[] otherParent; //parents of the backward search of bidirectional search
+    private final int[] cost; //path length from the start
+    private final int[] otherCost; //path length from the end in bidirectional search
+    private final int[] heapPosition; //position of each queued cell in the A* heap
+    private final long[] visited; //cells reached from the start
+    private final long[] otherVisited; //cells reached from the end in bidirectional search, closed cells in A*
+    private long nodesExpanded = 0; //cells taken off the open queue by the last solve
+    private int heapSize = 0; //number of cells in the A* heap
+    private int meetingCell = -1; //cell where the bidirectional searches met, -1 if they have not
+
+    /**
+     * Creates a solver for grids of a given size
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public MazeSolver(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int cells = Math.multiplyExact(width, height);
+        this.queue = new int[cells];
+        this.otherQueue = new int[cells];
+        this.parent = new int[cells];
+        this.otherParent = new int[cells];
+        this.cost = new int[cells];
+        this.otherCost = new int[cells];
+        this.heapPosition = new int[cells];
+        this.visited = new long[(cells + 63) >>> 6];
+        this.otherVisited = new long[(cells + 63) >>> 6];
+    }
+
+    /**
+     * Gives the number of cells expanded by the last solve
+     * @return - nodes taken off the open queue
+     */
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    /**
+     * Checks if a cell can be walked on
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @return - true if the cell is inside the grid and dead
+     */
+    public boolean isOpen(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && !grid.isAlive(x, y);
+    }
+
+    /**
+     * Finds a shortest path between two open cells, the grid must not change during the solve
+     * @param grid - grid to solve, must have the size of the solver
+     * @param strategy - search algorithm
+     * @param startX - x coordinate of start cell
+     * @param startY - y coordinate of start cell
+     * @param endX - x coordinate of end cell
+     * @param endY - y coordinate of end cell
+     * @return - cell indices from start to end, empty if no path exists
+     */
+    public int[] solve(MazeGrid grid, Strategy strategy, int startX, int startY, int endX, int endY) {
+        useGrid(grid);
+        if (!isOpen(startX, startY) || !isOpen(endX, endY)) {
+            return new int[0];
+        }
+        int start = startY * width + startX;
+        int end = endY * width + endX;
+        switch (strategy) {
+            case A_STAR:
+                return aStar(start, end);
+            case BIDIRECTIONAL_BFS:
+                return bidirectional(start, end);
+            default:
+                return breadthFirst(start, end, false);
+        }
+    }
+
+    /**
+     * Finds a shortest path from an open cell to the nearest open cell on the edge of the grid
+     * @param grid - grid to solve, must have the size of the solver
+     * @param startX - x coordinate of start cell
+     * @param startY - y coordinate of start cell
+     * @return - cell indices from start to the edge, empty if no path exists
+     */
+    public int[] solveToEdge(MazeGrid grid, int startX, int startY) {
+        useGrid(grid);
+        if (!isOpen(startX, startY)) {
+            return new int[0];
+        }
+        return breadthFirst(startY * width + startX, -1, true);
+    }
+
+    private void useGrid(MazeGrid grid) {
+        if (grid.getWidth() != width || grid.getHeight() != height) {
+            throw new IllegalArgumentException("Grid is " + grid.getWidth() + "x" + grid.getHeight()
+                    + " but solver is " + width + "x" + height);
+        }
+        this.grid = grid;
+        nodesExpanded = 0;
+    }
+
+    /**
+     * Breadth-first search from start until end, or any edge cell when toEdge is set
+     */
+    private int[] breadthFirst(int start, int end, boolean toEdge) {
+        Arrays.fill(visited, 0L);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        mark(visited, start);
+        parent[start] = -1;
+        while (head < tail) {
+            int cell = queue[head++];
+            nodesExpanded++;
+            int x = cell % width;
+            int y = cell / width;
+            if (cell == end || (toEdge && (x == 0 || y == 0 || x == width - 1 || y == height - 1))) {
+                return path(parent, cell);
+            }
+            for (int d = 0; d < 4; d++) {
+                int nx = x + DX[d];
+                int ny = y + DY[d];
+                if (isOpen(nx, ny)) {
+                    int next = ny * width + nx;
+                    if (!isMarked(visited, next)) {
+                        mark(visited, next);
+                        parent[next] = cell;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * A* search with the Manhattan distance heuristic, the open set is an indexed binary heap of cell indices
+     */
+    private int[] aStar(int start, int end) {
+        Arrays.fill(visited, 0L);
+        Arrays.fill(otherVisited, 0L);
+        int endX = end % width;
+        int endY = end / width;
+        cost[start] = 0;
+        parent[start] = -1;
+        mark(visited, start);
+        heapSize = 0;
+        heapPush(start, endX, endY);
+        while (heapSize > 0) {
+            int cell = heapPop(endX, endY);
+            mark(otherVisited, cell);
+            nodesExpanded++;
+            if (cell == end) {
+                return path(parent, cell);
+            }
+            int x = cell % width;
+            int y = cell / width;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + DX[d];
+                int ny = y + DY[d];
+                if (isOpen(nx, ny)) {
+                    int next = ny * width + nx;
+                    int nextCost = cost[cell] + 1;
+                    if (!isMarked(visited, next)) {
+                        mark(visited, next);
+                        cost[next] = nextCost;
+                        parent[next] = cell;
+                        heapPush(next, endX, endY);
+                    } else if (!isMarked(otherVisited, next) && nextCost < cost[next]) {
+                        cost[next] = nextCost;
+                        parent[next] = cell;
+                        siftUp(heapPosition[next], endX, endY);
+                    }
+                }
+            }
+        }
+        return new int[0];
+    }
+
+    private int priority(int cell, int endX, int endY) {
+        return cost[cell] + Math.abs(cell % width - endX) + Math.abs(cell / width - endY);
+    }
+
+    private void heapPush(int cell, int endX, int endY) {
+        queue[heapSize] = cell;
+        heapPosition[cell] = heapSize;
+        siftUp(heapSize++, endX, endY);
+    }
+
+    private int heapPop(int endX, int endY) {
+        int top = queue[0];
+        int last = queue[--heapSize];
+        if (heapSize > 0) {
+            queue[0] = last;
+            heapPosition[last] = 0;
+            siftDown(0, endX, endY);
+        }
+        return top;
+    }
+
+    private void siftUp(int i, int endX, int endY) {
+        int cell = queue[i];
+        int p = priority(cell, endX, endY);
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (priority(queue[up], endX, endY) <= p) {
+                break;
+            }
+            queue[i] = queue[up];
+            heapPosition[queue[i]] = i;
+            i = up;
+        }
+        queue[i] = cell;
+        heapPosition[cell] = i;
+    }
+
+    private void siftDown(int i, int endX, int endY) {
+        int cell = queue[i];
+        int p = priority(cell, endX, endY);
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && priority(queue[child + 1], endX, endY) < priority(queue[child], endX, endY)) {
+                child++;
+            }
+            if (priority(queue[child], endX, endY) >= p) {
+                break;
+            }
+            queue[i] = queue[child];
+            heapPosition[queue[i]] = i;
+            i = child;
+        }
+        queue[i] = cell;
+        heapPosition[cell] = i;
+    }
+
+    /**
+     * Bidirectional breadth-first search, expanding the smaller frontier one whole level at a time.
+     * The level where the searches first meet is finished so the shortest meeting is kept.
+     */
+    private int[] bidirectional(int start, int end) {
+        if (start == end) {
+            return new int[] {start};
+        }
+        Arrays.fill(visited, 0L);
+        Arrays.fill(otherVisited, 0L);
+        mark(visited, start);
+        mark(otherVisited, end);
+        parent[start] = -1;
+        otherParent[end] = -1;
+        cost[start] = 0;
+        otherCost[end] = 0;
+        queue[0] = start;
+        otherQueue[0] = end;
+        int head = 0;
+        int tail = 1;
+        int otherHead = 0;
+        int otherTail = 1;
+        meetingCell = -1;
+        while (head < tail && otherHead < otherTail) {
+            if (tail - head <= otherTail - otherHead) {
+                int levelEnd = expandLevel(queue, head, tail, visited, parent, cost, otherVisited, otherCost);
+                head = tail;
+                tail = levelEnd;
+            } else {
+                int levelEnd = expandLevel(otherQueue, otherHead, otherTail, otherVisited, otherParent, otherCost,
+                        visited, cost);
+                otherHead = otherTail;
+                otherTail = levelEnd;
+            }
+            if (meetingCell >= 0) {
+                int[] forward = path(parent, meetingCell);
+                int[] result = Arrays.copyOf(forward, forward.length + otherCost[meetingCell]);
+                int i = forward.length;
+                for (int cell = otherParent[meetingCell]; cell >= 0; cell = otherParent[cell]) {
+                    result[i++] = cell;
+                }
+                return result;
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * Expands every cell of one frontier level, recording the shortest meeting with the other search
+     * @return - tail of the queue after the new level
+     */
+    private int expandLevel(int[] queue, int head, int tail, long[] visited, int[] parent, int[] cost,
+                            long[] otherVisited, int[] otherCost) {
+        int newTail = tail;
+        int bestLength = Integer.MAX_VALUE;
+        for (int i = head; i < tail; i++) {
+            int cell = queue[i];
+            nodesExpanded++;
+            int x = cell % width;
+            int y = cell / width;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + DX[d];
+                int ny = y + DY[d];
+                if (isOpen(nx, ny)) {
+                    int next = ny * width + nx;
+                    if (!isMarked(visited, next)) {
+                        mark(visited, next);
+                        parent[next] = cell;
+                        cost[next] = cost[cell] + 1;
+                        queue[newTail++] = next;
+                        if (isMarked(otherVisited, next) && cost[next] + otherCost[next] < bestLength) {
+                            bestLength = cost[next] + otherCost[next];
+                            meetingCell = next;
+                        }
+                    }
+                }
+            }
+        }
+        return newTail;
+    }
+
+    /**
+     * Follows parents back from a cell to the start
+     * @return - cell indices from the start to the cell
+     */
+    private static int[] path(int[] parent, int cell) {
+        int length = 0;
+        for (int c = cell; c >= 0; c = parent[c]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int c = cell; c >= 0; c = parent[c]) {
+            path[--length] = c;
+        }
+        return path;
+    }
+
+    private static void mark(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static boolean isMarked(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+}
@@ -0,0 +1,320 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Title: OffHeapEngine
+ * Description: Headless double buffered stepping engine for grids larger than the Java heap, both generations are
+ * OffHeapGrids in direct buffers or in one memory-mapped file. A generation is computed one tile row at a time:
+ * the rows of the tile row and its two halo rows are copied into a small array, the bit-parallel kernel steps the
+ * active tiles, and the rows are written back to the other buffer. Tiles are DirtyTileStepper.TILE_ROWS rows
+ * high and one long word wide, quiet tiles are skipped as in MazeEngine, so the heap only holds the tile flags
+ * and one window per stepping thread. Only two state radius 1 Moore rules are supported.
+ */
+
+public class OffHeapEngine implements Closeable {
+
+    private static final int TILE_ROWS = DirtyTileStepper.TILE_ROWS; //height of a tile (cells)
+
+    /**
+     * Rows copied out of the grids by one stepping thread
+     */
+    private static class Window {
+        final long[] rows; //tile row and its halo rows from the current generation
+        final long[] next; //tile row of the next generation
+
+        Window(int wordsPerRow) {
+            rows = new long[(TILE_ROWS + 2) * wordsPerRow];
+            next = new long[TILE_ROWS * wordsPerRow];
+        }
+    }
+
+    private final int width; //width of grid (cells)
+    private final int height; //height of grid (cells)
+    private final int tileColumns; //number of tiles across the grid
+    private final int tileRows; //number of tiles down the grid
+    private final FileChannel file; //file holding both buffers, null for direct buffers
+    private OffHeapGrid grid; //front buffer, current generation
+    private OffHeapGrid backGrid; //back buffer, receives the next generation
+    private boolean[] changed; //tiles changed by the last generation
+    private boolean[] nextChanged; //tiles changed by the generation being computed
+    private final int[] rowActive; //tiles recomputed in each tile row by the generation being computed
+    private final long[] rowDelta; //grid hash change made in each tile row by the generation being computed
+    private final ParallelStepper.BandAction bandAction = this::stepTileRows; //steps a band of tile rows
+    private boolean allDirty = true; //set after direct changes to the grid, forces a full step
+    private int birthMask; //birth mask of the rule used by the step being computed
+    private int surviveMask; //survive mask of the rule used by the step being computed
+    private boolean full; //true if the step being computed recomputes every tile
+    private final ThreadLocal<Window> windows; //window of each stepping thread
+    private volatile ParallelStepper parallelStepper; //steps tile row bands on several cores, null for a serial step
+    private final ConvergenceDetector convergenceDetector = new ConvergenceDetector(); //spots repeating grids
+    private long stateHash = 0; //hash of the current generation, see ConvergenceDetector.gridHash
+    private boolean stateHashValid = false; //false after the grid was changed directly
+    private volatile MazeRule rule = MazeRule.MAZE; //rule used by following generations
+    private long generation = 0; //number of generations stepped since last reset
+    private int activeTiles = 0; //tiles recomputed by the last generation
+    private volatile MazeMetrics metrics; //receives the latency and work of every step, null when not measured
+
+    /**
+     * Creates an engine with an empty grid in direct buffers
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public OffHeapEngine(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.file = null;
+        this.grid = new OffHeapGrid(width, height);
+        this.backGrid = new OffHeapGrid(width, height);
+        this.tileColumns = grid.getWordsPerRow();
+        this.tileRows = (height + TILE_ROWS - 1) / TILE_ROWS;
+        this.changed = new boolean[Math.multiplyExact(tileColumns, tileRows)];
+        this.nextChanged = new boolean[changed.length];
+        this.rowActive = new int[tileRows];
+        this.rowDelta = new long[tileRows];
+        this.windows = ThreadLocal.withInitial(() -> new Window(tileColumns));
+    }
+
+    /**
+     * Creates an engine with an empty grid whose two buffers are mapped onto a file, replacing its content.
+     * The operating system pages the grids in and out, so they may be larger than the physical memory.
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     * @param path - scratch file holding the buffers, not a maze file
+     */
+    public OffHeapEngine(int width, int height, Path path) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            long bytes = OffHeapGrid.byteSize(width, height);
+            this.grid = new OffHeapGrid(width, height, file, 0);
+            this.backGrid = new OffHeapGrid(width, height, file, bytes);
+        } catch (RuntimeException e) {
+            file.close();
+            throw e;
+        }
+        this.tileColumns = grid.getWordsPerRow();
+        this.tileRows = (height + TILE_ROWS - 1) / TILE_ROWS;
+        this.changed = new boolean[Math.multiplyExact(tileColumns, tileRows)];
+        this.nextChanged = new boolean[changed.length];
+        this.rowActive = new int[tileRows];
+        this.rowDelta = new long[tileRows];
+        this.windows = ThreadLocal.withInitial(() -> new Window(tileColumns));
+    }
+
+    /**
+     * Gives the grid holding the current generation, the returned grid changes after every step
+     * @return - front buffer of the engine
+     */
+    public OffHeapGrid getGrid() {
+        return grid;
+    }
+
+    public MazeRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Sets the rule used by following generations
+     * @param rule - two state radius 1 Moore rule, see MazeRule.isBitParallel
+     */
+    public void setRule(MazeRule rule) {
+        if (!rule.isBitParallel()) {
+            throw new IllegalArgumentException("Off-heap grids only step two state radius 1 Moore rules: " + rule);
+        }
+        this.rule = rule;
+        invalidate();
+    }
+
+    public ParallelStepper getParallelStepper() {
+        return parallelStepper;
+    }
+
+    /**
+     * Sets the stepper used to split generations over several cores
+     * @param parallelStepper - parallel stepper, null to step on the calling thread
+     */
+    public void setParallelStepper(ParallelStepper parallelStepper) {
+        this.parallelStepper = parallelStepper;
+    }
+
+    public MazeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics recording every following step
+     * @param metrics - metrics, null to stop recording
+     */
+    public void setMetrics(MazeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gives the number of tiles recomputed by the last generation
+     * @return - active tile count
+     */
+    public int getActiveTiles() {
+        return activeTiles;
+    }
+
+    public int getTileCount() {
+        return changed.length;
+    }
+
+    /**
+     * Must be called after changing the grid directly, forces the next generation to recompute every tile
+     */
+    public void invalidate() {
+        allDirty = true;
+        stateHashValid = false;
+        convergenceDetector.reset();
+    }
+
+    /**
+     * Checks if the grid has reached a fixed point or a short period oscillator
+     * @return - true once a recent generation has repeated
+     */
+    public boolean isConverged() {
+        return convergenceDetector.isConverged();
+    }
+
+    /**
+     * Gives the generation from which the grid repeats
+     * @return - first generation of the cycle, -1 if not converged
+     */
+    public long getConvergedGeneration() {
+        return convergenceDetector.getConvergedGeneration();
+    }
+
+    /**
+     * Gives the period of the cycle the grid has converged to
+     * @return - 1 for a fixed point, 0 if not converged
+     */
+    public int getConvergedPeriod() {
+        return convergenceDetector.getPeriod();
+    }
+
+    /**
+     * Gives the hash of the current generation, kept up to date from the words changed by each step
+     * @return - grid hash, equal to MazeEngine.getStateHash for the same cells
+     */
+    public long getStateHash() {
+        if (!stateHashValid) {
+            stateHash = grid.hash();
+            stateHashValid = true;
+        }
+        return stateHash;
+    }
+
+    /**
+     * Advances the grid by one generation
+     */
+    public void step() {
+        MazeMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        MazeRule rule = this.rule;
+        if (!convergenceDetector.hasHistory()) {
+            convergenceDetector.record(generation, getStateHash());
+        }
+        birthMask = rule.getBirthMask();
+        surviveMask = rule.getSurviveMask();
+        full = allDirty;
+        ParallelStepper stepper = parallelStepper;
+        if (stepper != null) {
+            stepper.forEachBand(tileRows, TILE_ROWS * tileColumns, bandAction);
+        } else {
+            stepTileRows(0, tileRows);
+        }
+        boolean[] swap = changed;
+        changed = nextChanged;
+        nextChanged = swap;
+        allDirty = false;
+        int active = 0;
+        for (int ty = 0; ty < tileRows; ty++) {
+            active += rowActive[ty];
+            stateHash ^= rowDelta[ty];
+        }
+        activeTiles = active;
+        OffHeapGrid front = grid;
+        grid = backGrid;
+        backGrid = front;
+        generation++;
+        convergenceDetector.record(generation, stateHash);
+        if (metrics != null) {
+            long cells = Math.min((long) activeTiles * 64 * TILE_ROWS, (long) width * height);
+            metrics.recordStep(System.nanoTime() - start, cells, activeTiles, getTileCount());
+        }
+    }
+
+    /**
+     * Steps the active tiles of a band of tile rows from the front buffer into the back buffer, recording the tile
+     * count and hash change of each tile row
+     * @param tileRowFrom - first tile row of the band
+     * @param tileRowTo - tile row after the last tile row of the band
+     */
+    private void stepTileRows(int tileRowFrom, int tileRowTo) {
+        OffHeapGrid src = grid;
+        OffHeapGrid dst = backGrid;
+        Window window = windows.get();
+        long[] rows = window.rows;
+        long[] next = window.next;
+        int wordsPerRow = tileColumns;
+        long lastWordMask = DirtyTileStepper.lastWordMask(width);
+        for (int ty = tileRowFrom; ty < tileRowTo; ty++) {
+            Arrays.fill(nextChanged, ty * tileColumns, (ty + 1) * tileColumns, false);
+            rowActive[ty] = 0;
+            rowDelta[ty] = 0;
+            if (!full && !DirtyTileStepper.isTileRowActive(changed, tileColumns, tileRows, ty)) {
+                continue; //every tile of the row holds the same cells in both buffers
+            }
+            int yFrom = ty * TILE_ROWS;
+            int yTo = Math.min(height, yFrom + TILE_ROWS);
+            int haloFrom = Math.max(0, yFrom - 1);
+            int haloTo = Math.min(height, yTo + 1);
+            src.readRows(haloFrom, haloTo - haloFrom, rows, 0);
+            //Quiet tiles keep their cells, copy them through with the rest of the rows
+            System.arraycopy(rows, (yFrom - haloFrom) * wordsPerRow, next, 0, (yTo - yFrom) * wordsPerRow);
+            for (int tx = 0; tx < tileColumns; tx++) {
+                if (!full && !DirtyTileStepper.isNeighbourhoodChanged(changed, tileColumns, tileRows, tx, ty)) {
+                    continue;
+                }
+                rowActive[ty]++;
+                nextChanged[ty * tileColumns + tx] = DirtyTileStepper.stepTile(rows, haloFrom, next, yFrom,
+                        yFrom, yTo, height, tx, wordsPerRow, lastWordMask, birthMask, surviveMask, rowDelta, ty);
+            }
+            dst.writeRows(yFrom, yTo - yFrom, next, 0);
+        }
+    }
+
+    /**
+     * Kills every cell and resets the generation counter
+     */
+    public void reset() {
+        grid.clear();
+        generation = 0;
+        invalidate();
+    }
+
+    /**
+     * Flushes and closes the file of mapped buffers, the engine must not be used afterwards
+     */
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            grid.close();
+            backGrid.close();
+            file.close();
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Title: OffHeapGrid
+ * Description: Packed maze grid stored outside the Java heap, in direct buffers or in a memory-mapped file,
+ * for grids too large to hold in a long array. Words are laid out like MazeGrid, bit x % 64 of word
+ * (y * wordsPerRow + x / 64) is cell (x, y), and split into chunks of whole rows because a buffer holds at most
+ * 2 GB. Stepping kernels copy the rows they need into small arrays with readRows and write them back with
+ * writeRows, see OffHeapEngine.
+ */
+
+public class OffHeapGrid implements Closeable {
+
+    private static final long MAX_CHUNK_BYTES = 1L << 30; //largest buffer allocated or mapped at once
+
+    private final int width; //width of grid (cells)
+    private final int height; //height of grid (cells)
+    private final int wordsPerRow; //number of long words used to store one row
+    private final int chunkRows; //rows held by each chunk, the last chunk may hold fewer
+    private final LongBuffer[] chunks; //packed cell states, chunk i holds rows [i * chunkRows, (i + 1) * chunkRows)
+    private final MappedByteBuffer[] mapped; //mapped chunks to flush on close, null for direct buffers
+
+    /**
+     * Creates an empty grid in direct buffers, released once the grid is garbage collected
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public OffHeapGrid(int width, int height) {
+        this(width, height, null, 0);
+    }
+
+    /**
+     * Creates a grid mapped onto a region of a file, which is grown to hold it. The cells are whatever the
+     * region holds, clear the grid before use if the file is not new. Mapping failures are thrown as
+     * UncheckedIOException.
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     * @param channel - file opened for reading and writing, null for direct buffers
+     * @param position - file position of the first word
+     */
+    public OffHeapGrid(int width, int height, FileChannel channel, long position) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Grid dimensions must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + 63) >>> 6;
+        long rowBytes = wordsPerRow * 8L;
+        this.chunkRows = (int) Math.min(height, Math.max(1, MAX_CHUNK_BYTES / rowBytes));
+        int chunkCount = (height + chunkRows - 1) / chunkRows;
+        this.chunks = new LongBuffer[chunkCount];
+        this.mapped = channel != null ? new MappedByteBuffer[chunkCount] : null;
+        for (int i = 0; i < chunkCount; i++) {
+            int rows = Math.min(chunkRows, height - i * chunkRows);
+            ByteBuffer bytes;
+            if (channel != null) {
+                try {
+                    mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, position + i * chunkRows * rowBytes,
+                            rows * rowBytes);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not map grid onto file", e);
+                }
+                bytes = mapped[i];
+            } else {
+                bytes = ByteBuffer.allocateDirect((int) (rows * rowBytes)); //zeroed
+            }
+            chunks[i] = bytes.order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+    }
+
+    /**
+     * Gives the bytes a grid takes, e.g. to lay out several grids in one file
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     * @return - size of the packed words (bytes)
+     */
+    public static long byteSize(int width, int height) {
+        return ((width + 63) >>> 6) * 8L * height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    public boolean isMapped() {
+        return mapped != null;
+    }
+
+    /**
+     * Reads one packed word
+     * @param y - row of the word
+     * @param w - word within the row
+     * @return - 64 cells starting at column w * 64
+     */
+    public long getWord(int y, int w) {
+        return chunks[y / chunkRows].get((y % chunkRows) * wordsPerRow + w);
+    }
+
+    /**
+     * Writes one packed word, bits beyond the width of the grid must be zero
+     * @param y - row of the word
+     * @param w - word within the row
+     * @param word - 64 cells starting at column w * 64
+     */
+    public void setWord(int y, int w, long word) {
+        chunks[y / chunkRows].put((y % chunkRows) * wordsPerRow + w, word);
+    }
+
+    /**
+     * Copies consecutive rows into an array
+     * @param y - first row to copy
+     * @param rows - number of rows
+     * @param dst - array receiving wordsPerRow words per row
+     * @param offset - index in dst of the first word
+     */
+    public void readRows(int y, int rows, long[] dst, int offset) {
+        for (int r = y; r < y + rows; r++, offset += wordsPerRow) {
+            chunks[r / chunkRows].get((r % chunkRows) * wordsPerRow, dst, offset, wordsPerRow);
+        }
+    }
+
+    /**
+     * Copies consecutive rows from an array into the grid
+     * @param y - first row to write
+     * @param rows - number of rows
+     * @param src - array holding wordsPerRow words per row
+     * @param offset - index in src of the first word
+     */
+    public void writeRows(int y, int rows, long[] src, int offset) {
+        for (int r = y; r < y + rows; r++, offset += wordsPerRow) {
+            chunks[r / chunkRows].put((r % chunkRows) * wordsPerRow, src, offset, wordsPerRow);
+        }
+    }
+
+    /**
+     * Checks if a cell is alive
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @return - returns true if cell is alive
+     */
+    public boolean isAlive(int x, int y) {
+        return (getWord(y, x >>> 6) & (1L << x)) != 0;
+    }
+
+    /**
+     * Sets a cell to alive or dead
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @param alive - new state of cell
+     */
+    public void setAlive(int x, int y, boolean alive) {
+        long word = getWord(y, x >>> 6);
+        setWord(y, x >>> 6, alive ? word | (1L << x) : word & ~(1L << x));
+    }
+
+    /**
+     * Counts all alive cells in the grid
+     * @return - number of alive cells
+     */
+    public long countAlive() {
+        long alive = 0;
+        for (LongBuffer chunk : chunks) {
+            for (int i = 0; i < chunk.limit(); i++) {
+                alive += Long.bitCount(chunk.get(i));
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Hashes the whole grid, equal to ConvergenceDetector.gridHash of a MazeGrid holding the same cells
+     * @return - XOR of the word hashes of the grid
+     */
+    public long hash() {
+        long hash = 0;
+        long index = 0;
+        for (LongBuffer chunk : chunks) {
+            for (int i = 0; i < chunk.limit(); i++) {
+                hash ^= ConvergenceDetector.wordHash(index++, chunk.get(i));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Sets every cell to dead
+     */
+    public void clear() {
+        long[] zeros = new long[Math.min(chunks[0].limit(), 1 << 16)];
+        for (LongBuffer chunk : chunks) {
+            for (int i = 0; i < chunk.limit(); i += zeros.length) {
+                chunk.put(i, zeros, 0, Math.min(zeros.length, chunk.limit() - i));
+            }
+        }
+    }
+
+    /**
+     * Sets all cells on the outer edge of the grid to alive
+     */
+    public void createBorder() {
+        for (int x = 0; x < width; x++) {
+            setAlive(x, 0, true);
+            setAlive(x, height - 1, true);
+        }
+        for (int y = 0; y < height; y++) {
+            setAlive(0, y, true);
+            setAlive(width - 1, y, true);
+        }
+    }
+
+    /**
+     * Copies all cells from a grid on the heap of the same dimensions
+     * @param other - grid to copy from
+     */
+    public void copyFrom(MazeGrid other) {
+        checkSize(other);
+        writeRows(0, height, other.getWords(), 0);
+    }
+
+    /**
+     * Copies all cells into a grid on the heap of the same dimensions, e.g. to render or solve a small grid
+     * @param other - grid to copy to
+     */
+    public void copyTo(MazeGrid other) {
+        checkSize(other);
+        readRows(0, height, other.getWords(), 0);
+    }
+
+    private void checkSize(MazeGrid other) {
+        if (other.getWidth() != width || other.getHeight() != height) {
+            throw new IllegalArgumentException("Grid dimensions differ: " + other.getWidth() + "x" + other.getHeight()
+                    + " vs " + width + "x" + height);
+        }
+    }
+
+    /**
+     * Writes mapped chunks back to their file. The memory of direct buffers is only released once the grid
+     * is garbage collected.
+     */
+    @Override
+    public void close() {
+        if (mapped != null) {
+            for (MappedByteBuffer chunk : mapped) {
+                chunk.force();
+            }
+        }
+    }
+
+}
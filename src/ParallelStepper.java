@@ -0,0 +1,103 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Title: ParallelStepper
+ * Description: Runs the bit-parallel kernel over row bands on a ForkJoinPool, joining once per generation.
+ * Bands only read the previous generation, so halo rows at band edges are read straight from the source buffer
+ * and the result is identical to a serial step.
+ */
+
+public class ParallelStepper {
+
+    public static final int DEFAULT_MIN_BAND_WORDS = 4096; //bands with fewer words are stepped without splitting
+
+    private final ForkJoinPool pool; //pool running the band tasks
+    private final int minBandWords; //smallest band (in long words) worth splitting further
+
+    /**
+     * Creates a stepper on the common ForkJoinPool
+     */
+    public ParallelStepper() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MIN_BAND_WORDS);
+    }
+
+    /**
+     * Creates a stepper on a given pool
+     * @param pool - pool running the band tasks
+     * @param minBandWords - smallest band (in long words) worth splitting further
+     */
+    public ParallelStepper(ForkJoinPool pool, int minBandWords) {
+        if (minBandWords <= 0) {
+            throw new IllegalArgumentException("Minimum band size must be positive: " + minBandWords);
+        }
+        this.pool = pool;
+        this.minBandWords = minBandWords;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Action run on one band of consecutive units (rows or tile rows)
+     */
+    public interface BandAction {
+        void run(int from, int to);
+    }
+
+    /**
+     * Computes the next generation of a whole grid, returns once every band is done
+     * @param src - grid holding the current generation
+     * @param dst - grid receiving the next generation, must not be src
+     * @param birthMask - bit n set if a dead cell with n alive neighbours is born
+     * @param surviveMask - bit n set if an alive cell with n alive neighbours survives
+     */
+    public void step(MazeGrid src, MazeGrid dst, int birthMask, int surviveMask) {
+        forEachBand(src.getHeight(), src.getWordsPerRow(), (rowFrom, rowTo) ->
+                BitParallelKernel.stepRows(src.getWords(), dst.getWords(), src.getWidth(), src.getHeight(),
+                        src.getWordsPerRow(), rowFrom, rowTo, birthMask, surviveMask));
+    }
+
+    /**
+     * Splits units [0, count) into bands and runs the action on each band, returns once every band is done
+     * @param count - number of units to cover
+     * @param wordsPerUnit - long words processed per unit, used to size the bands
+     * @param action - action run on each band, bands never overlap
+     */
+    public void forEachBand(int count, int wordsPerUnit, BandAction action) {
+        pool.invoke(new BandTask(action, 0, count, Math.max(1, minBandWords / Math.max(1, wordsPerUnit))));
+    }
+
+    /**
+     * Task running a band of units, split in half until the band is small enough
+     */
+    private static class BandTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient BandAction action;
+        private final int from;
+        private final int to;
+        private final int minUnits;
+
+        BandTask(BandAction action, int from, int to, int minUnits) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.minUnits = minUnits;
+        }
+
+        @Override
+        protected void compute() {
+            int units = to - from;
+            if (units < 2 || units <= minUnits) {
+                action.run(from, to);
+            } else {
+                int middle = from + units / 2;
+                invokeAll(new BandTask(action, from, middle, minUnits), new BandTask(action, middle, to, minUnits));
+            }
+        }
+    }
+
+}
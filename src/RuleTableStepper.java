@@ -0,0 +1,228 @@
+import java.util.Arrays;
+
+/**
+ * Title: RuleTableStepper
+ * Description: Steps rules the bit-parallel kernel cannot run, Generations rules and larger neighbourhoods.
+ * Neighbour counts come from sliding column sums for square neighbourhoods and word bit counts for diamond
+ * ones, and every next state is a single lookup in the rule's transition table. Alive cells stay in the
+ * MazeGrid bits so the rest of the engine sees them, dying cells of Generations rules are kept in a byte array.
+ */
+
+public class RuleTableStepper {
+
+    private final int width;
+    private final int height;
+    private final int[] columnSums; //alive cells of each column within the neighbourhood rows, serial steps
+    private final ThreadLocal<int[]> bandColumnSums; //column sums of parallel bands
+    private byte[] states; //state of each cell by index y * width + x, only read for Generations rules
+    private byte[] nextStates; //states of the next generation
+
+    /**
+     * Creates a stepper for grids of a given size
+     * @param width - width of grid (cells)
+     * @param height - height of grid (cells)
+     */
+    public RuleTableStepper(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.columnSums = new int[width];
+        this.bandColumnSums = ThreadLocal.withInitial(() -> new int[width]);
+        this.states = new byte[Math.multiplyExact(width, height)];
+        this.nextStates = new byte[states.length];
+    }
+
+    /**
+     * Gives the state of a cell
+     * @param grid - grid holding the alive cells of the current generation
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     * @return - 0 dead, 1 alive, 2 and above dying
+     */
+    public int getState(MazeGrid grid, int x, int y) {
+        if (grid.isAlive(x, y)) {
+            return 1;
+        }
+        int state = states[y * width + x] & 0xFF;
+        return state >= 2 ? state : 0;
+    }
+
+    /**
+     * Forgets the dying state of a cell, called when the cell is set directly
+     * @param x - x coordinate of cell
+     * @param y - y coordinate of cell
+     */
+    public void clearState(int x, int y) {
+        states[y * width + x] = 0;
+    }
+
+    /**
+     * Forgets every dying state, called when the rule changes or the grid is replaced
+     */
+    public void clearStates() {
+        Arrays.fill(states, (byte) 0);
+        Arrays.fill(nextStates, (byte) 0);
+    }
+
+    /**
+     * Hashes the dying states so Generations grids that only differ in dying cells hash differently
+     * @return - hash of the dying states, 0 if no cell is dying
+     */
+    public long getStatesHash() {
+        long hash = 0;
+        for (int i = 0; i < states.length; i += 8) {
+            long packed = 0;
+            for (int b = i; b < Math.min(states.length, i + 8); b++) {
+                int state = states[b] & 0xFF;
+                packed = packed << 8 | (state >= 2 ? state : 0);
+            }
+            hash ^= ConvergenceDetector.wordHash(i >>> 3, packed);
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the next generation from src into dst with the rule's transition table
+     * @param src - grid holding the current generation
+     * @param dst - grid receiving the next generation, must not be src
+     * @param rule - rule to apply
+     * @param stepper - parallel stepper splitting the rows into bands, null to step on the calling thread
+     */
+    public void step(MazeGrid src, MazeGrid dst, MazeRule rule, ParallelStepper stepper) {
+        if (src.getWidth() != width || src.getHeight() != height) {
+            throw new IllegalArgumentException("Grid is " + src.getWidth() + "x" + src.getHeight()
+                    + " but stepper is " + width + "x" + height);
+        }
+        if (stepper != null) {
+            //each row reads the whole neighbourhood, so bands are weighted by the cells counted per row
+            int wordsPerRow = Math.max(1, src.getWordsPerRow() * (2 * rule.getRadius() + 1));
+            stepper.forEachBand(height, wordsPerRow, (from, to) -> stepRows(src, dst, rule, from, to, bandColumnSums.get()));
+        } else {
+            stepRows(src, dst, rule, 0, height, columnSums);
+        }
+        byte[] swap = states;
+        states = nextStates;
+        nextStates = swap;
+    }
+
+    /**
+     * Computes rows [rowFrom, rowTo) of the next generation
+     */
+    private void stepRows(MazeGrid src, MazeGrid dst, MazeRule rule, int rowFrom, int rowTo, int[] sums) {
+        long[] words = src.getWords();
+        long[] next = dst.getWords();
+        int wordsPerRow = src.getWordsPerRow();
+        int radius = rule.getRadius();
+        int counts = rule.getMaxCount() + 1;
+        byte[] table = rule.getTable();
+        boolean generations = rule.getStates() > 2;
+        boolean square = !rule.isVonNeumann();
+        boolean includeCentre = rule.isIncludeCentre();
+        if (square) {
+            Arrays.fill(sums, 0);
+            for (int y = Math.max(0, rowFrom - radius); y <= Math.min(height - 1, rowFrom + radius - 1); y++) {
+                addRow(words, y * wordsPerRow, wordsPerRow, sums, 1);
+            }
+        }
+        for (int y = rowFrom; y < rowTo; y++) {
+            if (square) {
+                //slide the column sums down to rows [y - radius, y + radius]
+                if (y + radius < height) {
+                    addRow(words, (y + radius) * wordsPerRow, wordsPerRow, sums, 1);
+                }
+                if (y > rowFrom && y - radius - 1 >= 0) {
+                    addRow(words, (y - radius - 1) * wordsPerRow, wordsPerRow, sums, -1);
+                }
+            }
+            int row = y * wordsPerRow;
+            int window = 0; //alive cells of columns [x - radius, x + radius]
+            if (square) {
+                for (int x = 0; x < Math.min(width, radius); x++) {
+                    window += sums[x];
+                }
+            }
+            long word = 0;
+            for (int x = 0; x < width; x++) {
+                boolean alive = (words[row + (x >>> 6)] & (1L << x)) != 0;
+                int count;
+                if (square) {
+                    if (x + radius < width) {
+                        window += sums[x + radius];
+                    }
+                    if (x - radius - 1 >= 0) {
+                        window -= sums[x - radius - 1];
+                    }
+                    count = window;
+                } else {
+                    count = countDiamond(words, wordsPerRow, x, y, radius);
+                }
+                if (alive && !includeCentre) {
+                    count--;
+                }
+                int i = y * width + x;
+                int state = alive ? 1 : (generations ? states[i] & 0xFF : 0);
+                if (state == 1 && !alive) {
+                    state = 0; //cell killed directly since the last step
+                }
+                int nextState = table[state * counts + count] & 0xFF;
+                if (nextState == 1) {
+                    word |= 1L << x;
+                }
+                if (generations) {
+                    nextStates[i] = (byte) nextState;
+                }
+                if ((x & 63) == 63 || x == width - 1) {
+                    next[row + (x >>> 6)] = word;
+                    word = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds or removes the alive cells of one row to the column sums
+     */
+    private static void addRow(long[] words, int row, int wordsPerRow, int[] sums, int delta) {
+        for (int w = 0; w < wordsPerRow; w++) {
+            long word = words[row + w];
+            while (word != 0) {
+                sums[(w << 6) + Long.numberOfTrailingZeros(word)] += delta;
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * Counts the alive cells within Manhattan distance radius of a cell, the cell itself included
+     */
+    private int countDiamond(long[] words, int wordsPerRow, int x, int y, int radius) {
+        int count = 0;
+        for (int dy = -radius; dy <= radius; dy++) {
+            int ny = y + dy;
+            if (ny < 0 || ny >= height) {
+                continue;
+            }
+            int span = radius - Math.abs(dy);
+            count += countRange(words, ny * wordsPerRow, Math.max(0, x - span), Math.min(width - 1, x + span));
+        }
+        return count;
+    }
+
+    /**
+     * Counts the alive cells of columns [from, to] in one row
+     */
+    private static int countRange(long[] words, int row, int from, int to) {
+        int first = from >>> 6;
+        int last = to >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if (first == last) {
+            return Long.bitCount(words[row + first] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(words[row + first] & firstMask) + Long.bitCount(words[row + last] & lastMask);
+        for (int w = first + 1; w < last; w++) {
+            count += Long.bitCount(words[row + w]);
+        }
+        return count;
+    }
+
+}
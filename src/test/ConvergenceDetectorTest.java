@@ -0,0 +1,126 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Title: ConvergenceDetectorTest
+ * Description: Feeds the detector hash sequences with known cycles, then steps still lifes and a blinker in the
+ * engine with each step mode keeping its own grid hash, checking the generation the cycle starts at, its period
+ * and that a cell edit forgets the cycle until the grid repeats again.
+ */
+
+class ConvergenceDetectorTest {
+
+    private static final MazeRule LIFE = MazeRule.parse("B3/S23");
+
+    static Stream<Arguments> stepModes() {
+        return Stream.of(
+                Arguments.of(MazeEngine.StepMode.DOUBLE_BUFFERED, true),
+                Arguments.of(MazeEngine.StepMode.DOUBLE_BUFFERED, false),
+                Arguments.of(MazeEngine.StepMode.HASHLIFE, true));
+    }
+
+    @Test
+    void repeatedHashGivesCycleStartAndPeriod() {
+        ConvergenceDetector detector = new ConvergenceDetector(4);
+        assertFalse(detector.hasHistory());
+        assertFalse(detector.record(0, 10));
+        assertFalse(detector.record(1, 11));
+        assertFalse(detector.record(2, 12));
+        assertTrue(detector.record(3, 11));
+        assertEquals(1, detector.getConvergedGeneration());
+        assertEquals(2, detector.getPeriod());
+        assertTrue(detector.record(4, 12), "stays converged");
+        assertEquals(1, detector.getConvergedGeneration());
+
+        detector.reset();
+        assertFalse(detector.isConverged());
+        assertFalse(detector.hasHistory());
+        assertEquals(-1, detector.getConvergedGeneration());
+        assertEquals(0, detector.getPeriod());
+        assertFalse(detector.record(5, 12));
+        assertTrue(detector.record(6, 12));
+        assertEquals(5, detector.getConvergedGeneration());
+        assertEquals(1, detector.getPeriod());
+    }
+
+    @Test
+    void cyclesLongerThanTheHistoryAreMissed() {
+        ConvergenceDetector detector = new ConvergenceDetector(3);
+        for (int generation = 0; generation < 20; generation++) {
+            assertFalse(detector.record(generation, generation % 4), "generation " + generation);
+        }
+    }
+
+    @ParameterizedTest(name = "{0} tracked={1}")
+    @MethodSource("stepModes")
+    void stillLifeConvergesWithPeriodOne(MazeEngine.StepMode stepMode, boolean tracked) {
+        //Three cells of a block, the fourth is born in the first generation
+        MazeEngine engine = engine(stepMode, tracked, 20, 20, 8, 8, 9, 8, 8, 9);
+        engine.step();
+        assertFalse(engine.isConverged(), "generation 1 differs from generation 0");
+        engine.step();
+        assertTrue(engine.isConverged());
+        assertEquals(1, engine.getConvergedGeneration());
+        assertEquals(1, engine.getConvergedPeriod());
+        engine.step();
+        assertEquals(1, engine.getConvergedGeneration(), "cycle start kept while the grid repeats");
+    }
+
+    @ParameterizedTest(name = "{0} tracked={1}")
+    @MethodSource("stepModes")
+    void blinkerConvergesWithPeriodTwo(MazeEngine.StepMode stepMode, boolean tracked) {
+        MazeEngine engine = engine(stepMode, tracked, 20, 20, 9, 10, 10, 10, 11, 10);
+        engine.step();
+        assertFalse(engine.isConverged(), "vertical phase is new");
+        engine.step();
+        assertTrue(engine.isConverged());
+        assertEquals(0, engine.getConvergedGeneration());
+        assertEquals(2, engine.getConvergedPeriod());
+    }
+
+    @ParameterizedTest(name = "{0} tracked={1}")
+    @MethodSource("stepModes")
+    void setCellClearsConvergence(MazeEngine.StepMode stepMode, boolean tracked) {
+        MazeEngine engine = engine(stepMode, tracked, 70, 20, 8, 8, 9, 8, 8, 9, 9, 9);
+        engine.step();
+        assertTrue(engine.isConverged());
+        assertEquals(0, engine.getConvergedGeneration());
+
+        //A second block far from the first, across a word boundary
+        engine.setCell(64, 10, true);
+        engine.setCell(65, 10, true);
+        engine.setCell(64, 11, true);
+        engine.setCell(65, 11, true);
+        assertFalse(engine.isConverged());
+        assertEquals(-1, engine.getConvergedGeneration());
+        assertEquals(0, engine.getConvergedPeriod());
+
+        engine.step();
+        assertTrue(engine.isConverged(), "both blocks are still");
+        assertEquals(1, engine.getConvergedGeneration());
+        assertEquals(1, engine.getConvergedPeriod());
+    }
+
+    /**
+     * Creates a Life engine with alive cells at x, y pairs
+     */
+    private static MazeEngine engine(MazeEngine.StepMode stepMode, boolean tracked, int width, int height, int... cells) {
+        MazeEngine engine = new MazeEngine(width, height);
+        engine.setRule(LIFE);
+        engine.setStepMode(stepMode);
+        engine.setDirtyTileTracking(tracked);
+        for (int i = 0; i < cells.length; i += 2) {
+            engine.getGrid().setAlive(cells[i], cells[i + 1], true);
+        }
+        engine.invalidate();
+        return engine;
+    }
+}
@@ -0,0 +1,74 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Title: HashlifeUniverseTest
+ * Description: Steps random grids with a node limit small enough that the node table is collected many times,
+ * checking every generation against MazeEngine.stepScalar. A live set above the limit must not be swept again
+ * every generation once it stops growing.
+ */
+
+class HashlifeUniverseTest {
+
+    private static final int GENERATIONS = 300; //generations compared per grid
+
+    @ParameterizedTest(name = "{0}x{1} {2} max nodes {3}")
+    @CsvSource({"300,300,B3/S1234,1024", "300,300,B3/S12345,1024", "130,70,B36/S23,1024", "65,200,B3/S1234,4096"})
+    void collectionsKeepGenerationsExact(int width, int height, String ruleString, int maxNodes) {
+        MazeRule rule = MazeRule.parse(ruleString);
+        SplittableRandom random = new SplittableRandom(13L * width + height);
+        MazeGrid expected = new MazeGrid(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                expected.setAlive(x, y, random.nextInt(10) < 3);
+            }
+        }
+        HashlifeUniverse universe = new HashlifeUniverse(width, height);
+        universe.setMaxNodes(maxNodes);
+        universe.load(expected);
+        MazeGrid next = new MazeGrid(width, height);
+        MazeGrid stored = new MazeGrid(width, height);
+        for (int generation = 1; generation <= GENERATIONS; generation++) {
+            MazeEngine.stepScalar(expected, next, rule);
+            MazeGrid swap = expected;
+            expected = next;
+            next = swap;
+            universe.step(rule);
+            universe.store(stored);
+            assertArrayEquals(expected.getWords(), stored.getWords(), "differs at generation " + generation);
+        }
+        assertTrue(universe.getCollections() > 0, "node limit never reached");
+    }
+
+    @ParameterizedTest(name = "{0}x{1}")
+    @CsvSource({"300,300", "400,250"})
+    void liveSetAboveLimitIsNotCollectedEveryGeneration(int width, int height) {
+        //Every cell survives and none is born, so the generations repeat and create no new nodes after the first
+        MazeRule still = MazeRule.parse("B/S012345678");
+        SplittableRandom random = new SplittableRandom(width);
+        MazeGrid grid = new MazeGrid(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                grid.setAlive(x, y, random.nextBoolean());
+            }
+        }
+        HashlifeUniverse universe = new HashlifeUniverse(width, height);
+        universe.setMaxNodes(1024);
+        universe.load(grid);
+        MazeGrid stored = new MazeGrid(width, height);
+        for (int generation = 1; generation <= GENERATIONS; generation++) {
+            universe.step(still);
+        }
+        universe.store(stored);
+        assertArrayEquals(grid.getWords(), stored.getWords());
+        assertTrue(universe.getNodeCount() > universe.getMaxNodes(), "live set fits the limit");
+        assertEquals(1, universe.getCollections(), "collections of an unchanging live set");
+    }
+
+}
@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Title: MazeFileTest
+ * Description: Round trips of maze records between grids on the heap and off-heap grids, raw and run-length
+ * encoded. The grids have empty bands so runs cover whole rows and end inside rows. Records with a broken
+ * payload size are rejected instead of moving the reader backwards, rules too long for the header are not written.
+ * Cells a file sets past the width of a row are cleared when read.
+ */
+
+class MazeFileTest {
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest(name = "{0}x{1} rle={2}")
+    @CsvSource({"1,40,false", "1,40,true", "65,33,false", "65,33,true", "200,70,false", "200,70,true"})
+    void offHeapGridsRoundTrip(int width, int height, boolean rle) throws IOException {
+        MazeGrid grid = banded(width, height, 7L * width + height);
+        Path heapFile = directory.resolve("heap.camz");
+        Path offHeapFile = directory.resolve("off-heap.camz");
+        OffHeapGrid offHeap = new OffHeapGrid(width, height);
+        offHeap.copyFrom(grid);
+        MazeFile.save(heapFile, grid, "B3/S1234", 42, 7, rle);
+        try (MazeFile.Writer writer = new MazeFile.Writer(offHeapFile, rle)) {
+            writer.write(offHeap, "B3/S1234", 42, 7);
+        }
+
+        for (Path file : new Path[] {heapFile, offHeapFile}) {
+            try (MazeFile.Reader reader = new MazeFile.Reader(file)) {
+                assertTrue(reader.next());
+                assertEquals(42, reader.getSeed());
+                assertEquals(7, reader.getGeneration());
+                OffHeapGrid read = new OffHeapGrid(width, height);
+                reader.readInto(read);
+                MazeGrid cells = new MazeGrid(width, height);
+                read.copyTo(cells);
+                assertArrayEquals(grid.getWords(), cells.getWords(), file.getFileName() + " read off-heap");
+            }
+            assertArrayEquals(grid.getWords(), MazeFile.load(file).getWords(), file.getFileName() + " read on heap");
+        }
+    }
+
+    @ParameterizedTest(name = "{0}x{1} rle={2}")
+    @CsvSource({"1,3,false", "1,3,true", "65,20,false", "65,20,true", "100,5,false", "100,5,true"})
+    void cellsPastTheWidthAreCleared(int width, int height, boolean rle) throws IOException {
+        MazeGrid full = new MazeGrid(width, height);
+        long[] words = new long[full.getWords().length];
+        Arrays.fill(words, -1L);
+        Path file = directory.resolve("padded.camz");
+        try (MazeFile.Writer writer = new MazeFile.Writer(file, rle)) {
+            writer.write(words, width, height, "B3/S1234", 0, 0);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                full.setAlive(x, y, true);
+            }
+        }
+
+        assertArrayEquals(full.getWords(), MazeFile.load(file).getWords(), "read on heap");
+        try (MazeFile.Reader reader = new MazeFile.Reader(file)) {
+            assertTrue(reader.next());
+            OffHeapGrid read = new OffHeapGrid(width, height);
+            reader.readInto(read);
+            MazeGrid cells = new MazeGrid(width, height);
+            read.copyTo(cells);
+            assertArrayEquals(full.getWords(), cells.getWords(), "read off-heap");
+        }
+    }
+
+    @ParameterizedTest(name = "payload size {0}")
+    @CsvSource({"-1", "-44", "-9223372036854775808"})
+    void negativePayloadSizeIsRejected(long payloadBytes) throws IOException {
+        Path file = directory.resolve("corrupt.camz");
+        MazeFile.save(file, banded(10, 10, 1), "B3/S1234", 0, 0, false);
+        byte[] bytes = Files.readAllBytes(file);
+        int sizeOffset = 4 + 2 + 2 + 4 + 4 + 8 + 8 + 2 + "B3/S1234".length(); //payload size follows the rule
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putLong(sizeOffset, payloadBytes);
+        Files.write(file, bytes);
+        try (MazeFile.Reader reader = new MazeFile.Reader(file)) {
+            assertThrows(IOException.class, reader::next);
+        }
+    }
+
+    @ParameterizedTest(name = "rule of {0} bytes")
+    @CsvSource({"65535", "65536", "70000"})
+    void longRulesAreWrittenOrRejected(int ruleBytes) throws IOException {
+        String rule = "B".repeat(ruleBytes);
+        MazeGrid grid = banded(10, 10, 2);
+        if (ruleBytes > 0xFFFF) {
+            assertThrows(IllegalArgumentException.class, () -> MazeFile.toBytes(grid, rule, 0, 0, false));
+            return;
+        }
+        Path file = directory.resolve("long-rule.camz");
+        Files.write(file, MazeFile.toBytes(grid, rule, 0, 0, true));
+        try (MazeFile.Reader reader = new MazeFile.Reader(file)) {
+            assertTrue(reader.next());
+            assertEquals(rule, reader.getRule());
+        }
+    }
+
+    /**
+     * Random cells with every third band of five rows left empty
+     */
+    private static MazeGrid banded(int width, int height, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        MazeGrid grid = new MazeGrid(width, height);
+        for (int y = 0; y < height; y++) {
+            if ((y / 5) % 3 == 0) {
+                continue;
+            }
+            for (int x = 0; x < width; x++) {
+                grid.setAlive(x, y, random.nextBoolean());
+            }
+        }
+        return grid;
+    }
+
+}
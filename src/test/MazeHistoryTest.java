@@ -0,0 +1,123 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Title: MazeHistoryTest
+ * Description: Records stepped generations, with every few generations a burst of random edits so both sparse
+ * and dense deltas are stored, and restores every held generation forwards, backwards and in random order
+ * against snapshots of the grids. A small budget makes the history evict and promote its oldest deltas to
+ * keyframes, rewinding and recording again checks that the dropped future is gone and the new one is kept.
+ */
+
+class MazeHistoryTest {
+
+    private static final int WIDTH = 70; //two words per row, the last one partly used
+    private static final int HEIGHT = 20;
+    private static final int GENERATIONS = 200;
+
+    @ParameterizedTest(name = "budget {0} bytes, keyframe every {1}")
+    @CsvSource({"4000, 5", "4000, 1", "20000, 7", "1048576, 32"})
+    void everyHeldGenerationIsRestored(long maxBytes, int keyframeInterval) {
+        MazeHistory history = new MazeHistory(WIDTH, HEIGHT, maxBytes, keyframeInterval);
+        Map<Long, long[]> snapshots = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(maxBytes * 31 + keyframeInterval);
+        MazeGrid grid = randomGrid(random);
+        for (long generation = 0; generation < GENERATIONS; generation++) {
+            history.record(generation, grid);
+            snapshots.put(generation, grid.getWords().clone());
+            assertEquals(generation, history.getNewestGeneration());
+            //Memory used counts the three working grids on top of the entries kept within the budget
+            assertTrue(history.getMemoryUsed() <= maxBytes + grid.getWords().length * 24L || history.size() == 1,
+                    "history outgrew its budget");
+            grid = next(grid, generation, random);
+        }
+        if (maxBytes < 1 << 20) {
+            assertTrue(history.getOldestGeneration() > 0, "budget never evicted a generation");
+            assertFalse(history.contains(history.getOldestGeneration() - 1));
+        } else {
+            assertEquals(0, history.getOldestGeneration());
+        }
+        checkRestores(history, snapshots, random);
+
+        //Rewind to a generation in the middle and continue from a different grid
+        long rewind = (history.getOldestGeneration() + history.getNewestGeneration()) / 2;
+        long oldNewest = history.getNewestGeneration();
+        grid = randomGrid(random);
+        history.record(rewind, grid);
+        snapshots.put(rewind, grid.getWords().clone());
+        assertEquals(rewind, history.getNewestGeneration());
+        for (long generation = rewind + 1; generation <= oldNewest; generation++) {
+            assertFalse(history.contains(generation), "generation " + generation + " survived the rewind");
+        }
+        for (long generation = rewind + 1; generation < rewind + 40; generation++) {
+            grid = next(grid, generation, random);
+            history.record(generation, grid);
+            snapshots.put(generation, grid.getWords().clone());
+        }
+        checkRestores(history, snapshots, random);
+    }
+
+    /**
+     * Restores every held generation oldest to newest, newest to oldest and in random order
+     */
+    private static void checkRestores(MazeHistory history, Map<Long, long[]> snapshots, SplittableRandom random) {
+        long oldest = history.getOldestGeneration();
+        long newest = history.getNewestGeneration();
+        MazeGrid restored = new MazeGrid(WIDTH, HEIGHT);
+        for (long generation = oldest; generation <= newest; generation++) {
+            assertRestored(history, snapshots, restored, generation, "forwards");
+        }
+        for (long generation = newest; generation >= oldest; generation--) {
+            assertRestored(history, snapshots, restored, generation, "backwards");
+        }
+        for (int i = 0; i < 200; i++) {
+            long generation = oldest + random.nextLong(newest - oldest + 1);
+            assertRestored(history, snapshots, restored, generation, "scrubbing");
+        }
+    }
+
+    private static void assertRestored(MazeHistory history, Map<Long, long[]> snapshots, MazeGrid restored,
+                                       long generation, String direction) {
+        assertTrue(history.restore(generation, restored), "generation " + generation + " not held");
+        assertArrayEquals(snapshots.get(generation), restored.getWords(),
+                "generation " + generation + " restored " + direction);
+    }
+
+    /**
+     * Steps a grid with the Maze rule, every fifth generation toggles a quarter of the cells instead
+     */
+    private static MazeGrid next(MazeGrid grid, long generation, SplittableRandom random) {
+        MazeGrid next = new MazeGrid(WIDTH, HEIGHT);
+        if (generation % 5 == 4) {
+            next.copyFrom(grid);
+            for (int i = 0; i < WIDTH * HEIGHT / 4; i++) {
+                int x = random.nextInt(WIDTH);
+                int y = random.nextInt(HEIGHT);
+                next.setAlive(x, y, !next.isAlive(x, y));
+            }
+        } else {
+            MazeEngine.stepScalar(grid, next, MazeRule.MAZE);
+        }
+        return next;
+    }
+
+    private static MazeGrid randomGrid(SplittableRandom random) {
+        MazeGrid grid = new MazeGrid(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                grid.setAlive(x, y, random.nextInt(10) < 3);
+            }
+        }
+        return grid;
+    }
+
+}
@@ -0,0 +1,298 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Title: MazeQualityTest
+ * Description: Steps random grids and edits single cells, checking after every update that the incrementally
+ * updated metrics match a fresh analyser counting the same grid from scratch. Widths around the 64 cell word
+ * boundary catch masking mistakes, tall grids keep the changed words few enough for the incremental path, and
+ * edits on the grid edges check the corridors and neighbours cut off by the border. Hand-built mazes check the
+ * counts against a naive per-cell count and known regions and path lengths, and target specs are parsed and
+ * checked against them.
+ */
+
+class MazeQualityTest {
+
+    private static final int GENERATIONS = 60; //generations stepped per grid
+    private static final int[] WIDTHS = {1, 63, 64, 65, 130};
+    private static final int[] HEIGHTS = {1, 17, 50};
+
+    static Stream<Arguments> grids() {
+        List<Arguments> grids = new ArrayList<>();
+        for (int width : WIDTHS) {
+            for (int height : HEIGHTS) {
+                grids.add(Arguments.of(width, height));
+            }
+        }
+        return grids.stream();
+    }
+
+    @ParameterizedTest(name = "{0}x{1}")
+    @MethodSource("grids")
+    void incrementalMetricsMatchFreshCount(int width, int height) {
+        SplittableRandom random = new SplittableRandom(17L * width + height);
+        MazeGrid grid = new MazeGrid(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                grid.setAlive(x, y, random.nextInt(10) < 3);
+            }
+        }
+        MazeGrid next = new MazeGrid(width, height);
+        MazeQuality quality = new MazeQuality(width, height);
+        quality.update(grid);
+        assertMatchesFresh(quality, grid, "start");
+        for (int generation = 1; generation <= GENERATIONS; generation++) {
+            MazeEngine.stepScalar(grid, next, MazeRule.MAZE);
+            MazeGrid swap = grid;
+            grid = next;
+            next = swap;
+            quality.update(grid);
+            assertMatchesFresh(quality, grid, "generation " + generation);
+
+            //One edit anywhere, one on an edge
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            grid.setAlive(x, y, !grid.isAlive(x, y));
+            quality.update(grid);
+            assertMatchesFresh(quality, grid, "generation " + generation + " edit " + x + "," + y);
+            boolean side = random.nextBoolean();
+            x = side ? (random.nextBoolean() ? 0 : width - 1) : random.nextInt(width);
+            y = side ? random.nextInt(height) : (random.nextBoolean() ? 0 : height - 1);
+            grid.setAlive(x, y, !grid.isAlive(x, y));
+            quality.update(grid);
+            assertMatchesFresh(quality, grid, "generation " + generation + " edge edit " + x + "," + y);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}x{1}")
+    @MethodSource("grids")
+    void changedTileUpdatesMatchFreshCount(int width, int height) {
+        SplittableRandom random = new SplittableRandom(31L * width + height);
+        MazeEngine engine = new MazeEngine(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                engine.getGrid().setAlive(x, y, random.nextInt(10) < 3);
+            }
+        }
+        engine.invalidate();
+        MazeQuality quality = new MazeQuality(width, height);
+        quality.update(engine.getGrid());
+        for (int generation = 1; generation <= GENERATIONS; generation++) {
+            engine.step();
+            if (generation % 7 == 0) {
+                engine.setCell(random.nextInt(width), random.nextInt(height), random.nextBoolean());
+            }
+            quality.update(engine.getGrid(), engine.getChangedTiles());
+            assertMatchesFresh(quality, engine.getGrid(), "generation " + generation);
+        }
+    }
+
+    static Stream<Arguments> mazes() {
+        return Stream.of(
+                Arguments.of("plus", new String[]{
+                        "#.#",
+                        "...",
+                        "#.#"}),
+                Arguments.of("corridors", new String[]{
+                        "..........",
+                        "#########.",
+                        ".#.......#",
+                        "...#.#.#..",
+                        "#.#......."}),
+                Arguments.of("rooms", new String[]{
+                        "....#....",
+                        "....#....",
+                        "#.###.#.#",
+                        "....#....",
+                        ".........",
+                        "##.#####."}),
+                Arguments.of("column", new String[]{".", ".", "#", ".", ".", "."}),
+                Arguments.of("walls", new String[]{"###", "###"}),
+                Arguments.of("open", new String[]{"....", "....", "...."}));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("mazes")
+    void localMetricsMatchNaiveCount(String name, String[] rows) {
+        MazeGrid grid = grid(rows);
+        MazeQuality quality = new MazeQuality(grid.getWidth(), grid.getHeight());
+        quality.update(grid);
+
+        long walls = 0;
+        long[] degrees = new long[5];
+        long[] runs = new long[grid.getWidth() + grid.getHeight() + 1];
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                if (!isOpen(grid, x, y)) {
+                    walls++;
+                    continue;
+                }
+                degrees[(isOpen(grid, x, y - 1) ? 1 : 0) + (isOpen(grid, x + 1, y) ? 1 : 0)
+                        + (isOpen(grid, x, y + 1) ? 1 : 0) + (isOpen(grid, x - 1, y) ? 1 : 0)]++;
+                //Count each run from its first cell
+                if (!isOpen(grid, x - 1, y)) {
+                    int length = 0;
+                    while (isOpen(grid, x + length, y)) {
+                        length++;
+                    }
+                    runs[length]++;
+                }
+                if (!isOpen(grid, x, y - 1)) {
+                    int length = 0;
+                    while (isOpen(grid, x, y + length)) {
+                        length++;
+                    }
+                    runs[length]++;
+                }
+            }
+        }
+        runs[1] = 0;
+        long corridors = 0;
+        int longest = 0;
+        for (int length = 2; length < runs.length; length++) {
+            corridors += runs[length];
+            longest = runs[length] != 0 ? length : longest;
+        }
+
+        assertEquals((double) walls / (grid.getWidth() * grid.getHeight()), quality.getWallDensity(), "wall density");
+        assertArrayEquals(degrees, quality.getNeighbourCounts(), "neighbour counts");
+        assertEquals(degrees[1], quality.getDeadEnds(), "dead ends");
+        assertEquals(degrees[3] + degrees[4], quality.getJunctions(), "junctions");
+        long[] lengths = quality.getCorridorLengths();
+        for (int length = 0; length < runs.length; length++) {
+            assertEquals(runs[length], length < lengths.length ? lengths[length] : 0, "corridors of length " + length);
+        }
+        assertEquals(corridors, quality.getCorridors(), "corridors");
+        assertEquals(longest, quality.getLongestCorridor(), "longest corridor");
+    }
+
+    @Test
+    void plusHasFourDeadEndsAroundOneJunction() {
+        MazeQuality quality = analyse("#.#", "...", "#.#");
+        assertEquals(4, quality.getDeadEnds());
+        assertEquals(1, quality.getJunctions());
+        assertEquals(2, quality.getCorridors());
+        assertEquals(3, quality.getLongestCorridor());
+        assertEquals(1, quality.getRegionCount());
+        assertEquals(3, quality.getLongestPath());
+    }
+
+    @Test
+    void regionsAndLongestPathOfKnownMazes() {
+        MazeQuality quality = analyse(
+                ".......",
+                "######.",
+                ".......",
+                ".######",
+                ".......");
+        assertEquals(1, quality.getRegionCount());
+        assertEquals(23, quality.getLongestPath(), "serpentine is one path through every open cell");
+
+        quality = analyse(
+                "...#...",
+                "####.#.",
+                "..#..#.",
+                ".##.##.");
+        assertEquals(3, quality.getRegionCount());
+        assertEquals(10, quality.getLongestPath(), "path of the largest region");
+
+        quality = analyse(
+                "...",
+                "...",
+                "...");
+        assertEquals(1, quality.getRegionCount());
+        assertEquals(5, quality.getLongestPath(), "corner to corner in an open room");
+
+        quality = analyse("###", "###");
+        assertEquals(0, quality.getRegionCount());
+        assertEquals(0, quality.getLongestPath());
+    }
+
+    @Test
+    void globalMetricsFollowUpdates() {
+        MazeGrid grid = grid(".#.", ".#.", ".#.");
+        MazeQuality quality = new MazeQuality(3, 3);
+        quality.update(grid);
+        assertEquals(2, quality.getRegionCount());
+        assertEquals(3, quality.getLongestPath());
+        grid.setAlive(1, 2, false);
+        quality.update(grid);
+        assertEquals(1, quality.getRegionCount());
+        assertEquals(7, quality.getLongestPath());
+    }
+
+    @Test
+    void targetParsesConditionsLocalFirst() {
+        MazeQuality.Target target = MazeQuality.Target.parse(" longestPath >= 300, deadEnds>40 ,,wallDensity<=0.55");
+        assertEquals("deadEnds>40,wallDensity<=0.55,longestPath>=300", target.toString());
+        assertEquals("regions=1", MazeQuality.Target.parse("REGIONS=1").toString());
+        assertEquals("corridors<12.5", MazeQuality.Target.parse("corridors<12.5").toString());
+
+        assertThrows(IllegalArgumentException.class, () -> MazeQuality.Target.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> MazeQuality.Target.parse(" , "));
+        assertThrows(IllegalArgumentException.class, () -> MazeQuality.Target.parse("deadEnds40"));
+        assertThrows(IllegalArgumentException.class, () -> MazeQuality.Target.parse(">=40"));
+        assertThrows(IllegalArgumentException.class, () -> MazeQuality.Target.parse("cul-de-sacs>=40"));
+        assertThrows(IllegalArgumentException.class, () -> MazeQuality.Target.parse("deadEnds>=many"));
+    }
+
+    @Test
+    void targetIsMetOnlyWhenEveryConditionHolds() {
+        MazeQuality quality = analyse("#.#", "...", "#.#"); //4 dead ends, 1 junction, 1 region, path of 3
+        assertTrue(MazeQuality.Target.parse("deadEnds>=4").isMet(quality));
+        assertFalse(MazeQuality.Target.parse("deadEnds>4").isMet(quality));
+        assertTrue(MazeQuality.Target.parse("deadEnds<=4").isMet(quality));
+        assertFalse(MazeQuality.Target.parse("deadEnds<4").isMet(quality));
+        assertTrue(MazeQuality.Target.parse("junctions=1").isMet(quality));
+        assertFalse(MazeQuality.Target.parse("junctions=2").isMet(quality));
+        assertTrue(MazeQuality.Target.parse("wallDensity<0.5,regions=1,longestPath>=3").isMet(quality));
+        assertFalse(MazeQuality.Target.parse("wallDensity<0.5,regions=1,longestPath>3").isMet(quality));
+        assertFalse(MazeQuality.Target.parse("deadEnds>=5,regions=1").isMet(quality));
+    }
+
+    /**
+     * Builds a grid from rows of '#' for walls and '.' for open cells
+     */
+    private static MazeGrid grid(String... rows) {
+        MazeGrid grid = new MazeGrid(rows[0].length(), rows.length);
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length(); x++) {
+                grid.setAlive(x, y, rows[y].charAt(x) == '#');
+            }
+        }
+        return grid;
+    }
+
+    private static MazeQuality analyse(String... rows) {
+        MazeGrid grid = grid(rows);
+        MazeQuality quality = new MazeQuality(grid.getWidth(), grid.getHeight());
+        quality.update(grid);
+        return quality;
+    }
+
+    private static boolean isOpen(MazeGrid grid, int x, int y) {
+        return x >= 0 && y >= 0 && x < grid.getWidth() && y < grid.getHeight() && !grid.isAlive(x, y);
+    }
+
+    private static void assertMatchesFresh(MazeQuality quality, MazeGrid grid, String when) {
+        MazeQuality fresh = new MazeQuality(grid.getWidth(), grid.getHeight());
+        fresh.update(grid);
+        assertArrayEquals(fresh.getNeighbourCounts(), quality.getNeighbourCounts(), "neighbour counts at " + when);
+        assertArrayEquals(fresh.getCorridorLengths(), quality.getCorridorLengths(), "corridor lengths at " + when);
+        assertEquals(fresh.getWallDensity(), quality.getWallDensity(), "wall density at " + when);
+    }
+
+}
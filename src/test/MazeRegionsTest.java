@@ -0,0 +1,181 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Title: MazeRegionsTest
+ * Description: Labels random grids and hand-built combs whose teeth only join in the last row, so runs are
+ * merged late through the union-find, and checks region ids, sizes, bounding boxes, edges and reachability
+ * against a naive flood fill. The flood fill numbers regions by their first cell in row order, as the labeller
+ * does.
+ */
+
+class MazeRegionsTest {
+
+    @ParameterizedTest(name = "{0}x{1} density {2}")
+    @CsvSource({"1,30,0.3", "63,40,0.4", "64,40,0.4", "65,40,0.4", "130,50,0.35", "130,50,0.55", "200,3,0.2"})
+    void randomGridsMatchFloodFill(int width, int height, double density) {
+        SplittableRandom random = new SplittableRandom(width * 31L + height);
+        MazeGrid grid = new MazeGrid(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                grid.setAlive(x, y, random.nextDouble() < density);
+            }
+        }
+        MazeRegions regions = new MazeRegions(width, height);
+        //A second grid labelled first checks that nothing of an earlier labelling is kept
+        regions.label(new MazeGrid(width, height));
+        regions.label(grid);
+        assertMatchesFloodFill(grid, regions, random);
+    }
+
+    @ParameterizedTest(name = "{0}x{1}")
+    @CsvSource({"63,20", "64,20", "65,20", "129,33"})
+    void combTeethJoinInTheLastRow(int width, int height) {
+        //Open teeth in every second column, walled off from each other until the open bottom row
+        MazeGrid grid = new MazeGrid(width, height);
+        for (int y = 0; y < height - 1; y++) {
+            for (int x = 1; x < width; x += 2) {
+                grid.setAlive(x, y, true);
+            }
+        }
+        MazeRegions regions = new MazeRegions(width, height);
+        regions.label(grid);
+        assertEquals(1, regions.getRegionCount());
+        assertEquals(width * height - (width / 2) * (height - 1), regions.getSize(0));
+        assertEquals(0, regions.getMinX(0));
+        assertEquals(width - 1, regions.getMaxX(0));
+        assertEquals(MazeRegions.EDGE_TOP | MazeRegions.EDGE_RIGHT | MazeRegions.EDGE_BOTTOM
+                | MazeRegions.EDGE_LEFT, regions.getEdges(0));
+        assertMatchesFloodFill(grid, regions, new SplittableRandom(width));
+
+        //Closing the bottom row splits the comb into its teeth
+        for (int x = 1; x < width; x += 2) {
+            grid.setAlive(x, height - 1, true);
+        }
+        regions.label(grid);
+        assertEquals((width + 1) / 2, regions.getRegionCount());
+        assertMatchesFloodFill(grid, regions, new SplittableRandom(height));
+    }
+
+    @Test
+    void nestedRingsAreOneRegion() {
+        //Nested wall rings with one gap each, the corridors turn back on themselves so their runs get many labels
+        //that all merge
+        int size = 41;
+        MazeGrid grid = new MazeGrid(size, size);
+        for (int ring = 0; ring < size / 2; ring += 2) {
+            int low = ring + 1;
+            int high = size - ring - 2;
+            for (int i = low; i <= high; i++) {
+                grid.setAlive(i, low, true);
+                grid.setAlive(i, high, true);
+                grid.setAlive(low, i, true);
+                grid.setAlive(high, i, true);
+            }
+            if (low + 1 < high) {
+                grid.setAlive(low, low + 1, false);
+            }
+        }
+        MazeRegions regions = new MazeRegions(size, size);
+        regions.label(grid);
+        assertEquals(1, regions.getRegionCount());
+        assertMatchesFloodFill(grid, regions, new SplittableRandom(size));
+    }
+
+    /**
+     * Compares a labelling with a flood fill of the same grid
+     */
+    private static void assertMatchesFloodFill(MazeGrid grid, MazeRegions regions, SplittableRandom random) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int[] expected = floodFill(grid);
+        int count = Arrays.stream(expected).max().orElse(-1) + 1;
+        assertArrayEquals(expected, regions.getRegionIds(), "region ids");
+        assertEquals(count, regions.getRegionCount(), "region count");
+        for (int region = 0; region < count; region++) {
+            int size = 0;
+            int minX = width;
+            int minY = height;
+            int maxX = -1;
+            int maxY = -1;
+            int edges = 0;
+            for (int cell = 0; cell < expected.length; cell++) {
+                if (expected[cell] != region) {
+                    continue;
+                }
+                int x = cell % width;
+                int y = cell / width;
+                size++;
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+                edges |= (y == 0 ? MazeRegions.EDGE_TOP : 0) | (x == width - 1 ? MazeRegions.EDGE_RIGHT : 0)
+                        | (y == height - 1 ? MazeRegions.EDGE_BOTTOM : 0) | (x == 0 ? MazeRegions.EDGE_LEFT : 0);
+            }
+            assertEquals(size, regions.getSize(region), "size of region " + region);
+            assertEquals(minX, regions.getMinX(region), "min x of region " + region);
+            assertEquals(minY, regions.getMinY(region), "min y of region " + region);
+            assertEquals(maxX, regions.getMaxX(region), "max x of region " + region);
+            assertEquals(maxY, regions.getMaxY(region), "max y of region " + region);
+            assertEquals(edges, regions.getEdges(region), "edges of region " + region);
+        }
+        for (int i = 0; i < 500; i++) {
+            int a = random.nextInt(expected.length);
+            int b = random.nextInt(expected.length);
+            boolean reachable = expected[a] >= 0 && expected[a] == expected[b];
+            assertEquals(reachable, regions.isReachable(a % width, a / width, b % width, b / width),
+                    "reachability of " + a + " and " + b);
+        }
+    }
+
+    /**
+     * Breadth-first flood fill of the dead cells, numbering regions by their first cell in row order
+     * @return - region of each cell by index y * width + x, -1 for alive cells
+     */
+    private static int[] floodFill(MazeGrid grid) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        int[] ids = new int[width * height];
+        Arrays.fill(ids, -2);
+        int regions = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int start = 0; start < ids.length; start++) {
+            if (grid.isAlive(start % width, start / width)) {
+                ids[start] = -1;
+                continue;
+            }
+            if (ids[start] != -2) {
+                continue;
+            }
+            ids[start] = regions;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                int cell = queue.poll();
+                int x = cell % width;
+                int y = cell / width;
+                int[][] neighbours = {{x, y - 1}, {x + 1, y}, {x, y + 1}, {x - 1, y}};
+                for (int[] n : neighbours) {
+                    if (n[0] >= 0 && n[0] < width && n[1] >= 0 && n[1] < height) {
+                        int next = n[1] * width + n[0];
+                        if (ids[next] == -2 && !grid.isAlive(n[0], n[1])) {
+                            ids[next] = regions;
+                            queue.add(next);
+                        }
+                    }
+                }
+            }
+            regions++;
+        }
+        return ids;
+    }
+
+}
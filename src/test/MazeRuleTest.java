@@ -0,0 +1,103 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Title: MazeRuleTest
+ * Description: Parsing of rulestrings in every accepted notation into their canonical form, the transition
+ * table they compile to, and rejection of malformed rulestrings.
+ */
+
+class MazeRuleTest {
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = ';', value = {
+            "B3/S1234; B3/S1234",
+            "b3/s12345; B3/S12345",
+            "S1234/B3; B3/S1234",
+            "1234/3; B3/S1234",
+            "' B36/S23 '; B36/S23",
+            "B/S; B/S",
+            "0; B3/S1234",
+            "1; B3/S12345",
+            "B3/S1234/C4; B3/S1234/C4",
+            "B3/S1234/G4; B3/S1234/C4",
+            "1234/3/4; B3/S1234/C4",
+            "345/2/4; B2/S345/C4",
+            "B3/S1234/C2; B3/S1234",
+            "R2,C0,M0,S4..12,B6..8,NM; R2,C0,M0,S4..12,B6..8,NM",
+            "r2,c0,m1,s5..9,b4..6,nn; R2,C0,M1,S5..9,B4..6,NN",
+            "R3,C3,M0,S10,B12..16,NM; R3,C3,M0,S10..10,B12..16,NM"})
+    void rulestringsParseToCanonicalForm(String rule, String canonical) {
+        MazeRule parsed = MazeRule.parse(rule);
+        assertEquals(canonical, parsed.toString());
+        assertEquals(parsed, MazeRule.parse(parsed.toString()), "canonical form parses back");
+    }
+
+    @Test
+    void legacyRuleNumbersAreTheMazeRules() {
+        assertEquals(MazeRule.MAZE, MazeRule.parse("0"));
+        assertEquals(MazeRule.MAZECTRIC, MazeRule.parse("1"));
+    }
+
+    @Test
+    void lifeLikeRulesCompileToMasksAndTable() {
+        MazeRule rule = MazeRule.parse("S1234/B3");
+        assertTrue(rule.isBitParallel());
+        assertEquals(8, rule.getMaxCount());
+        assertEquals(1 << 3, rule.getBirthMask());
+        assertEquals(0b11110, rule.getSurviveMask());
+        for (int n = 0; n <= 8; n++) {
+            assertEquals(n == 3 ? 1 : 0, rule.nextState(0, n), "birth with " + n);
+            assertEquals(n >= 1 && n <= 4 ? 1 : 0, rule.nextState(1, n), "survival with " + n);
+        }
+    }
+
+    @Test
+    void generationsRulesCountDyingStatesDown() {
+        MazeRule rule = MazeRule.parse("345/2/4");
+        assertEquals(4, rule.getStates());
+        assertFalse(rule.isBitParallel());
+        assertEquals(1, rule.nextState(0, 2));
+        assertEquals(1, rule.nextState(1, 4));
+        assertEquals(2, rule.nextState(1, 2)); //an alive cell that does not survive starts dying
+        for (int n = 0; n <= 8; n++) {
+            assertEquals(3, rule.nextState(2, n), "dying cells ignore their neighbours");
+            assertEquals(0, rule.nextState(3, n), "the last dying state dies");
+        }
+    }
+
+    @Test
+    void largerThanLifeRulesSizeTheirNeighbourhood() {
+        MazeRule moore = MazeRule.parse("R2,C0,M0,S4..12,B6..8,NM");
+        assertEquals(2, moore.getRadius());
+        assertFalse(moore.isVonNeumann());
+        assertEquals(24, moore.getMaxCount());
+        for (int n = 0; n <= 24; n++) {
+            assertEquals(n >= 6 && n <= 8 ? 1 : 0, moore.nextState(0, n), "birth with " + n);
+            assertEquals(n >= 4 && n <= 12 ? 1 : 0, moore.nextState(1, n), "survival with " + n);
+        }
+        MazeRule vonNeumann = MazeRule.parse("R2,C0,M1,S5..9,B4..30,NN");
+        assertTrue(vonNeumann.isVonNeumann());
+        assertTrue(vonNeumann.isIncludeCentre());
+        assertEquals(13, vonNeumann.getMaxCount()); //12 cells within distance 2 and the cell itself
+        assertEquals(1, vonNeumann.nextState(0, 13)); //birth range is clipped to the neighbourhood
+        assertFalse(vonNeumann.isBitParallel());
+    }
+
+    @ParameterizedTest(name = "\"{0}\"")
+    @ValueSource(strings = {"", "B3", "B3/S1234/C4/5", "B9/S1234", "B3/S12a", "B3/S1234/C1", "B3/S1234/C300",
+            "B3/S1234/X4", "B3/B4", "3/4/x", "R0,C0,M0,S4..12,B6..8,NM", "R101,C0,M0,S1,B1,NM",
+            "R2,C0,M0,B6..8,NM", "R2,C0,M0,S4..12,NM", "R2,C0,M0,S12..4,B6..8,NM", "R2,C0,M0,S4..12,B6..8,NX",
+            "R2,C0,,S4..12,B6..8,NM", "Rx,C0,M0,S4..12,B6..8,NM", "R2,C0,M0,S4..12,B6..8,Q1"})
+    void invalidRulestringsAreRejected(String rule) {
+        assertThrows(IllegalArgumentException.class, () -> MazeRule.parse(rule));
+    }
+
+}
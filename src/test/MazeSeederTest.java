@@ -0,0 +1,96 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Title: MazeSeederTest
+ * Description: Fills grids with every pattern on the calling thread, over row bands of a ParallelStepper and into
+ * an off-heap grid, checking the three give the same cells with nothing set past the grid width. Large grids check
+ * that every pattern leaves the fill density of cells alive.
+ */
+
+class MazeSeederTest {
+
+    private static final int[] WIDTHS = {1, 63, 64, 65, 130};
+    private static final int[] HEIGHTS = {1, 17, 50};
+    private static final double[] DENSITIES = {0, 0.1, 0.3, 0.5, 0.8, 1};
+
+    static Stream<Arguments> grids() {
+        List<Arguments> grids = new ArrayList<>();
+        for (MazeSeeder.Pattern pattern : MazeSeeder.Pattern.values()) {
+            for (int width : WIDTHS) {
+                for (int height : HEIGHTS) {
+                    grids.add(Arguments.of(pattern, width, height));
+                }
+            }
+        }
+        return grids.stream();
+    }
+
+    static Stream<Arguments> densities() {
+        List<Arguments> densities = new ArrayList<>();
+        for (MazeSeeder.Pattern pattern : MazeSeeder.Pattern.values()) {
+            for (double density : DENSITIES) {
+                densities.add(Arguments.of(pattern, density));
+            }
+        }
+        return densities.stream();
+    }
+
+    @ParameterizedTest(name = "{0} {1}x{2}")
+    @MethodSource("grids")
+    void parallelAndOffHeapFillsMatchSerialFill(MazeSeeder.Pattern pattern, int width, int height) {
+        MazeSeeder seeder = new MazeSeeder(pattern, 0.3);
+        MazeGrid serial = new MazeGrid(width, height);
+        seeder.fill(serial, 42, null);
+        long lastWordMask = DirtyTileStepper.lastWordMask(width);
+        for (int y = 0; y < height; y++) {
+            long last = serial.getWords()[(y + 1) * serial.getWordsPerRow() - 1];
+            assertEquals(0, last & ~lastWordMask, "cells past the width in row " + y);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            //A band size of one word splits the grid into as many bands as possible
+            MazeGrid parallel = new MazeGrid(width, height);
+            seeder.fill(parallel, 42, new ParallelStepper(pool, 1));
+            assertArrayEquals(serial.getWords(), parallel.getWords(), "parallel fill");
+
+            try (OffHeapGrid offHeap = new OffHeapGrid(width, height)) {
+                seeder.fill(offHeap, 42, new ParallelStepper(pool, 1));
+                MazeGrid copy = new MazeGrid(width, height);
+                offHeap.copyTo(copy);
+                assertArrayEquals(serial.getWords(), copy.getWords(), "off-heap fill");
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        MazeGrid other = new MazeGrid(width, height);
+        seeder.fill(other, 42, null);
+        assertArrayEquals(serial.getWords(), other.getWords(), "same seed");
+    }
+
+    @ParameterizedTest(name = "{0} {1}")
+    @MethodSource("densities")
+    void fillHasTheRequestedDensity(MazeSeeder.Pattern pattern, double density) {
+        int width = 640;
+        int height = 480;
+        //Noise is correlated over its lattice, so it strays further from the density on a grid of this size
+        double tolerance = pattern == MazeSeeder.Pattern.NOISE ? 0.03 : 0.005;
+        for (long seed = 1; seed <= 3; seed++) {
+            MazeGrid grid = new MazeGrid(width, height);
+            new MazeSeeder(pattern, density).fill(grid, seed, null);
+            double filled = (double) grid.countAlive() / ((long) width * height);
+            assertEquals(density, filled, tolerance, "seed " + seed);
+        }
+    }
+}
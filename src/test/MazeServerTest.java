@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Title: MazeServerTest
+ * Description: Requests against a server on a free loopback port: bad parameters are answered with 400,
+ * a second identical maze comes from the cache, a full compute queue turns requests away with 503 and
+ * stopping the server answers the jobs still queued instead of leaving them waiting.
+ */
+
+class MazeServerTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private MazeServer server;
+
+    @AfterEach
+    void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @ValueSource(strings = {"/maze?width=0", "/maze?width=5000&height=5000", "/maze?rule=B9/S", "/maze?density=2",
+            "/maze?generations=-1", "/maze?format=xml", "/maze?seed=x", "/solve?sx=1&sy=1&ex=2",
+            "/solve?sx=1&sy=1&ex=2&ey=200", "/solve?sx=1&sy=1&ex=2&ey=2&strategy=dfs"})
+    void badParametersAreRejected(String request) throws Exception {
+        start(1, 16);
+        assertEquals(400, get(request).statusCode());
+    }
+
+    @Test
+    void unknownFormatIsRejectedBeforeGenerating() throws Exception {
+        start(1, 16);
+        assertEquals(400, get("/maze?width=40&height=30&format=xml").statusCode());
+        String stats = new String(get("/stats").body());
+        assertEquals(0, stat(stats, "cacheMisses"));
+        assertEquals(0, stat(stats, "batches"));
+    }
+
+    @Test
+    void identicalMazesComeFromTheCache() throws Exception {
+        start(2, 16);
+        String maze = "/maze?width=40&height=30&seed=5&generations=50&density=0.3";
+        HttpResponse<byte[]> first = get(maze);
+        HttpResponse<byte[]> second = get(maze);
+        assertEquals(200, first.statusCode());
+        assertEquals(200, second.statusCode());
+        assertArrayEquals(first.body(), second.body());
+        HttpResponse<byte[]> solve = get(maze.replace("/maze", "/solve") + "&sx=0&sy=0&ex=39&ey=29");
+        assertEquals(200, solve.statusCode());
+        String stats = new String(get("/stats").body());
+        assertEquals(1, stat(stats, "cacheMisses"));
+        assertEquals(2, stat(stats, "cacheHits")); //second maze and the maze of the solve
+        assertEquals(1, stat(stats, "solves"));
+        assertEquals(stat(new String(solve.body()), "nodesExpanded"), stat(stats, "solverNodesExpanded"));
+    }
+
+    @Test
+    void fullQueueIsTurnedAwayAndStopAnswersQueuedJobs() throws Exception {
+        start(0, 1); //no compute thread takes the queued job
+        CompletableFuture<HttpResponse<byte[]>> queued = client.sendAsync(request("/maze?seed=1"),
+                HttpResponse.BodyHandlers.ofByteArray());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (stat(new String(get("/stats").body()), "queued") < 1) {
+            assertTrue(System.nanoTime() < deadline, "maze job never queued");
+            Thread.sleep(10);
+        }
+        assertEquals(503, get("/maze?seed=2").statusCode());
+        server.stop();
+        assertEquals(503, queued.get(10, TimeUnit.SECONDS).statusCode());
+    }
+
+    private void start(int threads, int queue) throws IOException {
+        server = new MazeServer();
+        server.port = 0;
+        server.threads = threads;
+        server.queue = queue;
+        server.start();
+    }
+
+    private HttpRequest request(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + pathAndQuery)).build();
+    }
+
+    private HttpResponse<byte[]> get(String pathAndQuery) throws IOException, InterruptedException {
+        return client.send(request(pathAndQuery), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static long stat(String stats, String name) {
+        Matcher matcher = Pattern.compile("\"" + name + "\":(\\d+)").matcher(stats);
+        assertTrue(matcher.find(), name + " missing from " + stats);
+        return Long.parseLong(matcher.group(1));
+    }
+
+}
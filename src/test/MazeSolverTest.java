@@ -0,0 +1,148 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Title: MazeSolverTest
+ * Description: Solves random cell pairs of seeded mazes with breadth-first search, A* and bidirectional
+ * breadth-first search on one reused solver. Every strategy must return a path of open cells, each next to the
+ * one before, from start to end, as long as the distance found by a plain reference search. Unreachable targets
+ * and start or end cells on walls give empty paths.
+ */
+
+class MazeSolverTest {
+
+    private static final int PAIRS = 200; //cell pairs solved per maze
+    private static final int GENERATIONS = 30; //Maze rule generations stepped from the random fill
+
+    @ParameterizedTest(name = "{0}x{1} seed {2}")
+    @CsvSource({"40,30,1", "40,30,2", "1,20,3", "65,17,4", "130,40,5"})
+    void strategiesFindEqualValidShortestPaths(int width, int height, long seed) {
+        MazeGrid grid = maze(width, height, seed);
+        MazeSolver solver = new MazeSolver(width, height);
+        SplittableRandom random = new SplittableRandom(seed);
+        int reachable = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            int start = random.nextInt(width * height);
+            int end = random.nextInt(width * height);
+            if (i % 10 == 0) {
+                end = start;
+            } else if (i % 2 == 0) {
+                //A cell a few steps away, far cells of large mazes are rarely connected
+                int x = Math.floorMod(start % width + random.nextInt(-4, 5), width);
+                int y = Math.floorMod(start / width + random.nextInt(-4, 5), height);
+                end = y * width + x;
+            }
+            int distance = distance(grid, start, end);
+            boolean open = isOpen(grid, start) && isOpen(grid, end);
+            for (MazeSolver.Strategy strategy : MazeSolver.Strategy.values()) {
+                int[] path = solver.solve(grid, strategy, start % width, start / width, end % width, end / width);
+                String pair = strategy + " from " + start + " to " + end;
+                if (!open || distance < 0) {
+                    assertEquals(0, path.length, pair + " should find no path");
+                    continue;
+                }
+                assertEquals(distance + 1, path.length, pair + " path length");
+                assertEquals(start, path[0], pair + " path start");
+                assertEquals(end, path[path.length - 1], pair + " path end");
+                for (int c = 0; c < path.length; c++) {
+                    assertTrue(isOpen(grid, path[c]), pair + " walks through wall " + path[c]);
+                    if (c > 0) {
+                        int dx = Math.abs(path[c] % width - path[c - 1] % width);
+                        int dy = Math.abs(path[c] / width - path[c - 1] / width);
+                        assertEquals(1, dx + dy, pair + " jumps from " + path[c - 1] + " to " + path[c]);
+                    }
+                }
+            }
+            if (open && distance > 0) {
+                reachable++;
+            }
+        }
+        assertTrue(reachable > 0, "no reachable pair was solved");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({"BFS", "A_STAR", "BIDIRECTIONAL_BFS"})
+    void wallsAndUnreachableTargetsGiveNoPath(MazeSolver.Strategy strategy) {
+        //Open left and right halves split by a wall column
+        MazeGrid grid = new MazeGrid(9, 5);
+        for (int y = 0; y < 5; y++) {
+            grid.setAlive(4, y, true);
+        }
+        MazeSolver solver = new MazeSolver(9, 5);
+        assertEquals(0, solver.solve(grid, strategy, 0, 0, 8, 4).length, "target behind the wall");
+        assertEquals(0, solver.solve(grid, strategy, 4, 2, 0, 0).length, "start on a wall");
+        assertEquals(0, solver.solve(grid, strategy, 0, 0, 4, 2).length, "end on a wall");
+        assertEquals(8, solver.solve(grid, strategy, 0, 0, 3, 4).length, "open half after failed solves");
+        grid.setAlive(4, 2, false);
+        int[] path = solver.solve(grid, strategy, 0, 0, 8, 4);
+        assertEquals(13, path.length, "through the gap in the wall");
+        assertFalse(Arrays.stream(path).anyMatch(cell -> cell % 9 == 4 && cell / 9 != 2), "path crosses the wall");
+    }
+
+    /**
+     * Random fill stepped with the Maze rule for a few generations
+     */
+    private static MazeGrid maze(int width, int height, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        MazeGrid grid = new MazeGrid(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                grid.setAlive(x, y, random.nextInt(10) < 3);
+            }
+        }
+        MazeGrid next = new MazeGrid(width, height);
+        for (int generation = 0; generation < GENERATIONS; generation++) {
+            MazeEngine.stepScalar(grid, next, MazeRule.MAZE);
+            MazeGrid swap = grid;
+            grid = next;
+            next = swap;
+        }
+        return grid;
+    }
+
+    private static boolean isOpen(MazeGrid grid, int cell) {
+        return !grid.isAlive(cell % grid.getWidth(), cell / grid.getWidth());
+    }
+
+    /**
+     * Plain breadth-first search over open cells
+     * @return - steps from start to end, -1 if either is a wall or end cannot be reached
+     */
+    private static int distance(MazeGrid grid, int start, int end) {
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+        if (!isOpen(grid, start) || !isOpen(grid, end)) {
+            return -1;
+        }
+        int[] distances = new int[width * height];
+        Arrays.fill(distances, -1);
+        distances[start] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            int x = cell % width;
+            int y = cell / width;
+            int[][] neighbours = {{x, y - 1}, {x + 1, y}, {x, y + 1}, {x - 1, y}};
+            for (int[] n : neighbours) {
+                if (n[0] >= 0 && n[0] < width && n[1] >= 0 && n[1] < height) {
+                    int next = n[1] * width + n[0];
+                    if (distances[next] < 0 && isOpen(grid, next)) {
+                        distances[next] = distances[cell] + 1;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return distances[end];
+    }
+
+}
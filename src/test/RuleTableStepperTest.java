@@ -0,0 +1,163 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Title: RuleTableStepperTest
+ * Description: Steps random grids with RuleTableStepper, serially and in parallel bands, and checks every cell
+ * state of every generation against a naive reference that counts each neighbourhood cell by cell and applies
+ * the birth, survival and dying rules written out in the test rather than read from the compiled table.
+ * Covers Larger than Life with Moore and von Neumann neighbourhoods, with and without the centre cell,
+ * Generations rules and plain B/S rules, on widths around the 64 cell word boundary.
+ */
+
+class RuleTableStepperTest {
+
+    private static final int GENERATIONS = 12; //generations compared per grid
+    private static final int[] WIDTHS = {1, 63, 65, 130};
+    private static final int[] HEIGHTS = {1, 23};
+
+    /**
+     * A rule spelled out for the reference step
+     */
+    private static final class Reference {
+        final String rule;
+        final int radius;
+        final boolean vonNeumann;
+        final boolean includeCentre;
+        final int states;
+        final String births; //birth counts, digit by digit or a range from..to
+        final String survivals; //survival counts, digit by digit or a range from..to
+
+        Reference(String rule, int radius, boolean vonNeumann, boolean includeCentre, int states,
+                  String births, String survivals) {
+            this.rule = rule;
+            this.radius = radius;
+            this.vonNeumann = vonNeumann;
+            this.includeCentre = includeCentre;
+            this.states = states;
+            this.births = births;
+            this.survivals = survivals;
+        }
+
+        static boolean contains(String counts, int count) {
+            int dots = counts.indexOf("..");
+            if (dots < 0) {
+                return count <= 9 && counts.indexOf((char) ('0' + count)) >= 0;
+            }
+            return count >= Integer.parseInt(counts.substring(0, dots))
+                    && count <= Integer.parseInt(counts.substring(dots + 2));
+        }
+
+        @Override
+        public String toString() {
+            return rule;
+        }
+    }
+
+    private static final Reference[] RULES = {
+            new Reference("B3/S1234", 1, false, false, 2, "3", "1234"),
+            new Reference("B36/S23", 1, false, false, 2, "36", "23"),
+            new Reference("B3/S1234/C4", 1, false, false, 4, "3", "1234"),
+            new Reference("345/2/4", 1, false, false, 4, "2", "345"),
+            new Reference("B2/S/C3", 1, false, false, 3, "2", ""),
+            new Reference("R2,C0,M0,S4..12,B6..8,NM", 2, false, false, 2, "6..8", "4..12"),
+            new Reference("R2,C0,M1,S5..9,B4..6,NM", 2, false, true, 2, "4..6", "5..9"),
+            new Reference("R2,C0,M0,S2..5,B3..4,NN", 2, true, false, 2, "3..4", "2..5"),
+            new Reference("R3,C0,M1,S6..14,B5..9,NN", 3, true, true, 2, "5..9", "6..14"),
+            new Reference("R3,C4,M0,S10..24,B12..18,NM", 3, false, false, 4, "12..18", "10..24"),
+    };
+
+    static Stream<Arguments> grids() {
+        List<Arguments> grids = new ArrayList<>();
+        for (Reference rule : RULES) {
+            for (int width : WIDTHS) {
+                for (int height : HEIGHTS) {
+                    grids.add(Arguments.of(rule, width, height));
+                }
+            }
+        }
+        return grids.stream();
+    }
+
+    @ParameterizedTest(name = "{0} {1}x{2}")
+    @MethodSource("grids")
+    void stepsMatchNaiveReference(Reference reference, int width, int height) {
+        MazeRule rule = MazeRule.parse(reference.rule);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (ParallelStepper parallel : new ParallelStepper[] {null, new ParallelStepper(pool, 1)}) {
+                SplittableRandom random = new SplittableRandom(31L * width + height);
+                int[] expected = new int[width * height];
+                MazeGrid grid = new MazeGrid(width, height);
+                for (int i = 0; i < expected.length; i++) {
+                    expected[i] = random.nextInt(100) < 35 ? 1 : 0;
+                    grid.setAlive(i % width, i / width, expected[i] == 1);
+                }
+                MazeGrid next = new MazeGrid(width, height);
+                RuleTableStepper stepper = new RuleTableStepper(width, height);
+                String mode = parallel == null ? "serial" : "parallel";
+                for (int generation = 1; generation <= GENERATIONS; generation++) {
+                    expected = referenceStep(expected, width, height, reference);
+                    stepper.step(grid, next, rule, parallel);
+                    MazeGrid swap = grid;
+                    grid = next;
+                    next = swap;
+                    for (int y = 0; y < height; y++) {
+                        for (int x = 0; x < width; x++) {
+                            assertEquals(expected[y * width + x], stepper.getState(grid, x, y),
+                                    mode + " generation " + generation + " cell " + x + "," + y);
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Computes the next states cell by cell, counting the alive cells of each neighbourhood one at a time
+     */
+    private static int[] referenceStep(int[] states, int width, int height, Reference rule) {
+        int[] next = new int[states.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int count = 0;
+                for (int dy = -rule.radius; dy <= rule.radius; dy++) {
+                    for (int dx = -rule.radius; dx <= rule.radius; dx++) {
+                        int nx = x + dx;
+                        int ny = y + dy;
+                        boolean inside = nx >= 0 && nx < width && ny >= 0 && ny < height;
+                        boolean inNeighbourhood = !rule.vonNeumann || Math.abs(dx) + Math.abs(dy) <= rule.radius;
+                        boolean centre = dx == 0 && dy == 0;
+                        if (inside && inNeighbourhood && (!centre || rule.includeCentre)
+                                && states[ny * width + nx] == 1) {
+                            count++;
+                        }
+                    }
+                }
+                int state = states[y * width + x];
+                int nextState;
+                if (state == 0) {
+                    nextState = Reference.contains(rule.births, count) ? 1 : 0;
+                } else if (state == 1) {
+                    nextState = Reference.contains(rule.survivals, count) ? 1 : (rule.states > 2 ? 2 : 0);
+                } else {
+                    nextState = state + 1 < rule.states ? state + 1 : 0;
+                }
+                next[y * width + x] = nextState;
+            }
+        }
+        return next;
+    }
+
+}
@@ -0,0 +1,278 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Title: StepDifferentialTest
+ * Description: Steps the same random grid with every way of computing a generation and checks each generation
+ * against MazeEngine.stepScalar, cell for cell. Widths around the 64 cell word boundary and heights around the
+ * 16 row tile boundary catch masking and halo mistakes, a cell edit halfway checks that the steppers skipping
+ * quiet tiles pick up direct changes. The legacy in-place sweep is checked against a scalar in-place sweep,
+ * as it does not compute the same generations.
+ */
+
+class StepDifferentialTest {
+
+    private static final int GENERATIONS = 40; //generations compared per grid
+    private static final int EDIT_GENERATION = 20; //generation after which a cell is toggled
+    private static final int[] WIDTHS = {1, 63, 64, 65, 130, 200};
+    private static final int[] HEIGHTS = {1, 17, 50};
+    private static final String[] RULES = {"B3/S1234", "B3/S12345"};
+
+    /**
+     * One way of stepping a grid, holding its own copy of the cells
+     */
+    private interface Stepper {
+        void step();
+        void toggle(int x, int y);
+        MazeGrid current();
+    }
+
+    static Stream<Arguments> grids() {
+        List<Arguments> grids = new ArrayList<>();
+        for (String rule : RULES) {
+            for (int width : WIDTHS) {
+                for (int height : HEIGHTS) {
+                    grids.add(Arguments.of(rule, width, height));
+                }
+            }
+        }
+        return grids.stream();
+    }
+
+    @ParameterizedTest(name = "{0} {1}x{2}")
+    @MethodSource("grids")
+    void everyStepperMatchesScalarStep(String ruleString, int width, int height) {
+        MazeRule rule = MazeRule.parse(ruleString);
+        MazeGrid start = randomGrid(width, height, 31L * width + height);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            //A band size of one word splits the grid into as many bands as possible
+            ParallelStepper parallel = new ParallelStepper(pool, 1);
+            Map<String, Stepper> steppers = new LinkedHashMap<>();
+            steppers.put("double buffered", engine(start, rule, MazeEngine.StepMode.DOUBLE_BUFFERED, false, null));
+            steppers.put("double buffered dirty tiles",
+                    engine(start, rule, MazeEngine.StepMode.DOUBLE_BUFFERED, true, null));
+            steppers.put("double buffered parallel",
+                    engine(start, rule, MazeEngine.StepMode.DOUBLE_BUFFERED, false, parallel));
+            steppers.put("double buffered dirty tiles parallel",
+                    engine(start, rule, MazeEngine.StepMode.DOUBLE_BUFFERED, true, parallel));
+            steppers.put("hashlife engine", engine(start, rule, MazeEngine.StepMode.HASHLIFE, true, null));
+            steppers.put("ParallelStepper", parallelStepper(start, rule, parallel));
+            steppers.put("DirtyTileStepper", dirtyTileStepper(start, rule, null));
+            steppers.put("DirtyTileStepper parallel", dirtyTileStepper(start, rule, parallel));
+            steppers.put("HashlifeUniverse", hashlifeUniverse(start, rule));
+            steppers.put("OffHeapEngine", offHeapEngine(start, rule, null));
+            steppers.put("OffHeapEngine parallel", offHeapEngine(start, rule, parallel));
+
+            MazeGrid expected = copy(start);
+            MazeGrid next = new MazeGrid(width, height);
+            for (int generation = 1; generation <= GENERATIONS; generation++) {
+                MazeEngine.stepScalar(expected, next, rule);
+                MazeGrid swap = expected;
+                expected = next;
+                next = swap;
+                for (Map.Entry<String, Stepper> stepper : steppers.entrySet()) {
+                    stepper.getValue().step();
+                    assertArrayEquals(expected.getWords(), stepper.getValue().current().getWords(),
+                            stepper.getKey() + " differs at generation " + generation);
+                }
+                if (generation == EDIT_GENERATION) {
+                    int x = width / 2;
+                    int y = height / 2;
+                    expected.setAlive(x, y, !expected.isAlive(x, y));
+                    for (Stepper stepper : steppers.values()) {
+                        stepper.toggle(x, y);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @ParameterizedTest(name = "{0} {1}x{2}")
+    @MethodSource("grids")
+    void inPlaceModeMatchesScalarSweep(String ruleString, int width, int height) {
+        MazeRule rule = MazeRule.parse(ruleString);
+        MazeGrid expected = randomGrid(width, height, 17L * width + height);
+        Stepper inPlace = engine(expected, rule, MazeEngine.StepMode.IN_PLACE, true, null);
+        for (int generation = 1; generation <= GENERATIONS; generation++) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    boolean alive = expected.isAlive(x, y);
+                    expected.setAlive(x, y, rule.nextState(alive ? 1 : 0, expected.countNeighbours(x, y)) == 1);
+                }
+            }
+            inPlace.step();
+            assertArrayEquals(expected.getWords(), inPlace.current().getWords(),
+                    "in-place sweep differs at generation " + generation);
+        }
+    }
+
+    @ParameterizedTest(name = "{0} {1}x{2}")
+    @MethodSource("grids")
+    void incrementalHashesMatchGridHash(String ruleString, int width, int height) {
+        MazeRule rule = MazeRule.parse(ruleString);
+        MazeGrid start = randomGrid(width, height, 7L * width + height);
+        MazeEngine engine = new MazeEngine(width, height);
+        engine.setRule(rule);
+        engine.getGrid().copyFrom(start);
+        engine.invalidate();
+        OffHeapEngine offHeap = new OffHeapEngine(width, height);
+        offHeap.setRule(rule);
+        offHeap.getGrid().copyFrom(start);
+        offHeap.invalidate();
+        for (int generation = 1; generation <= GENERATIONS; generation++) {
+            engine.step();
+            offHeap.step();
+            long expected = ConvergenceDetector.gridHash(engine.getGrid());
+            assertEquals(expected, engine.getStateHash(), "engine hash differs at generation " + generation);
+            assertEquals(expected, offHeap.getStateHash(), "off-heap hash differs at generation " + generation);
+        }
+    }
+
+    private static MazeGrid randomGrid(int width, int height, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        MazeGrid grid = new MazeGrid(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                grid.setAlive(x, y, random.nextBoolean());
+            }
+        }
+        return grid;
+    }
+
+    private static MazeGrid copy(MazeGrid grid) {
+        MazeGrid copy = new MazeGrid(grid.getWidth(), grid.getHeight());
+        copy.copyFrom(grid);
+        return copy;
+    }
+
+    private static Stepper engine(MazeGrid start, MazeRule rule, MazeEngine.StepMode mode, boolean dirtyTiles,
+                                  ParallelStepper parallel) {
+        MazeEngine engine = new MazeEngine(start.getWidth(), start.getHeight());
+        engine.setRule(rule);
+        engine.setStepMode(mode);
+        engine.setDirtyTileTracking(dirtyTiles);
+        engine.setParallelStepper(parallel);
+        engine.getGrid().copyFrom(start);
+        engine.invalidate();
+        return new Stepper() {
+            public void step() {
+                engine.step();
+            }
+
+            public void toggle(int x, int y) {
+                engine.setCell(x, y, !engine.getGrid().isAlive(x, y));
+            }
+
+            public MazeGrid current() {
+                return engine.getGrid();
+            }
+        };
+    }
+
+    private static Stepper parallelStepper(MazeGrid start, MazeRule rule, ParallelStepper parallel) {
+        return new Stepper() {
+            MazeGrid front = copy(start);
+            MazeGrid back = new MazeGrid(start.getWidth(), start.getHeight());
+
+            public void step() {
+                parallel.step(front, back, rule.getBirthMask(), rule.getSurviveMask());
+                MazeGrid swap = front;
+                front = back;
+                back = swap;
+            }
+
+            public void toggle(int x, int y) {
+                front.setAlive(x, y, !front.isAlive(x, y));
+            }
+
+            public MazeGrid current() {
+                return front;
+            }
+        };
+    }
+
+    private static Stepper dirtyTileStepper(MazeGrid start, MazeRule rule, ParallelStepper parallel) {
+        DirtyTileStepper tiles = new DirtyTileStepper(start.getWidth(), start.getHeight());
+        return new Stepper() {
+            MazeGrid front = copy(start);
+            MazeGrid back = new MazeGrid(start.getWidth(), start.getHeight());
+
+            public void step() {
+                tiles.step(front, back, rule.getBirthMask(), rule.getSurviveMask(), parallel);
+                MazeGrid swap = front;
+                front = back;
+                back = swap;
+            }
+
+            public void toggle(int x, int y) {
+                front.setAlive(x, y, !front.isAlive(x, y));
+                tiles.markChanged(x, y);
+            }
+
+            public MazeGrid current() {
+                return front;
+            }
+        };
+    }
+
+    private static Stepper hashlifeUniverse(MazeGrid start, MazeRule rule) {
+        HashlifeUniverse universe = new HashlifeUniverse(start.getWidth(), start.getHeight());
+        MazeGrid grid = copy(start);
+        universe.load(grid);
+        return new Stepper() {
+            public void step() {
+                universe.step(rule);
+                universe.store(grid);
+            }
+
+            public void toggle(int x, int y) {
+                grid.setAlive(x, y, !grid.isAlive(x, y));
+                universe.load(grid);
+            }
+
+            public MazeGrid current() {
+                return grid;
+            }
+        };
+    }
+
+    private static Stepper offHeapEngine(MazeGrid start, MazeRule rule, ParallelStepper parallel) {
+        OffHeapEngine engine = new OffHeapEngine(start.getWidth(), start.getHeight());
+        engine.setRule(rule);
+        engine.setParallelStepper(parallel);
+        engine.getGrid().copyFrom(start);
+        engine.invalidate();
+        MazeGrid cells = new MazeGrid(start.getWidth(), start.getHeight());
+        return new Stepper() {
+            public void step() {
+                engine.step();
+            }
+
+            public void toggle(int x, int y) {
+                engine.getGrid().setAlive(x, y, !engine.getGrid().isAlive(x, y));
+                engine.invalidate();
+            }
+
+            public MazeGrid current() {
+                engine.getGrid().copyTo(cells);
+                return cells;
+            }
+        };
+    }
+
+}